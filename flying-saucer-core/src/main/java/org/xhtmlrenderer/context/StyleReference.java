@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.extend.AttributeResolver;
-import org.xhtmlrenderer.css.extend.lib.DOMTreeResolver;
+import org.xhtmlrenderer.css.extend.lib.CachingDOMTreeResolver;
 import org.xhtmlrenderer.css.newmatch.CascadedStyle;
 import org.xhtmlrenderer.css.newmatch.PageInfo;
 import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
@@ -76,6 +76,8 @@ public class StyleReference {
      */
     private org.xhtmlrenderer.css.newmatch.Matcher _matcher;
 
+    private CachingDOMTreeResolver _treeResolver;
+
     /** */
     private UserAgentCallback _uac;
     
@@ -105,8 +107,14 @@ public class StyleReference {
 
         List infos = getStylesheets();
         XRLog.match("media = " + _context.getMedia());
+        if (_treeResolver != null) {
+            _treeResolver.dispose();
+        }
+        // the cached positions are dropped after each layout instead of
+        // listening to changes of the document
+        _treeResolver = new CachingDOMTreeResolver();
         _matcher = new org.xhtmlrenderer.css.newmatch.Matcher(
-                new DOMTreeResolver(), 
+                _treeResolver, 
                 attRes, 
                 _stylesheetFactory, 
                 readAndParseAll(infos, _context.getMedia()), 
@@ -280,6 +288,29 @@ public class StyleReference {
         }
     }
     
+    /**
+     * @see org.xhtmlrenderer.css.newmatch.Matcher#releaseCascadedStyles()
+     */
+    public int releaseCascadedStyles() {
+        return _matcher == null ? 0 : _matcher.releaseCascadedStyles();
+    }
+
+    /**
+     * Drops the state kept for matching the elements during a layout: the
+     * attributes of the matched elements and the positions of child elements
+     * among their siblings.  The positions are not updated when the document
+     * changes, so the next layout must not see them.
+     *
+     * @see org.xhtmlrenderer.css.newmatch.Matcher#releaseMatchTargets()
+     * @see CachingDOMTreeResolver#invalidateAll()
+     */
+    public int releaseMatchTargets() {
+        if (_treeResolver != null) {
+            _treeResolver.invalidateAll();
+        }
+        return _matcher == null ? 0 : _matcher.releaseMatchTargets();
+    }
+
     public List getFontFaceRules() {
         return _matcher.getFontFaceRules();
     }
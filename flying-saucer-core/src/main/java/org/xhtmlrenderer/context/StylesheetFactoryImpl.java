@@ -19,6 +19,7 @@
  */
 package org.xhtmlrenderer.context;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -29,12 +30,14 @@ import java.util.logging.Level;
 import org.xhtmlrenderer.css.extend.StylesheetFactory;
 import org.xhtmlrenderer.css.parser.CSSErrorHandler;
 import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.CompiledStylesheets;
 import org.xhtmlrenderer.css.sheet.Ruleset;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.resource.CSSResource;
 import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.IOUtil;
 import org.xhtmlrenderer.util.XRLog;
 import org.xml.sax.InputSource;
 
@@ -97,10 +100,22 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
         InputStream is = inputSource.getByteStream();
         if (is==null) return null;
         try {
-            return parse(new InputStreamReader(is, Configuration.valueFor("xr.stylesheets.charset-name", "UTF-8")), info);
+            InputStream content = is;
+            if (CompiledStylesheets.contains(info.getUri())) {
+                byte[] source = IOUtil.readBytes(is);
+                Stylesheet compiled = CompiledStylesheets.get(info.getUri(), info.getOrigin(), source);
+                if (compiled != null) {
+                    return compiled;
+                }
+                content = new ByteArrayInputStream(source);
+            }
+            return parse(new InputStreamReader(content, Configuration.valueFor("xr.stylesheets.charset-name", "UTF-8")), info);
         } catch (UnsupportedEncodingException e) {
             // Shouldn't happen
             throw new RuntimeException(e.getMessage(), e);
+        } catch (IOException e) {
+            XRLog.cssParse(Level.WARNING, "Couldn't read stylesheet at URI " + info.getUri() + ": " + e.getMessage(), e);
+            return new Stylesheet(info.getUri(), info.getOrigin());
         } finally {
             if (is != null) {
                 try {
@@ -20,6 +20,7 @@
  */
 package org.xhtmlrenderer.css.constants;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
@@ -117,6 +118,12 @@ public final class CSSName implements Comparable {
      */
     private static final Map ALL_PROPERTY_NAMES = new TreeMap();
 
+    /**
+     * Map of all CSS properties for lookups by name (the parser looks up each
+     * property it reads, a sorted map is not needed for this)
+     */
+    private static final Map PROPERTIES_BY_NAME = new HashMap();
+
     /**
      * Map of all non-shorthand CSS properties
      */
@@ -1760,7 +1767,7 @@ public final class CSSName implements Comparable {
      */
     public static CSSName getByPropertyName(String propName) {
 
-        return (CSSName) ALL_PROPERTY_NAMES.get(propName);
+        return (CSSName) PROPERTIES_BY_NAME.get(propName);
     }
 
     public static CSSName getByID(int id) {
@@ -1800,6 +1807,7 @@ public final class CSSName implements Comparable {
                 propName, initialValue, (inherit == INHERITS), implemented, builder);
 
         ALL_PROPERTY_NAMES.put(propName, cssName);
+        PROPERTIES_BY_NAME.put(propName, cssName);
 
         if (type == PRIMITIVE) {
             ALL_PRIMITIVE_PROPERTY_NAMES.put(propName, cssName);
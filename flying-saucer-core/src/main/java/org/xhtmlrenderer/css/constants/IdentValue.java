@@ -20,6 +20,7 @@
 package org.xhtmlrenderer.css.constants;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.xhtmlrenderer.css.parser.FSColor;
@@ -275,6 +276,13 @@ public class IdentValue implements FSDerivedValue {
         return ALL_IDENT_VALUES.size();
     }
 
+    /**
+     * @return the strings of all idents, in no particular order
+     */
+    public static Iterator allIdentStrings() {
+        return ALL_IDENT_VALUES.keySet().iterator();
+    }
+
     /**
      * Adds a feature to the Value attribute of the IdentValue class
      *
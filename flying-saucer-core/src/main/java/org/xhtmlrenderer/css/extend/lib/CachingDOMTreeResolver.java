@@ -0,0 +1,144 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.extend.lib;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+
+/**
+ * A {@link DOMTreeResolver} which remembers the positions of the child elements
+ * of a parent once one of them has been asked for, so that matching
+ * <code>:nth-child()</code> and friends against all children of a parent takes
+ * linear instead of quadratic time.
+ * <p>
+ * By default {@link #invalidate(Node)} or {@link #invalidateAll()} must be
+ * called after modifying the document.  A resolver created for a document
+ * which supports DOM mutation events can listen to them instead, and forget
+ * the positions of the children of a parent when a child is inserted or
+ * removed (the listener is only registered once a position has been asked
+ * for).  This is opt-in: once a mutation listener is registered, the DOM
+ * implementation dispatches an event for every later change of the document,
+ * which slows down all DOM edits, and the document keeps the resolver
+ * reachable.  {@link #dispose()} unregisters from the document.
+ */
+public class CachingDOMTreeResolver extends DOMTreeResolver {
+    private static final String NODE_INSERTED = "DOMNodeInserted";
+    private static final String NODE_REMOVED = "DOMNodeRemoved";
+
+    /** parent node -> (child element -> Integer position) */
+    private final Map _positions = Collections.synchronizedMap(new IdentityHashMap());
+
+    private volatile EventTarget _eventTarget;
+    private volatile EventListener _listener;
+
+    /**
+     * Creates a resolver which does not listen to changes of the document.
+     */
+    public CachingDOMTreeResolver() {
+    }
+
+    /**
+     * Creates a resolver which listens to changes of <code>doc</code> if it
+     * supports DOM mutation events, until {@link #dispose()} is called.
+     */
+    public CachingDOMTreeResolver(Document doc) {
+        if (doc instanceof EventTarget) {
+            _eventTarget = (EventTarget) doc;
+        }
+    }
+
+    private synchronized void listen() {
+        if (_eventTarget != null && _listener == null) {
+            _listener = new EventListener() {
+                public void handleEvent(Event evt) {
+                    Node parent = ((Node) evt.getTarget()).getParentNode();
+                    if (parent != null) {
+                        invalidate(parent);
+                    }
+                }
+            };
+            _eventTarget.addEventListener(NODE_INSERTED, _listener, false);
+            _eventTarget.addEventListener(NODE_REMOVED, _listener, false);
+        }
+    }
+
+    public int getPositionOfElement(Object element) {
+        Node parent = ((Element) element).getParentNode();
+        if (parent == null) {
+            return -1;
+        }
+        if (_listener == null && _eventTarget != null) {
+            listen();
+        }
+
+        Map positions = (Map) _positions.get(parent);
+        Integer result = positions == null ? null : (Integer) positions.get(element);
+        if (result == null) {
+            // Not seen yet or inserted without us being notified
+            positions = createPositions(parent);
+            _positions.put(parent, positions);
+            result = (Integer) positions.get(element);
+        }
+
+        return result == null ? -1 : result.intValue();
+    }
+
+    private static Map createPositions(Node parent) {
+        Map result = new IdentityHashMap();
+        int count = 0;
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                result.put(n, new Integer(count++));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the positions of the children of <code>parent</code>.
+     */
+    public void invalidate(Node parent) {
+        _positions.remove(parent);
+    }
+
+    public void invalidateAll() {
+        _positions.clear();
+    }
+
+    /**
+     * Stops listening to changes of the document and drops all cached positions.
+     */
+    public synchronized void dispose() {
+        if (_listener != null) {
+            _eventTarget.removeEventListener(NODE_INSERTED, _listener, false);
+            _eventTarget.removeEventListener(NODE_REMOVED, _listener, false);
+            _listener = null;
+        }
+        _eventTarget = null;
+        invalidateAll();
+    }
+}
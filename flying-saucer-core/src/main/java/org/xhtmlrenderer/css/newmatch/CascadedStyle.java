@@ -61,7 +61,7 @@ public class CascadedStyle {
      */
     private Map cascadedProperties;
     
-    private String fingerprint;
+    private CascadedStyleKey key;
     
     /**
      * Creates a <code>CascadedStyle</code>, setting the display property to
@@ -237,16 +237,31 @@ public class CascadedStyle {
 
     public int countAssigned() { return cascadedProperties.size(); }
 
+    /**
+     * Returns the structural identity of this style, i.e. a key which is
+     * equal to the key of any other style declaring the same values for the
+     * same properties.
+     */
+    public CascadedStyleKey getKey() {
+        if (this.key == null) {
+            PropertyDeclaration[] declarations = (PropertyDeclaration[])cascadedProperties.values().toArray(
+                    new PropertyDeclaration[cascadedProperties.size()]);
+            this.key = new CascadedStyleKey(declarations);
+        }
+        return this.key;
+    }
+
+    /**
+     * Returns the concatenated fingerprints of the declarations of this style.
+     * Use {@link #getKey()} to compare styles.
+     */
     public String getFingerprint() {
-        if (this.fingerprint == null) {
-            StringBuffer sb = new StringBuffer();
-            Iterator iter = cascadedProperties.values().iterator();
-            while (iter.hasNext()) {
-                sb.append(((PropertyDeclaration)iter.next()).getFingerprint());
-            }
-            this.fingerprint = sb.toString();
+        StringBuffer sb = new StringBuffer();
+        Iterator iter = cascadedProperties.values().iterator();
+        while (iter.hasNext()) {
+            sb.append(((PropertyDeclaration)iter.next()).getFingerprint());
         }
-        return this.fingerprint;
+        return sb.toString();
     }
 }// end class
 
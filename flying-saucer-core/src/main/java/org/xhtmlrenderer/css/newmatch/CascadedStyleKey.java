@@ -0,0 +1,73 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.newmatch;
+
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+
+/**
+ * The structural identity of a {@link CascadedStyle}: two keys are equal if
+ * their styles declare the same values for the same properties.  It is used
+ * to share derived styles between elements with equal cascaded styles.
+ * <p>
+ * A key consists of a 64 bit hash of the declarations and the declarations
+ * themselves, which are only compared if the hashes are equal.  The
+ * declarations are usually shared with the stylesheets, so a key costs little
+ * more than an array of references.
+ */
+public final class CascadedStyleKey {
+    private final PropertyDeclaration[] _declarations;
+    private final long _hash;
+
+    CascadedStyleKey(PropertyDeclaration[] declarations) {
+        _declarations = declarations;
+
+        long hash = declarations.length;
+        for (int i = 0; i < declarations.length; i++) {
+            hash = hash * 0x9E3779B97F4A7C15L + declarations[i].getFingerprintHash();
+        }
+        _hash = hash;
+    }
+
+    public long getHash() {
+        return _hash;
+    }
+
+    public int hashCode() {
+        return (int) (_hash ^ (_hash >>> 32));
+    }
+
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof CascadedStyleKey)) {
+            return false;
+        }
+        CascadedStyleKey other = (CascadedStyleKey) obj;
+        if (_hash != other._hash || _declarations.length != other._declarations.length) {
+            return false;
+        }
+        for (int i = 0; i < _declarations.length; i++) {
+            if (! _declarations[i].hasSameFingerprint(other._declarations[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -19,14 +19,15 @@
  */
 package org.xhtmlrenderer.css.newmatch;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.xhtmlrenderer.css.extend.AttributeResolver;
 import org.xhtmlrenderer.css.extend.TreeResolver;
 import org.xhtmlrenderer.css.parser.CSSParseException;
+import org.xhtmlrenderer.css.sheet.StylesheetInput;
+import org.xhtmlrenderer.css.sheet.StylesheetOutput;
 
 
 /**
@@ -35,8 +36,104 @@ import org.xhtmlrenderer.css.parser.CSSParseException;
  * @author tstgm
  */
 abstract class Condition {
+    /*
+     * Relative costs of testing conditions, see Selector#compile()
+     */
+    static final int COST_NONE = 0;
+    static final int COST_ID = 1;
+    static final int COST_CLASS = 2;
+    static final int COST_ATTRIBUTE = 3;
+    static final int COST_LINK = 4;
+    static final int COST_LANG = 5;
+    static final int COST_STRUCTURAL = 6;
+    static final int COST_POSITION = 7;
+
+    /*
+     * Kinds of conditions in compiled stylesheets, see #write()
+     */
+    private static final int UNSUPPORTED = 0;
+    private static final int LINK = 1;
+    private static final int FIRST_CHILD = 2;
+    private static final int LAST_CHILD = 3;
+    private static final int NTH_CHILD = 4;
+    private static final int EVEN_CHILD = 5;
+    private static final int ODD_CHILD = 6;
+    private static final int LANG = 7;
+    private static final int ID = 8;
+    private static final int CLASS = 9;
+    private static final int ATTRIBUTE_EXISTS = 10;
+    private static final int ATTRIBUTE_EQUALS = 11;
+    private static final int ATTRIBUTE_PREFIX = 12;
+    private static final int ATTRIBUTE_SUFFIX = 13;
+    private static final int ATTRIBUTE_SUBSTRING = 14;
+    private static final int ATTRIBUTE_MATCHES_LIST = 15;
+    private static final int ATTRIBUTE_MATCHES_FIRST_PART = 16;
+
+    abstract boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes);
+
+    /**
+     * @return the cost of {@link #matches} relative to other conditions
+     */
+    abstract int getCost();
+
+    /**
+     * @return the kind of this condition in compiled stylesheets
+     */
+    abstract int getKind();
 
-    abstract boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes);
+    /**
+     * Writes this condition for {@link #read(StylesheetInput)}.
+     */
+    void write(StylesheetOutput out) throws IOException {
+        out.writeCount(getKind());
+    }
+
+    static Condition read(StylesheetInput in) throws IOException {
+        int kind = in.readCount();
+        switch (kind) {
+            case UNSUPPORTED:
+                return new UnsupportedCondition();
+            case LINK:
+                return new LinkCondition();
+            case FIRST_CHILD:
+                return new FirstChildCondition();
+            case LAST_CHILD:
+                return new LastChildCondition();
+            case NTH_CHILD:
+                return new NthChildCondition(in.readInt(), in.readInt());
+            case EVEN_CHILD:
+                return new EvenChildCondition();
+            case ODD_CHILD:
+                return new OddChildCondition();
+            case LANG:
+                return new LangCondition(in.readString());
+            case ID:
+                return new IDCondition(in.readString());
+            case CLASS:
+                return new ClassCondition(in.readString());
+        }
+        String namespaceURI = in.readString();
+        String name = in.readString();
+        String value = in.readString();
+        switch (kind) {
+            case ATTRIBUTE_EXISTS:
+                return new AttributeExistsCondition(namespaceURI, name);
+            case ATTRIBUTE_EQUALS:
+                return new AttributeEqualsCondition(namespaceURI, name, value);
+            case ATTRIBUTE_PREFIX:
+                return new AttributePrefixCondition(namespaceURI, name, value);
+            case ATTRIBUTE_SUFFIX:
+                return new AttributeSuffixCondition(namespaceURI, name, value);
+            case ATTRIBUTE_SUBSTRING:
+                return new AttributeSubstringCondition(namespaceURI, name, value);
+            case ATTRIBUTE_MATCHES_LIST:
+                return new AttributeMatchesListCondition(namespaceURI, name, value);
+            case ATTRIBUTE_MATCHES_FIRST_PART:
+                return new AttributeMatchesFirstPartCondition(namespaceURI, name, value);
+            default:
+                throw new IOException("Unknown condition " + kind);
+        }
+    }
 
     /**
      * the CSS condition [attribute]
@@ -205,17 +302,28 @@ abstract class Condition {
             _value = value;
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
                 return false;
             }
-            String val = attRes.getAttributeValue(e, _namespaceURI, _name);
+            String val = attRes.getAttributeValue(target.getElement(), _namespaceURI, _name);
             if (val == null) {
                 return false;
             }
             
             return compare(val, _value);
         }
+
+        int getCost() {
+            return COST_ATTRIBUTE;
+        }
+
+        void write(StylesheetOutput out) throws IOException {
+            super.write(out);
+            out.writeString(_namespaceURI);
+            out.writeString(_name);
+            out.writeString(_value);
+        }
     }
 
     private static class AttributeExistsCondition extends AttributeCompareCondition {
@@ -226,6 +334,10 @@ abstract class Condition {
         protected boolean compare(String attrValue, String conditionValue) {
             return ! attrValue.equals("");
         }
+
+        int getKind() {
+            return ATTRIBUTE_EXISTS;
+        }
     }
     
     private static class AttributeEqualsCondition extends AttributeCompareCondition {
@@ -236,6 +348,10 @@ abstract class Condition {
         protected boolean compare(String attrValue, String conditionValue) {
             return attrValue.equals(conditionValue);
         }
+
+        int getKind() {
+            return ATTRIBUTE_EQUALS;
+        }
     }
     
     private static class AttributePrefixCondition extends AttributeCompareCondition {
@@ -246,6 +362,10 @@ abstract class Condition {
         protected boolean compare(String attrValue, String conditionValue) {
             return attrValue.startsWith(conditionValue);
         }
+
+        int getKind() {
+            return ATTRIBUTE_PREFIX;
+        }
     }
     
     private static class AttributeSuffixCondition extends AttributeCompareCondition {
@@ -256,6 +376,10 @@ abstract class Condition {
         protected boolean compare(String attrValue, String conditionValue) {
             return attrValue.endsWith(conditionValue);
         }
+
+        int getKind() {
+            return ATTRIBUTE_SUFFIX;
+        }
     }
     
     private static class AttributeSubstringCondition extends AttributeCompareCondition {
@@ -266,6 +390,10 @@ abstract class Condition {
         protected boolean compare(String attrValue, String conditionValue) {
             return attrValue.indexOf(conditionValue) > -1;
         }
+
+        int getKind() {
+            return ATTRIBUTE_SUBSTRING;
+        }
     }
     
     private static class AttributeMatchesListCondition extends AttributeCompareCondition {
@@ -274,14 +402,11 @@ abstract class Condition {
         }
         
         protected boolean compare(String attrValue, String conditionValue) {
-            String[] ca = split(attrValue, ' ');
-            boolean matched = false;
-            for (int j = 0; j < ca.length; j++) {
-                if (conditionValue.equals(ca[j])) {
-                    matched = true;
-                }
-            }
-            return matched;
+            return containsPart(attrValue, ' ', conditionValue);
+        }
+
+        int getKind() {
+            return ATTRIBUTE_MATCHES_LIST;
         }
     }
 
@@ -291,37 +416,48 @@ abstract class Condition {
         }
         
         protected boolean compare(String attrValue, String conditionValue) {
-            String[] ca = split(attrValue, '-');
-            if (conditionValue.equals(ca[0])) {
-                return true;
-            }
-            return false;
+            return isFirstPart(attrValue, '-', conditionValue, false);
+        }
+
+        int getKind() {
+            return ATTRIBUTE_MATCHES_FIRST_PART;
         }
     }
 
     private static class ClassCondition extends Condition {
 
-        private String _paddedClassName;
+        private String _className;
 
         ClassCondition(String className) {
-            _paddedClassName = " " + className + " ";
+            _className = className;
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
                 return false;
             }
-            String c = attRes.getClass(e);
-            if (c == null) {
-                return false;
+            // tokenized once per element
+            String[] classes = target.getClasses(attRes);
+            for (int i = 0; i < classes.length; i++) {
+                if (_className.equals(classes[i])) {
+                    return true;
+                }
             }
+            return false;
+        }
+
+        int getCost() {
+            return COST_CLASS;
+        }
 
-            // This is much faster than calling `split()` and comparing individual values in a loop.
-            // NOTE: In jQuery, for example, the attribute value first has whitespace normalized to spaces. But
-            // in an XML DOM, space normalization in attributes is supposed to have happened already.
-            return (" " + c + " ").indexOf(_paddedClassName) != -1;
+        int getKind() {
+            return CLASS;
         }
 
+        void write(StylesheetOutput out) throws IOException {
+            super.write(out);
+            out.writeString(_className);
+        }
     }
 
     private static class IDCondition extends Condition {
@@ -332,16 +468,29 @@ abstract class Condition {
             _id = id;
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
                 return false;
             }
-            if (!_id.equals(attRes.getID(e))) {
+            if (!_id.equals(target.getID(attRes))) {
                 return false;
             }
             return true;
         }
 
+        int getCost() {
+            return COST_ID;
+        }
+
+        int getKind() {
+            return ID;
+        }
+
+        void write(StylesheetOutput out) throws IOException {
+            super.write(out);
+            out.writeString(_id);
+        }
+
     }
 
     private static class LangCondition extends Condition {
@@ -351,22 +500,31 @@ abstract class Condition {
             _lang = lang;
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
                 return false;
             }
-            String lang = attRes.getLang(e);
+            String lang = target.getLang(attRes);
             if (lang == null) {
                 return false;
             }
             if(_lang.equalsIgnoreCase(lang)) {
                 return true;
             }
-            String[] ca = split(lang, '-');
-            if (_lang.equalsIgnoreCase(ca[0])) {
-                return true;
-            }
-            return false;
+            return isFirstPart(lang, '-', _lang, true);
+        }
+
+        int getCost() {
+            return COST_LANG;
+        }
+
+        int getKind() {
+            return LANG;
+        }
+
+        void write(StylesheetOutput out) throws IOException {
+            super.write(out);
+            out.writeString(_lang);
         }
 
     }
@@ -376,8 +534,16 @@ abstract class Condition {
         FirstChildCondition() {
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
-            return treeRes.isFirstChildElement(e);
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
+            return treeRes.isFirstChildElement(target.getElement());
+        }
+
+        int getCost() {
+            return COST_STRUCTURAL;
+        }
+
+        int getKind() {
+            return FIRST_CHILD;
         }
 
     }
@@ -387,8 +553,16 @@ abstract class Condition {
         LastChildCondition() {
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
-            return treeRes.isLastChildElement(e);
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
+            return treeRes.isLastChildElement(target.getElement());
+        }
+
+        int getCost() {
+            return COST_STRUCTURAL;
+        }
+
+        int getKind() {
+            return LAST_CHILD;
         }
 
     }
@@ -405,9 +579,9 @@ abstract class Condition {
             this.b = b;
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
             // getPositionOfElement() starts at 0, CSS spec starts at 1
-            int position = treeRes.getPositionOfElement(e)+1;
+            int position = treeRes.getPositionOfElement(target.getElement())+1;
 
             position -= b;
 
@@ -420,6 +594,20 @@ abstract class Condition {
             }
         }
 
+        int getCost() {
+            return COST_POSITION;
+        }
+
+        int getKind() {
+            return NTH_CHILD;
+        }
+
+        void write(StylesheetOutput out) throws IOException {
+            super.write(out);
+            out.writeInt(a);
+            out.writeInt(b);
+        }
+
         static NthChildCondition fromString(String number) {
             number = number.trim().toLowerCase();
 
@@ -457,10 +645,18 @@ abstract class Condition {
         EvenChildCondition() {
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
-            int position = treeRes.getPositionOfElement(e);
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
+            int position = treeRes.getPositionOfElement(target.getElement());
             return position >= 0 && position % 2 == 0;
         }
+
+        int getCost() {
+            return COST_POSITION;
+        }
+
+        int getKind() {
+            return EVEN_CHILD;
+        }
     }
     
     private static class OddChildCondition extends Condition {
@@ -468,10 +664,18 @@ abstract class Condition {
         OddChildCondition() {
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
-            int position = treeRes.getPositionOfElement(e);
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
+            int position = treeRes.getPositionOfElement(target.getElement());
             return position >= 0 && position % 2 == 1;
         }
+
+        int getCost() {
+            return COST_POSITION;
+        }
+
+        int getKind() {
+            return ODD_CHILD;
+        }
     }
 
     private static class LinkCondition extends Condition {
@@ -479,8 +683,16 @@ abstract class Condition {
         LinkCondition() {
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
-            return attRes.isLink(e);
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
+            return attRes.isLink(target.getElement());
+        }
+
+        int getCost() {
+            return COST_LINK;
+        }
+
+        int getKind() {
+            return LINK;
         }
 
     }
@@ -493,34 +705,55 @@ abstract class Condition {
         UnsupportedCondition() {
         }
 
-        boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
             return false;
         }
 
+        int getCost() {
+            return COST_NONE;
+        }
+
+        int getKind() {
+            return UNSUPPORTED;
+        }
+
     }
     
-    private static String[] split(String s, char ch) {
+    /**
+     * Returns <code>true</code> if <code>value</code> is one of the non-empty
+     * parts of <code>s</code> separated by <code>ch</code> (or all of
+     * <code>s</code> if it does not contain <code>ch</code>).
+     */
+    private static boolean containsPart(String s, char ch, String value) {
         if (s.indexOf(ch) == -1) {
-            return new String[] { s };
-        } else {
-            List result = new ArrayList();
-            
-            int last = 0;
-            int next = 0;
-            
-            while ((next = s.indexOf(ch, last)) != -1) {
-                if (next != last) {
-                    result.add(s.substring(last, next));
-                }
-                last = next + 1;
-            }
-            
-            if (last != s.length()) {
-                result.add(s.substring(last));
+            return value.equals(s);
+        }
+        int len = value.length();
+        int last = 0;
+        int next;
+        while ((next = s.indexOf(ch, last)) != -1) {
+            if (next - last == len && len > 0 && s.regionMatches(last, value, 0, len)) {
+                return true;
             }
-            
-            return (String[])result.toArray(new String[result.size()]);
+            last = next + 1;
         }
-    }    
-}
+        return s.length() - last == len && len > 0 && s.regionMatches(last, value, 0, len);
+    }
 
+    /**
+     * Returns <code>true</code> if <code>value</code> is the first non-empty
+     * part of <code>s</code> separated by <code>ch</code> (or all of
+     * <code>s</code> if it does not contain <code>ch</code>).
+     */
+    private static boolean isFirstPart(String s, char ch, String value, boolean ignoreCase) {
+        int start = 0;
+        while (start < s.length() && s.charAt(start) == ch) {
+            start++;
+        }
+        int end = s.indexOf(ch, start);
+        if (end == -1) {
+            end = s.length();
+        }
+        return end - start == value.length() && s.regionMatches(ignoreCase, start, value, 0, value.length());
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.newmatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.xhtmlrenderer.css.extend.AttributeResolver;
+import org.xhtmlrenderer.css.extend.StylesheetFactory;
+import org.xhtmlrenderer.css.extend.TreeResolver;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.util.Util;
+
+/**
+ * An element being matched against the selectors of a {@link Matcher}.  It
+ * holds what the conditions of the selectors need to know about the element
+ * and which is expensive to compute (e.g. its class names), so that this is
+ * done once per element instead of once per selector tested.
+ * <p>
+ * The {@link Matcher} keeps the target of an element until the element is
+ * restyled or the layout is done (see {@link Matcher#releaseMatchTargets()}),
+ * so the parsed style attribute and non-CSS styling are also reused when the
+ * element is cascaded again during the layout.
+ */
+class MatchTarget {
+    private static final String[] NO_CLASSES = new String[0];
+    private static final String UNRESOLVED = new String();
+    private static final Ruleset NO_STYLE = new Ruleset(StylesheetInfo.AUTHOR);
+
+    private final Object _element;
+    private final ClassLists _classLists;
+
+    private String[] _classes;
+    private String _id = UNRESOLVED;
+    private String _lang = UNRESOLVED;
+
+    private Ruleset _elementStyle;
+    private Ruleset _nonCssStyle;
+
+    private MatchTarget _previousSibling;
+    private boolean _previousSiblingResolved;
+
+    MatchTarget(Object element, ClassLists classLists) {
+        _element = element;
+        _classLists = classLists;
+    }
+
+    Object getElement() {
+        return _element;
+    }
+
+    /**
+     * @return the class names of the element, never <code>null</code>
+     */
+    String[] getClasses(AttributeResolver attRes) {
+        if (_classes == null) {
+            String c = attRes.getClass(_element);
+            if (c == null) {
+                _classes = NO_CLASSES;
+            } else if (_classLists == null) {
+                _classes = tokenize(c);
+            } else {
+                _classes = _classLists.get(c);
+            }
+        }
+        return _classes;
+    }
+
+    /**
+     * @return the id of the element or <code>null</code>
+     */
+    String getID(AttributeResolver attRes) {
+        if (_id == UNRESOLVED) {
+            _id = attRes.getID(_element);
+        }
+        return _id;
+    }
+
+    /**
+     * @return the language of the element or <code>null</code>
+     */
+    String getLang(AttributeResolver attRes) {
+        if (_lang == UNRESOLVED) {
+            _lang = attRes.getLang(_element);
+        }
+        return _lang;
+    }
+
+    /**
+     * @return the parsed style attribute of the element or <code>null</code>
+     */
+    Ruleset getElementStyle(AttributeResolver attRes, StylesheetFactory factory) {
+        if (_elementStyle == null) {
+            _elementStyle = parse(attRes.getElementStyling(_element), factory);
+        }
+        return _elementStyle == NO_STYLE ? null : _elementStyle;
+    }
+
+    /**
+     * @return the parsed non-CSS styling (presentational attributes) of the
+     * element or <code>null</code>
+     */
+    Ruleset getNonCssStyle(AttributeResolver attRes, StylesheetFactory factory) {
+        if (_nonCssStyle == null) {
+            _nonCssStyle = parse(attRes.getNonCssStyling(_element), factory);
+        }
+        return _nonCssStyle == NO_STYLE ? null : _nonCssStyle;
+    }
+
+    private static Ruleset parse(String style, StylesheetFactory factory) {
+        if (Util.isNullOrEmpty(style)) {
+            return NO_STYLE;
+        }
+        return factory.parseStyleDeclaration(StylesheetInfo.AUTHOR, style);
+    }
+
+    /**
+     * @return the previous sibling element or <code>null</code>
+     */
+    MatchTarget getPreviousSibling(TreeResolver treeRes) {
+        if (! _previousSiblingResolved) {
+            Object sibling = treeRes.getPreviousSiblingElement(_element);
+            if (sibling != null) {
+                _previousSibling = new MatchTarget(sibling, _classLists);
+            }
+            _previousSiblingResolved = true;
+        }
+        return _previousSibling;
+    }
+
+    static String[] tokenize(String classes) {
+        List result = null;
+        int start = -1;
+        for (int i = 0, len = classes.length(); i <= len; i++) {
+            boolean separator = i == len || Character.isWhitespace(classes.charAt(i));
+            if (separator) {
+                if (start != -1) {
+                    if (result == null) {
+                        result = new ArrayList(2);
+                    }
+                    result.add(classes.substring(start, i));
+                    start = -1;
+                }
+            } else if (start == -1) {
+                start = i;
+            }
+        }
+        return result == null ? NO_CLASSES : (String[]) result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * The tokenized class attributes of a document.  Documents tend to use a
+     * small number of distinct class attribute values, so each is tokenized
+     * once and its class names are shared by all elements using it.
+     */
+    static class ClassLists {
+        private static final int MAX_SIZE = 1024;
+
+        private final ConcurrentMap _lists = new ConcurrentHashMap();
+
+        String[] get(String classes) {
+            String[] result = (String[]) _lists.get(classes);
+            if (result == null) {
+                result = tokenize(classes);
+                if (_lists.size() < MAX_SIZE) {
+                    _lists.putIfAbsent(classes, result);
+                }
+            }
+            return result;
+        }
+    }
+}
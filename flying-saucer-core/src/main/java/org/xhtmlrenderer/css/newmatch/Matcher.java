@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -38,14 +39,27 @@ import org.xhtmlrenderer.css.sheet.MediaRule;
 import org.xhtmlrenderer.css.sheet.PageRule;
 import org.xhtmlrenderer.css.sheet.Ruleset;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.XRLog;
-import org.xhtmlrenderer.util.Util;
 
 
 /**
  * @author Torbjoern Gannholm
  */
 public class Matcher {
+    private static final int RULES_CACHE_SIZE = Configuration.valueAsInt("xr.css.matcher-cache-size", 16);
+
+    /**
+     * The rules of recently used sets of stylesheets and media, so documents
+     * using the same stylesheets don't sort their selectors again
+     */
+    private static final Map RULES_CACHE = new LinkedHashMap(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > RULES_CACHE_SIZE;
+        }
+    };
 
     Mapper docMapper;
     private org.xhtmlrenderer.css.extend.AttributeResolver _attRes;
@@ -53,6 +67,7 @@ public class Matcher {
     private org.xhtmlrenderer.css.extend.StylesheetFactory _styleFactory;
 
     private java.util.Map _map;
+    private java.util.Map _targets;
 
     //handle dynamic
     private Set _hoverElements;
@@ -60,8 +75,12 @@ public class Matcher {
     private Set _focusElements;
     private Set _visitElements;
     
+    private final MatchTarget.ClassLists _classLists = new MatchTarget.ClassLists();
+
     private List _pageRules;
     private List _fontFaceRules;
+
+    private final Map _pageInfos = new HashMap();
     
     public Matcher(
             TreeResolver tr, AttributeResolver ar, StylesheetFactory factory, List stylesheets, String medium) {
@@ -70,13 +89,46 @@ public class Matcher {
         _attRes = ar;
         _styleFactory = factory;
         
-        _pageRules = new ArrayList();
-        _fontFaceRules = new ArrayList();
-        docMapper = createDocumentMapper(stylesheets, medium);
+        Rules rules = getRules(stylesheets, medium);
+        _pageRules = rules.pageRules;
+        _fontFaceRules = rules.fontFaceRules;
+        docMapper = new Mapper(rules.selectors);
     }
     
     public void removeStyle(Object e) {
         _map.remove(e);
+        _targets.remove(e);
+    }
+
+    /**
+     * Drops the cascaded styles of all elements.  They are recomputed on
+     * demand.
+     *
+     * @return the number of elements whose cascaded style was dropped
+     */
+    public int releaseCascadedStyles() {
+        synchronized (_map) {
+            int result = _map.size();
+            _map.clear();
+            _targets.clear();
+            return result;
+        }
+    }
+
+    /**
+     * Drops the attributes of the matched elements which are kept while the
+     * elements are cascaded (see {@link MatchTarget}).  Renderers call this
+     * once a layout is done, as the targets are only reused by the style
+     * lookups of a layout.  They are recomputed on demand.
+     *
+     * @return the number of elements whose attributes were dropped
+     */
+    public int releaseMatchTargets() {
+        synchronized (_targets) {
+            int result = _targets.size();
+            _targets.clear();
+            return result;
+        }
     }
 
     public CascadedStyle getCascadedStyle(Object e, boolean restyle) {
@@ -85,6 +137,8 @@ public class Matcher {
             if (!restyle) {
                 em = getMapper(e);
             } else {
+                // attributes may have changed since the element was matched
+                _targets.remove(e);
                 em = matchElement(e);
             }
             return em.getCascadedStyle(e);
@@ -102,7 +156,23 @@ public class Matcher {
         }
     }
     
+    /**
+     * @return the style of pages with the given name and pseudo page.  Pages
+     * with the same name and pseudo page share their style.
+     */
     public PageInfo getPageCascadedStyle(String pageName, String pseudoPage) {
+        List key = java.util.Arrays.asList(new String[] { pageName, pseudoPage });
+        synchronized (_pageInfos) {
+            PageInfo result = (PageInfo) _pageInfos.get(key);
+            if (result == null) {
+                result = createPageInfo(pageName, pseudoPage);
+                _pageInfos.put(key, result);
+            }
+            return result;
+        }
+    }
+
+    private PageInfo createPageInfo(String pageName, String pseudoPage) {
         List props = new ArrayList();
         Map marginBoxes = new HashMap();
 
@@ -159,61 +229,136 @@ public class Matcher {
         }
     }
 
-    Mapper createDocumentMapper(List stylesheets, String medium) {
-        java.util.TreeMap sorter = new java.util.TreeMap();
-        addAllStylesheets(stylesheets, sorter, medium);
-        XRLog.match("Matcher created with " + sorter.size() + " selectors");
-        return new Mapper(sorter.values());
+    /**
+     * @return the rules of <code>stylesheets</code> which apply to
+     * <code>medium</code>, shared with other matchers for the same stylesheets
+     * and medium
+     */
+    private static Rules getRules(List stylesheets, String medium) {
+        RulesKey key = new RulesKey(stylesheets, medium);
+        // also keeps other threads from numbering the same selectors at once
+        synchronized (RULES_CACHE) {
+            Rules result = (Rules) RULES_CACHE.get(key);
+            if (result == null) {
+                result = new Rules(stylesheets, medium);
+                XRLog.match("Matcher created with " + result.selectors.size() + " selectors");
+                if (RULES_CACHE_SIZE > 0) {
+                    RULES_CACHE.put(key, result);
+                }
+            }
+            return result;
+        }
     }
-    
-    private void addAllStylesheets(List stylesheets, TreeMap sorter, String medium) {
-        int count = 0;
-        int pCount = 0;
-        for (Iterator i = stylesheets.iterator(); i.hasNext(); ) {
-            Stylesheet stylesheet = (Stylesheet)i.next();
-            for (Iterator j = stylesheet.getContents().iterator(); j.hasNext(); ) {
-                Object obj = (Object)j.next();
-                if (obj instanceof Ruleset) {
-                    for (Iterator k = ((Ruleset)obj).getFSSelectors().iterator(); k.hasNext(); ) {
-                        Selector selector = (Selector)k.next();
-                        selector.setPos(++count);
-                        sorter.put(selector.getOrder(), selector);
-                    }
-                } else if (obj instanceof PageRule) {
-                    ((PageRule)obj).setPos(++pCount);
-                    _pageRules.add(obj);
-                } else if (obj instanceof MediaRule) {
-                    MediaRule mediaRule = (MediaRule)obj;
-                    if (mediaRule.matches(medium)) {
-                        for (Iterator k = mediaRule.getContents().iterator(); k.hasNext(); ) {
-                            Ruleset ruleset = (Ruleset)k.next();
-                            for (Iterator l = ruleset.getFSSelectors().iterator(); l.hasNext(); ) {
-                                Selector selector = (Selector)l.next();
-                                selector.setPos(++count);
-                                sorter.put(selector.getOrder(), selector);
+
+    /**
+     * The selectors (sorted by specificity and position), page rules and font
+     * face rules of a list of stylesheets which apply to a medium.  Not
+     * changed once created.
+     */
+    private static class Rules {
+        final List selectors;
+        final List pageRules = new ArrayList();
+        final List fontFaceRules = new ArrayList();
+
+        Rules(List stylesheets, String medium) {
+            TreeMap sorter = new TreeMap();
+            addAllStylesheets(stylesheets, sorter, medium);
+            selectors = new ArrayList(sorter.values());
+        }
+
+        private void addAllStylesheets(List stylesheets, TreeMap sorter, String medium) {
+            int count = 0;
+            int pCount = 0;
+            for (Iterator i = stylesheets.iterator(); i.hasNext(); ) {
+                Stylesheet stylesheet = (Stylesheet)i.next();
+                for (Iterator j = stylesheet.getContents().iterator(); j.hasNext(); ) {
+                    Object obj = (Object)j.next();
+                    if (obj instanceof Ruleset) {
+                        for (Iterator k = ((Ruleset)obj).getFSSelectors().iterator(); k.hasNext(); ) {
+                            Selector selector = (Selector)k.next();
+                            selector.setPos(++count);
+                            selector.compile();
+                            sorter.put(selector.getOrder(), selector);
+                        }
+                    } else if (obj instanceof PageRule) {
+                        ((PageRule)obj).setPos(++pCount);
+                        pageRules.add(obj);
+                    } else if (obj instanceof MediaRule) {
+                        MediaRule mediaRule = (MediaRule)obj;
+                        if (mediaRule.matches(medium)) {
+                            for (Iterator k = mediaRule.getContents().iterator(); k.hasNext(); ) {
+                                Ruleset ruleset = (Ruleset)k.next();
+                                for (Iterator l = ruleset.getFSSelectors().iterator(); l.hasNext(); ) {
+                                    Selector selector = (Selector)l.next();
+                                    selector.setPos(++count);
+                                    selector.compile();
+                                    sorter.put(selector.getOrder(), selector);
+                                }
                             }
                         }
                     }
                 }
+
+                fontFaceRules.addAll(stylesheet.getFontFaceRules());
             }
-            
-            _fontFaceRules.addAll(stylesheet.getFontFaceRules());
+
+            Collections.sort(pageRules, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    PageRule p1 = (PageRule)o1;
+                    PageRule p2 = (PageRule)o2;
+
+                    if (p1.getOrder() - p2.getOrder() < 0) {
+                        return -1;
+                    } else if (p1.getOrder() == p2.getOrder()) {
+                        return 0;
+                    } else {
+                        return 1;
+                    }
+                }
+            });
         }
-        
-        Collections.sort(_pageRules, new Comparator() {
-            public int compare(Object o1, Object o2) {
-                PageRule p1 = (PageRule)o1;
-                PageRule p2 = (PageRule)o2;
-                
-                if (p1.getOrder() - p2.getOrder() < 0) {
-                    return -1;
-                } else if (p1.getOrder() == p2.getOrder()) {
-                    return 0;
-                } else {
-                    return 1;
+    }
+
+    /**
+     * A list of stylesheets (compared by identity) and a medium.
+     */
+    private static class RulesKey {
+        private final Object[] _stylesheets;
+        private final String _medium;
+        private final int _hashCode;
+
+        RulesKey(List stylesheets, String medium) {
+            _stylesheets = stylesheets.toArray();
+            _medium = medium;
+            int hash = medium == null ? 0 : medium.hashCode();
+            for (int i = 0; i < _stylesheets.length; i++) {
+                hash = 31 * hash + System.identityHashCode(_stylesheets[i]);
+            }
+            _hashCode = hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof RulesKey)) {
+                return false;
+            }
+            RulesKey other = (RulesKey) o;
+            if (_hashCode != other._hashCode || _stylesheets.length != other._stylesheets.length) {
+                return false;
+            }
+            if (_medium == null ? other._medium != null : !_medium.equals(other._medium)) {
+                return false;
+            }
+            for (int i = 0; i < _stylesheets.length; i++) {
+                if (_stylesheets[i] != other._stylesheets[i]) {
+                    return false;
                 }
             }
-        });
+            return true;
+        }
+
+        public int hashCode() {
+            return _hashCode;
+        }
     }
 
     private void link(Object e, Mapper m) {
@@ -222,6 +367,7 @@ public class Matcher {
 
     private void newMaps() {
         _map = Collections.synchronizedMap(new java.util.HashMap());
+        _targets = Collections.synchronizedMap(new java.util.HashMap());
         _hoverElements = Collections.synchronizedSet(new java.util.HashSet());
         _activeElements = Collections.synchronizedSet(new java.util.HashSet());
         _focusElements = Collections.synchronizedSet(new java.util.HashSet());
@@ -284,18 +430,21 @@ public class Matcher {
                 };
     }
 
+    private MatchTarget getTarget(Object e) {
+        MatchTarget target = (MatchTarget) _targets.get(e);
+        if (target == null) {
+            target = new MatchTarget(e, _classLists);
+            _targets.put(e, target);
+        }
+        return target;
+    }
+
     private org.xhtmlrenderer.css.sheet.Ruleset getElementStyle(Object e) {
         synchronized (e) {
             if (_attRes == null || _styleFactory == null) {
                 return null;
             }
-            
-            String style = _attRes.getElementStyling(e);
-            if (Util.isNullOrEmpty(style)) {
-                return null;
-            }
-            
-            return _styleFactory.parseStyleDeclaration(org.xhtmlrenderer.css.sheet.StylesheetInfo.AUTHOR, style);
+            return getTarget(e).getElementStyle(_attRes, _styleFactory);
         }
     }
 
@@ -304,11 +453,7 @@ public class Matcher {
             if (_attRes == null || _styleFactory == null) {
                 return null;
             }
-            String style = _attRes.getNonCssStyling(e);
-            if (Util.isNullOrEmpty(style)) {
-                return null;
-            }
-            return _styleFactory.parseStyleDeclaration(org.xhtmlrenderer.css.sheet.StylesheetInfo.AUTHOR, style);
+            return getTarget(e).getNonCssStyle(_attRes, _styleFactory);
         }
     }
 
@@ -345,6 +490,7 @@ public class Matcher {
             java.util.HashMap pseudoSelectors = new java.util.HashMap();
             java.util.List mappedSelectors = new java.util.LinkedList();
             StringBuffer key = new StringBuffer();
+            MatchTarget target = getTarget(e);
             for (int i = 0, size = axes.size(); i < size; i++) {
                 Selector sel = (Selector) axes.get(i);
                 if (sel.getAxis() == Selector.DESCENDANT_AXIS) {
@@ -353,7 +499,7 @@ public class Matcher {
                 } else if (sel.getAxis() == Selector.IMMEDIATE_SIBLING_AXIS) {
                     throw new RuntimeException();
                 }
-                if (!sel.matches(e, _attRes, _treeRes)) {
+                if (!sel.matches(target, _attRes, _treeRes)) {
                     continue;
                 }
                 //Assumption: if it is a pseudo-element, it does not also have dynamic pseudo-class
@@ -393,14 +539,18 @@ public class Matcher {
                     childAxes.add(chain);
                 }
             }
-            if (children == null) children = new HashMap();
-            Mapper childMapper = (Mapper) children.get(key.toString());
-            if (childMapper == null) {
-                childMapper = new Mapper();
-                childMapper.axes = childAxes;
-                childMapper.pseudoSelectors = pseudoSelectors;
-                childMapper.mappedSelectors = mappedSelectors;
-                children.put(key.toString(), childMapper);
+            Mapper childMapper;
+            // children of one element may be matched by several threads
+            synchronized (this) {
+                if (children == null) children = new HashMap();
+                childMapper = (Mapper) children.get(key.toString());
+                if (childMapper == null) {
+                    childMapper = new Mapper();
+                    childMapper.axes = childAxes;
+                    childMapper.pseudoSelectors = pseudoSelectors;
+                    childMapper.mappedSelectors = mappedSelectors;
+                    children.put(key.toString(), childMapper);
+                }
             }
             link(e, childMapper);
             return childMapper;
@@ -29,6 +29,8 @@ import org.xhtmlrenderer.css.constants.MarginBoxName;
 import org.xhtmlrenderer.css.parser.PropertyValue;
 import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.EmptyStyle;
 
 public class PageInfo {
     private final List _properties;
@@ -37,6 +39,8 @@ public class PageInfo {
     
     private final List _xmpPropertyList;
     
+    private CalculatedStyle _calculatedPageStyle;
+    
     public PageInfo(List properties, CascadedStyle pageStyle, Map marginBoxes) {
         _properties = properties;
         _pageStyle = pageStyle;
@@ -53,6 +57,17 @@ public class PageInfo {
         return _pageStyle;
     }
     
+    /**
+     * @return the page style derived from an empty parent style.  It is
+     * derived once and shared by all pages using this page info.
+     */
+    public synchronized CalculatedStyle getCalculatedPageStyle() {
+        if (_calculatedPageStyle == null) {
+            _calculatedPageStyle = new EmptyStyle().deriveStyle(_pageStyle);
+        }
+        return _calculatedPageStyle;
+    }
+    
     public List getProperties() {
         return _properties;
     }
@@ -22,8 +22,11 @@ package org.xhtmlrenderer.css.newmatch;
 import org.xhtmlrenderer.css.extend.AttributeResolver;
 import org.xhtmlrenderer.css.extend.TreeResolver;
 import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.StylesheetInput;
+import org.xhtmlrenderer.css.sheet.StylesheetOutput;
 import org.xhtmlrenderer.util.XRLog;
 
+import java.io.IOException;
 import java.util.logging.Level;
 
 
@@ -53,6 +56,11 @@ public class Selector {
 
     private java.util.List conditions;
 
+    /**
+     * The conditions, cheapest first (see {@link #compile()})
+     */
+    private volatile Condition[] _program;
+
     public final static int DESCENDANT_AXIS = 0;
     public final static int CHILD_AXIS = 1;
     public final static int IMMEDIATE_SIBLING_AXIS = 2;
@@ -77,8 +85,30 @@ public class Selector {
      * give all class
      */
     public boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        return matches(new MatchTarget(e, null), attRes, treeRes);
+    }
+
+    /**
+     * Check if the given element matches this selector.  The element name is
+     * tested first, then the conditions cheapest first and finally the
+     * sibling selector.
+     */
+    boolean matches(MatchTarget target, AttributeResolver attRes, TreeResolver treeRes) {
+        if (_name != null && !treeRes.matchesElement(target.getElement(), _namespaceURI, _name)) {
+            return false;
+        }
+        Condition[] program = _program;
+        if (program == null) {
+            program = compile();
+        }
+        // all conditions need to be true
+        for (int i = 0; i < program.length; i++) {
+            if (!program[i].matches(target, attRes, treeRes)) {
+                return false;
+            }
+        }
         if (siblingSelector != null) {
-            Object sib = siblingSelector.getAppropriateSibling(e, treeRes);
+            MatchTarget sib = siblingSelector.getAppropriateSibling(target, treeRes);
             if (sib == null) {
                 return false;
             }
@@ -86,19 +116,38 @@ public class Selector {
                 return false;
             }
         }
-        if (_name == null || treeRes.matchesElement(e, _namespaceURI, _name)) {
-            if (conditions != null) {
-                // all conditions need to be true
-                for (java.util.Iterator i = conditions.iterator(); i.hasNext();) {
-                    Condition c = (Condition) i.next();
-                    if (!c.matches(e, attRes, treeRes)) {
-                        return false;
-                    }
+        return true;
+    }
+
+    /**
+     * Orders the conditions of this selector (and of its sibling and chained
+     * selectors) by the cost of testing them, so that cheap tests (e.g. an
+     * id or class) can reject an element before expensive ones (e.g. a
+     * position among its siblings) are tried.  Conditions are independent of
+     * each other, so their order does not change the result.  Must be called
+     * once the selector is completely parsed; it is done when a
+     * {@link Matcher} is created.
+     */
+    Condition[] compile() {
+        Condition[] result;
+        if (conditions == null) {
+            result = new Condition[0];
+        } else {
+            result = (Condition[]) conditions.toArray(new Condition[conditions.size()]);
+            java.util.Arrays.sort(result, new java.util.Comparator() {
+                public int compare(Object o1, Object o2) {
+                    return ((Condition) o1).getCost() - ((Condition) o2).getCost();
                 }
-            }
-            return true;
+            });
         }
-        return false;
+        _program = result;
+        if (siblingSelector != null) {
+            siblingSelector.compile();
+        }
+        if (chainedSelector != null) {
+            chainedSelector.compile();
+        }
+        return result;
     }
 
     /**
@@ -395,6 +444,22 @@ public class Selector {
         return "0" + b.substring(b.length() - 3) + c.substring(c.length() - 3) + d.substring(d.length() - 3) + p.substring(p.length() - 5);
     }
 
+    /**
+     * The target of the sibling to match, see
+     * {@link #getAppropriateSibling(Object, TreeResolver)}.
+     */
+    MatchTarget getAppropriateSibling(MatchTarget target, TreeResolver treeRes) {
+        MatchTarget sibling = null;
+        switch (_axis) {
+            case IMMEDIATE_SIBLING_AXIS:
+                sibling = target.getPreviousSibling(treeRes);
+                break;
+            default:
+                XRLog.exception("Bad sibling axis");
+        }
+        return sibling;
+    }
+
     /**
      * Gets the appropriateSibling attribute of the Selector object
      *
@@ -428,6 +493,7 @@ public class Selector {
             XRLog.match(Level.WARNING, "Trying to append conditions to pseudoElement " + _pe);
         }
         conditions.add(c);
+        _program = null;
     }
 
     /**
@@ -489,5 +555,65 @@ public class Selector {
     public void setNamespaceURI(String namespaceURI) {
         _namespaceURI = namespaceURI;
     }
+
+    /**
+     * Writes this selector (and its sibling and chained selectors) for
+     * {@link #read(StylesheetInput, Ruleset)}.  The position is not written,
+     * it is assigned by the {@link Matcher}.
+     */
+    public void write(StylesheetOutput out) throws IOException {
+        out.writeString(_name);
+        out.writeString(_namespaceURI);
+        out.writeCount(_axis);
+        out.writeCount(_pc);
+        out.writeString(_pe);
+        out.writeCount(_specificityB);
+        out.writeCount(_specificityC);
+        out.writeCount(_specificityD);
+        if (conditions == null) {
+            out.writeCount(0);
+        } else {
+            out.writeCount(conditions.size());
+            for (int i = 0; i < conditions.size(); i++) {
+                ((Condition) conditions.get(i)).write(out);
+            }
+        }
+        writeSelector(out, chainedSelector);
+        writeSelector(out, siblingSelector);
+    }
+
+    private static void writeSelector(StylesheetOutput out, Selector selector) throws IOException {
+        out.writeBoolean(selector != null);
+        if (selector != null) {
+            selector.write(out);
+        }
+    }
+
+    public static Selector read(StylesheetInput in, Ruleset parent) throws IOException {
+        Selector result = new Selector();
+        result._parent = parent;
+        result._name = in.readString();
+        result._namespaceURI = in.readString();
+        result._axis = in.readCount();
+        result._pc = in.readCount();
+        result._pe = in.readString();
+        result._specificityB = in.readCount();
+        result._specificityC = in.readCount();
+        result._specificityD = in.readCount();
+        int count = in.readCount();
+        if (count > 0) {
+            result.conditions = new java.util.ArrayList(count);
+            for (int i = 0; i < count; i++) {
+                result.conditions.add(Condition.read(in));
+            }
+        }
+        if (in.readBoolean()) {
+            result.chainedSelector = read(in, parent);
+        }
+        if (in.readBoolean()) {
+            result.siblingSelector = read(in, parent);
+        }
+        return result;
+    }
 }
 
@@ -68,6 +68,7 @@ public class CSSParser {
 
     private Token _saved;
     private Lexer _lexer;
+    private final NameTable _names = new NameTable();
 
     private CSSErrorHandler _errorHandler;
     private String _URI;
@@ -1920,9 +1921,15 @@ public class CSSParser {
         switch (t.getType()) {
             case Token.STRING:
                 count = _lexer.yylength();
+                if (isPlain(1, count-1, false)) {
+                    return new String(_lexer.yybuffer(), _lexer.yystart()+1, count-2);
+                }
                 return processEscapes(_lexer.yytext().toCharArray(), 1, count-1);
             case Token.HASH:
                 count = _lexer.yylength();
+                if (isPlain(1, count, false)) {
+                    return _names.get(_lexer.yybuffer(), _lexer.yystart()+1, count-1, false);
+                }
                 return processEscapes(_lexer.yytext().toCharArray(), 1, count);
             case Token.URI:
                 char[] ch = _lexer.yytext().toCharArray();
@@ -1962,6 +1969,9 @@ public class CSSParser {
                 if (t.getType() == Token.AT_RULE) {
                     start++;
                 }
+                if (isPlain(start, count, true)) {
+                    return _names.get(_lexer.yybuffer(), _lexer.yystart()+start, count-start, ! literal);
+                }
                 String result = processEscapes(_lexer.yytext().toCharArray(), start, count);
                 if (! literal) {
                     result = result.toLowerCase();
@@ -1972,6 +1982,23 @@ public class CSSParser {
         }
     }
 
+    /**
+     * Returns if the characters of the current token from <code>start</code>
+     * to <code>end</code> can be used as they are, i.e. contain no escapes
+     * (and no non ASCII characters if <code>asciiOnly</code>).
+     */
+    private boolean isPlain(int start, int end, boolean asciiOnly) {
+        char[] buf = _lexer.yybuffer();
+        int offset = _lexer.yystart();
+        for (int i = start; i < end; i++) {
+            char c = buf[offset+i];
+            if (c == '\\' || (asciiOnly && c > 127)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean isRelativeURI(String uri) {
         try {
             return uri.length() > 0 && (uri.charAt(0) != '/' && ! new URI(uri).isAbsolute());
@@ -1559,6 +1559,19 @@ class Lexer {
     	this.yyline = i;
 	}
 
+    /**
+     * The buffer holding the text of the current token from {@link #yystart()}
+     * for {@link #yylength()} characters.  It is only valid until the next
+     * call of {@link #yylex()}.
+     */
+    char[] yybuffer() {
+        return this.zzBuffer;
+    }
+
+    int yystart() {
+        return this.zzStartRead;
+    }
+
 
   /**
    * Creates a new scanner
@@ -0,0 +1,115 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.parser;
+
+/**
+ * The names (identifiers, at-rules, hashes) seen by a {@link CSSParser}.  A
+ * name is looked up directly in the buffer of the lexer, so a name which was
+ * seen before (e.g. <code>color</code> or <code>none</code>) costs no
+ * allocation and all its occurrences share one <code>String</code>, whose
+ * hash code is computed once.
+ * <p>
+ * The table is an open addressing hash table which grows up to
+ * {@link #MAX_SIZE} names.  It is not thread safe, like the parser.
+ */
+class NameTable {
+    private static final int MAX_SIZE = 8192;
+
+    private String[] _names = new String[256];
+    private int _size;
+
+    /**
+     * @param lowerCase if the name should be converted to lower case.  Only
+     * ASCII letters are converted, so this must only be used for names
+     * consisting of ASCII characters.
+     * @return the name in <code>buf</code> from <code>offset</code> for
+     * <code>length</code> characters
+     */
+    String get(char[] buf, int offset, int length, boolean lowerCase) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + (lowerCase ? toLowerCase(buf[offset + i]) : buf[offset + i]);
+        }
+
+        String[] names = _names;
+        int mask = names.length - 1;
+        int index = mix(hash) & mask;
+        String name;
+        while ((name = names[index]) != null) {
+            if (name.hashCode() == hash && matches(name, buf, offset, length, lowerCase)) {
+                return name;
+            }
+            index = (index + 1) & mask;
+        }
+
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = lowerCase ? toLowerCase(buf[offset + i]) : buf[offset + i];
+        }
+        String result = new String(chars);
+        if (_size < MAX_SIZE) {
+            names[index] = result;
+            if (++_size * 2 > names.length) {
+                grow();
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    private void grow() {
+        String[] names = new String[_names.length * 2];
+        int mask = names.length - 1;
+        for (int i = 0; i < _names.length; i++) {
+            String name = _names[i];
+            if (name != null) {
+                int index = mix(name.hashCode()) & mask;
+                while (names[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                names[index] = name;
+            }
+        }
+        _names = names;
+    }
+
+    private static boolean matches(String name, char[] buf, int offset, int length, boolean lowerCase) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = lowerCase ? toLowerCase(buf[offset + i]) : buf[offset + i];
+            if (name.charAt(i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16) ^ (hash >>> 7);
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.xhtmlrenderer.css.parser;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -29,6 +30,8 @@ import org.w3c.dom.css.Counter;
 import org.w3c.dom.css.RGBColor;
 import org.w3c.dom.css.Rect;
 import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.sheet.StylesheetInput;
+import org.xhtmlrenderer.css.sheet.StylesheetOutput;
 import org.xhtmlrenderer.util.ArrayUtil;
 
 public class PropertyValue implements CSSPrimitiveValue {
@@ -60,6 +63,18 @@ public class PropertyValue implements CSSPrimitiveValue {
     private List _values;
     private FSFunction _function;
 
+    /*
+     * Kinds of colors and list items in compiled stylesheets
+     */
+    private static final int NONE = 0;
+    private static final int RGB_COLOR = 1;
+    private static final int CMYK_COLOR = 2;
+    private static final int VALUE = 3;
+    private static final int COUNTER = 4;
+
+    private PropertyValue() {
+    }
+
     public PropertyValue(short type, float floatValue, String cssText) {
         _type = type;
         _floatValue = floatValue;
@@ -227,4 +242,156 @@ public class PropertyValue implements CSSPrimitiveValue {
             return getCssText();
         }
     }
+
+    /**
+     * Writes this value for {@link #read(StylesheetInput)}.
+     */
+    public void write(StylesheetOutput out) throws IOException {
+        out.writeShort(_type);
+        out.writeShort(_cssValueType);
+        out.writeShort(_propertyValueType);
+        out.writeString(_stringValue);
+        out.writeFloat(_floatValue);
+        out.writeString(_cssText);
+        out.writeString(_identValue == null ? null : _identValue.asString());
+        out.writeCount(_operator == null ? 0 : _operator.getType());
+
+        if (_stringArrayValue == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeCount(_stringArrayValue.length);
+            for (int i = 0; i < _stringArrayValue.length; i++) {
+                out.writeString(_stringArrayValue[i]);
+            }
+        }
+
+        if (_FSColor instanceof FSRGBColor) {
+            FSRGBColor color = (FSRGBColor) _FSColor;
+            out.writeCount(RGB_COLOR);
+            out.writeByte(color.getRed());
+            out.writeByte(color.getGreen());
+            out.writeByte(color.getBlue());
+        } else if (_FSColor instanceof FSCMYKColor) {
+            FSCMYKColor color = (FSCMYKColor) _FSColor;
+            out.writeCount(CMYK_COLOR);
+            out.writeFloat(color.getCyan());
+            out.writeFloat(color.getMagenta());
+            out.writeFloat(color.getYellow());
+            out.writeFloat(color.getBlack());
+        } else {
+            out.writeCount(NONE);
+        }
+
+        writeList(out, _values);
+        if (_function == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeString(_function.getName());
+            writeList(out, _function.getParameters());
+        }
+    }
+
+    private static void writeList(StylesheetOutput out, List values) throws IOException {
+        if (values == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        out.writeCount(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value instanceof PropertyValue) {
+                out.writeCount(VALUE);
+                ((PropertyValue) value).write(out);
+            } else if (value instanceof CounterData) {
+                CounterData counter = (CounterData) value;
+                out.writeCount(COUNTER);
+                out.writeString(counter.getName());
+                out.writeInt(counter.getValue());
+            } else {
+                throw new IOException("Can't write " + value.getClass().getName());
+            }
+        }
+    }
+
+    public static PropertyValue read(StylesheetInput in) throws IOException {
+        PropertyValue result = new PropertyValue();
+        result._type = in.readShort();
+        result._cssValueType = in.readShort();
+        result._propertyValueType = in.readShort();
+        result._stringValue = in.readString();
+        result._floatValue = in.readFloat();
+        result._cssText = in.readString();
+
+        String ident = in.readString();
+        if (ident != null) {
+            result._identValue = IdentValue.valueOf(ident);
+            if (result._identValue == null) {
+                throw new IOException("Unknown ident " + ident);
+            }
+        }
+
+        int operator = in.readCount();
+        if (operator == Token.COMMA) {
+            result._operator = Token.TK_COMMA;
+        } else if (operator == Token.VIRGULE) {
+            result._operator = Token.TK_VIRGULE;
+        } else if (operator != 0) {
+            throw new IOException("Unknown operator " + operator);
+        }
+
+        if (in.readBoolean()) {
+            String[] strings = new String[in.readCount()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readString();
+            }
+            result._stringArrayValue = strings;
+        }
+
+        switch (in.readCount()) {
+            case NONE:
+                break;
+            case RGB_COLOR:
+                result._FSColor = new FSRGBColor(
+                        in.readUnsignedByte(), in.readUnsignedByte(), in.readUnsignedByte());
+                break;
+            case CMYK_COLOR:
+                result._FSColor = new FSCMYKColor(
+                        in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+                break;
+            default:
+                throw new IOException("Malformed color");
+        }
+
+        result._values = readList(in);
+        if (in.readBoolean()) {
+            String name = in.readString();
+            result._function = new FSFunction(name, readList(in));
+        }
+        return result;
+    }
+
+    private static List readList(StylesheetInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int count = in.readCount();
+        List result = new ArrayList(count);
+        for (int i = 0; i < count; i++) {
+            switch (in.readCount()) {
+                case VALUE:
+                    result.add(read(in));
+                    break;
+                case COUNTER:
+                    String name = in.readString();
+                    result.add(new CounterData(name, in.readInt()));
+                    break;
+                default:
+                    throw new IOException("Malformed list");
+            }
+        }
+        return result;
+    }
 }
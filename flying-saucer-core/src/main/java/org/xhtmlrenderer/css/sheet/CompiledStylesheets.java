@@ -0,0 +1,283 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.sheet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.XRLog;
+
+/**
+ * Parsed stylesheets in a binary form which is read much faster than the
+ * stylesheets are parsed, so that a new VM does not need to parse the stylesheets
+ * it uses before it renders its first document.
+ * <p>
+ * A bundle of compiled stylesheets is written ahead of time with
+ * {@link StylesheetCompiler} (e.g. during the build) and named by the
+ * <code>xr.css.compiled-stylesheets</code> configuration property (a file or
+ * a URL).  Stylesheets found in the bundle are then used instead of parsing
+ * the stylesheet with the same URI, including the default XHTML stylesheet.
+ * <p>
+ * A bundle records the property and ident tables it was written with.  If
+ * they differ from the ones of this VM (i.e. it was written by a different
+ * version), the bundle is ignored and the stylesheets are parsed as usual.
+ * It also records a hash of the text each stylesheet was compiled from.  The
+ * stylesheet is still read, but a compiled stylesheet is only used if its
+ * text is unchanged.
+ */
+public class CompiledStylesheets {
+    private static final int MAGIC = 0x46534353; // FSCS
+    private static final int FORMAT_VERSION = 2;
+
+    private static Map _compiled;
+
+    private CompiledStylesheets() {
+    }
+
+    /**
+     * @return whether there is a compiled stylesheet for <code>uri</code>,
+     * i.e. whether its text should be passed to
+     * {@link #get(String, int, byte[])}
+     */
+    public static boolean contains(String uri) {
+        synchronized (CompiledStylesheets.class) {
+            if (_compiled == null) {
+                _compiled = loadConfigured();
+            }
+            return uri != null && _compiled.containsKey(uri);
+        }
+    }
+
+    /**
+     * @param source the current text of the stylesheet
+     * @return a new copy of the compiled stylesheet for <code>uri</code> or
+     * <code>null</code> if there is none with the given origin, or it was
+     * compiled from a different text
+     */
+    public static Stylesheet get(String uri, int origin, byte[] source) {
+        Compiled compiled;
+        synchronized (CompiledStylesheets.class) {
+            if (_compiled == null) {
+                _compiled = loadConfigured();
+            }
+            if (uri == null || (compiled = (Compiled) _compiled.get(uri)) == null) {
+                return null;
+            }
+        }
+        if (compiled.getSourceHash() != hash(source)) {
+            XRLog.cssParse(Level.INFO, "Compiled stylesheet " + uri + " is out of date, parsing it");
+            return null;
+        }
+        try {
+            Stylesheet result = new StylesheetInput(new ByteArrayInputStream(compiled.getData())).readStylesheet();
+            return result.getOrigin() == origin ? result : null;
+        } catch (IOException e) {
+            XRLog.cssParse(Level.WARNING, "Couldn't read compiled stylesheet " + uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the stylesheets of a bundle to the compiled stylesheets.
+     *
+     * @throws IOException if the bundle cannot be read or was written for
+     * different property or ident tables
+     */
+    public static void register(InputStream bundle) throws IOException {
+        Map stylesheets = read(bundle);
+        synchronized (CompiledStylesheets.class) {
+            if (_compiled == null) {
+                _compiled = loadConfigured();
+            }
+            _compiled.putAll(stylesheets);
+        }
+    }
+
+    /**
+     * Forgets all compiled stylesheets, including the configured ones.
+     */
+    public static synchronized void clear() {
+        _compiled = new HashMap();
+    }
+
+    /**
+     * Writes a bundle of stylesheets.
+     *
+     * @param stylesheets the stylesheets to write by URI
+     * @param sources the text of each stylesheet (as <code>byte[]</code>)
+     * by URI
+     */
+    public static void write(Map stylesheets, Map sources, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(getTablesVersion());
+        data.writeInt(stylesheets.size());
+        for (Iterator i = stylesheets.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            byte[] source = (byte[]) sources.get(entry.getKey());
+            if (source == null) {
+                throw new IllegalArgumentException("No text given for " + entry.getKey());
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            StylesheetOutput sheet = new StylesheetOutput(bytes);
+            sheet.writeStylesheet((Stylesheet) entry.getValue());
+            sheet.flush();
+
+            data.writeUTF((String) entry.getKey());
+            data.writeLong(hash(source));
+            data.writeInt(bytes.size());
+            bytes.writeTo(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * @return the compiled stylesheets of a bundle by URI
+     */
+    private static Map read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a compiled stylesheet bundle");
+        }
+        int version = data.readInt();
+        long tablesVersion = data.readLong();
+        if (version != FORMAT_VERSION || tablesVersion != getTablesVersion()) {
+            throw new IOException("Compiled stylesheet bundle was written by a different version");
+        }
+        int count = data.readInt();
+        Map result = new HashMap(count * 2);
+        for (int i = 0; i < count; i++) {
+            String uri = data.readUTF();
+            long sourceHash = data.readLong();
+            byte[] bytes = new byte[data.readInt()];
+            data.readFully(bytes);
+            result.put(uri, new Compiled(sourceHash, bytes));
+        }
+        return result;
+    }
+
+    /**
+     * @return a hash of the names of all properties and idents
+     */
+    static long getTablesVersion() {
+        List names = new ArrayList();
+        for (Iterator i = CSSName.allCSS2PropertyNames(); i.hasNext(); ) {
+            names.add("p:" + i.next());
+        }
+        for (Iterator i = IdentValue.allIdentStrings(); i.hasNext(); ) {
+            names.add("i:" + i.next());
+        }
+        Collections.sort(names);
+
+        long result = 0xcbf29ce484222325L;
+        for (int i = 0; i < names.size(); i++) {
+            String name = (String) names.get(i);
+            for (int j = 0; j < name.length(); j++) {
+                result ^= name.charAt(j);
+                result *= 0x100000001b3L;
+            }
+            result ^= '\n';
+            result *= 0x100000001b3L;
+        }
+        return result;
+    }
+
+    /**
+     * @return the 64 bit FNV-1a hash of the text of a stylesheet
+     */
+    static long hash(byte[] source) {
+        long result = 0xcbf29ce484222325L;
+        for (int i = 0; i < source.length; i++) {
+            result ^= source[i] & 0xff;
+            result *= 0x100000001b3L;
+        }
+        return result;
+    }
+
+    private static Map loadConfigured() {
+        Map result = new HashMap();
+        String location = Configuration.valueFor("xr.css.compiled-stylesheets", "");
+        if (location.length() == 0) {
+            return result;
+        }
+        InputStream in = null;
+        try {
+            try {
+                in = new URL(location).openStream();
+            } catch (MalformedURLException e) {
+                in = new FileInputStream(location);
+            }
+            result.putAll(read(in));
+            XRLog.load("Loaded " + result.size() + " compiled stylesheets from " + location);
+        } catch (IOException e) {
+            XRLog.load(Level.WARNING, "Couldn't load compiled stylesheets from " + location + ": " + e.getMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A serialized stylesheet and the hash of the text it was compiled from.
+     */
+    private static final class Compiled {
+        private final long _sourceHash;
+        private final byte[] _data;
+
+        private Compiled(long sourceHash, byte[] data) {
+            _sourceHash = sourceHash;
+            _data = data;
+        }
+
+        public long getSourceHash() {
+            return _sourceHash;
+        }
+
+        public byte[] getData() {
+            return _data;
+        }
+    }
+}
@@ -42,6 +42,10 @@ public class FontFaceRule implements RulesetContainer {
         _ruleset = ruleset;
     }
 
+    public Ruleset getRuleset() {
+        return _ruleset;
+    }
+
     public int getOrigin() {
         return _origin;
     }
@@ -35,6 +35,10 @@ public class MediaRule implements RulesetContainer {
         _mediaTypes.add(medium);
     }
     
+    public List getMediaTypes() {
+        return _mediaTypes;
+    }
+
     public boolean matches(String medium) {
         if (medium.equalsIgnoreCase("all") || _mediaTypes.contains("all")) {
             return true;
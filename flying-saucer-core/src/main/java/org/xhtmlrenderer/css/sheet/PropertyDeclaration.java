@@ -73,6 +73,7 @@ public class PropertyDeclaration {
     private boolean identIsSet;
     
     private String _fingerprint;
+    private long _fingerprintHash;
 
     /**
      * ImportanceAndOrigin of stylesheet - how many different
@@ -161,6 +162,34 @@ public class PropertyDeclaration {
         return _fingerprint;
     }
 
+    /**
+     * Returns a 64 bit hash of {@link #getFingerprint()}.
+     */
+    public long getFingerprintHash() {
+        if (_fingerprintHash == 0) {
+            String fingerprint = getFingerprint();
+            // FNV-1a
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < fingerprint.length(); i++) {
+                hash ^= fingerprint.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            _fingerprintHash = hash;
+        }
+        return _fingerprintHash;
+    }
+
+    /**
+     * Returns <code>true</code> if <code>other</code> declares the same value
+     * for the same property (regardless of its origin and importance).
+     */
+    public boolean hasSameFingerprint(PropertyDeclaration other) {
+        return this == other ||
+                (cssName == other.cssName &&
+                        getFingerprintHash() == other.getFingerprintHash() &&
+                        getFingerprint().equals(other.getFingerprint()));
+    }
+
     /**
      * Returns an int representing the combined origin and importance of the
      * property as declared. The int is assigned such that default origin and
@@ -0,0 +1,129 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.sheet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xhtmlrenderer.context.StylesheetFactoryImpl;
+import org.xhtmlrenderer.resource.CSSResource;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.IOUtil;
+
+/**
+ * Writes a bundle of {@link CompiledStylesheets} holding the default XHTML
+ * stylesheet and the given stylesheets.
+ * <p>
+ * Usage: <code>StylesheetCompiler output-file [stylesheet-uri ...]</code>
+ * <p>
+ * The URIs must be the ones the documents use to refer to the
+ * stylesheets.  Existing files may also be given by name.
+ */
+public class StylesheetCompiler {
+    private final PrintStream _out;
+    private final PrintStream _err;
+
+    public StylesheetCompiler(PrintStream out, PrintStream err) {
+        _out = out;
+        _err = err;
+    }
+
+    /**
+     * @return the exit status, 0 if the bundle was written
+     */
+    public int compile(String[] args) throws IOException {
+        if (args.length < 1) {
+            _err.println("Usage: StylesheetCompiler output-file [stylesheet-uri ...]");
+            return 1;
+        }
+        NaiveUserAgent uac = new NaiveUserAgent();
+        StylesheetFactoryImpl factory = new StylesheetFactoryImpl(uac);
+        Map stylesheets = new LinkedHashMap();
+        Map sources = new LinkedHashMap();
+
+        XhtmlNamespaceHandler handler = new XhtmlNamespaceHandler();
+        byte[] defaultSource = handler.readDefaultStylesheet();
+        if (defaultSource != null) {
+            StylesheetInfo info = new StylesheetInfo();
+            info.setUri(handler.getNamespace());
+            info.setOrigin(StylesheetInfo.USER_AGENT);
+            stylesheets.put(info.getUri(), factory.parse(
+                    new InputStreamReader(new ByteArrayInputStream(defaultSource)), info));
+            sources.put(info.getUri(), defaultSource);
+        }
+        for (int i = 1; i < args.length; i++) {
+            String uri = args[i];
+            File file = new File(uri);
+            if (file.exists()) {
+                uri = file.toURI().toString();
+            }
+            byte[] source = readSource(uac, uri);
+            if (source == null) {
+                _err.println("Couldn't load " + uri);
+                return 1;
+            }
+            StylesheetInfo info = new StylesheetInfo();
+            info.setUri(uri);
+            info.setOrigin(StylesheetInfo.AUTHOR);
+            stylesheets.put(uri, factory.parse(new InputStreamReader(new ByteArrayInputStream(source),
+                    Configuration.valueFor("xr.stylesheets.charset-name", "UTF-8")), info));
+            sources.put(uri, source);
+        }
+
+        OutputStream out = new FileOutputStream(args[0]);
+        try {
+            CompiledStylesheets.write(stylesheets, sources, out);
+        } finally {
+            out.close();
+        }
+        _out.println("Wrote " + stylesheets.size() + " stylesheets to " + args[0]);
+        return 0;
+    }
+
+    private static byte[] readSource(NaiveUserAgent uac, String uri) throws IOException {
+        CSSResource cr = uac.getCSSResource(uri);
+        InputStream is = cr == null || cr.getResourceInputSource() == null ?
+                null : cr.getResourceInputSource().getByteStream();
+        if (is == null) {
+            return null;
+        }
+        try {
+            return IOUtil.readBytes(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int status = new StylesheetCompiler(System.out, System.err).compile(args);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.sheet;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.constants.MarginBoxName;
+import org.xhtmlrenderer.css.newmatch.Selector;
+import org.xhtmlrenderer.css.parser.PropertyValue;
+
+/**
+ * Reads a {@link Stylesheet} written by {@link StylesheetOutput}.  Properties,
+ * idents and the like are read by name, so they are the instances of this VM.
+ * Malformed input results in an <code>IOException</code>.
+ *
+ * @see CompiledStylesheets
+ */
+public class StylesheetInput extends DataInputStream {
+    private final List _strings = new ArrayList();
+
+    public StylesheetInput(InputStream in) {
+        super(in);
+    }
+
+    public int readCount() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readUnsignedByte();
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed count");
+    }
+
+    public String readString() throws IOException {
+        int code = readCount();
+        switch (code) {
+            case StylesheetOutput.NULL_STRING:
+                return null;
+            case StylesheetOutput.SHORT_STRING: {
+                String result = readUTF();
+                _strings.add(result);
+                return result;
+            }
+            case StylesheetOutput.LONG_STRING: {
+                char[] chars = new char[readCount()];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = readChar();
+                }
+                String result = new String(chars);
+                _strings.add(result);
+                return result;
+            }
+            default:
+                int index = code - StylesheetOutput.STRING_REFERENCE;
+                if (index >= _strings.size()) {
+                    throw new IOException("Malformed string reference " + index);
+                }
+                return (String) _strings.get(index);
+        }
+    }
+
+    public List readStrings() throws IOException {
+        int count = readCount();
+        List result = new ArrayList(count);
+        for (int i = 0; i < count; i++) {
+            result.add(readString());
+        }
+        return result;
+    }
+
+    public Stylesheet readStylesheet() throws IOException {
+        Stylesheet result = new Stylesheet(readString(), readCount());
+
+        int imports = readCount();
+        for (int i = 0; i < imports; i++) {
+            StylesheetInfo info = new StylesheetInfo();
+            info.setUri(readString());
+            info.setOrigin(readCount());
+            info.setType(readString());
+            info.setTitle(readString());
+            info.setMedia(readStrings());
+            result.addImportRule(info);
+        }
+
+        int fontFaces = readCount();
+        for (int i = 0; i < fontFaces; i++) {
+            FontFaceRule rule = new FontFaceRule(readCount());
+            Ruleset ruleset = readRuleset();
+            if (ruleset != null) {
+                rule.addContent(ruleset);
+            }
+            result.addFontFaceRule(rule);
+        }
+
+        int contents = readCount();
+        for (int i = 0; i < contents; i++) {
+            switch (readCount()) {
+                case StylesheetOutput.RULESET:
+                    result.addContent(readRuleset());
+                    break;
+                case StylesheetOutput.MEDIA_RULE: {
+                    MediaRule rule = new MediaRule(readCount());
+                    List media = readStrings();
+                    for (int j = 0; j < media.size(); j++) {
+                        rule.addMedium((String) media.get(j));
+                    }
+                    int rulesets = readCount();
+                    for (int j = 0; j < rulesets; j++) {
+                        rule.addContent(readRuleset());
+                    }
+                    result.addContent(rule);
+                    break;
+                }
+                case StylesheetOutput.PAGE_RULE:
+                    result.addContent(readPageRule());
+                    break;
+                default:
+                    throw new IOException("Malformed stylesheet contents");
+            }
+        }
+        return result;
+    }
+
+    private PageRule readPageRule() throws IOException {
+        PageRule result = new PageRule(readCount());
+        String name = readString();
+        if (name != null) {
+            result.setName(name);
+        }
+        String pseudoPage = readString();
+        if (pseudoPage != null) {
+            result.setPseudoPage(pseudoPage);
+        }
+        result.setRuleset(readRuleset());
+
+        int marginBoxes = readCount();
+        for (int i = 0; i < marginBoxes; i++) {
+            String boxName = readString();
+            MarginBoxName marginBox = MarginBoxName.valueOf(boxName);
+            if (marginBox == null) {
+                throw new IOException("Unknown margin box " + boxName);
+            }
+            result.addMarginBoxProperties(marginBox, readDeclarations());
+        }
+        return result;
+    }
+
+    private Ruleset readRuleset() throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        Ruleset result = new Ruleset(readCount());
+        result.addAllProperties(readDeclarations());
+
+        int selectors = readCount();
+        for (int i = 0; i < selectors; i++) {
+            result.addFSSelector(Selector.read(this, result));
+        }
+        return result;
+    }
+
+    private List readDeclarations() throws IOException {
+        int count = readCount();
+        List result = new ArrayList(count);
+        for (int i = 0; i < count; i++) {
+            String name = readString();
+            CSSName cssName = CSSName.getByPropertyName(name);
+            if (cssName == null) {
+                throw new IOException("Unknown property " + name);
+            }
+            boolean important = readBoolean();
+            int origin = readCount();
+            result.add(new PropertyDeclaration(cssName, PropertyValue.read(this), important, origin));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.sheet;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.xhtmlrenderer.css.newmatch.Selector;
+import org.xhtmlrenderer.css.parser.PropertyValue;
+
+/**
+ * Writes a parsed {@link Stylesheet} in the binary form read by
+ * {@link StylesheetInput}.  Each string is written once and referred to by
+ * its index afterwards, so the many repeated names of a stylesheet (e.g.
+ * properties, idents and class names) take little space and are shared
+ * when read.
+ *
+ * @see CompiledStylesheets
+ */
+public class StylesheetOutput extends DataOutputStream {
+    static final int RULESET = 1;
+    static final int MEDIA_RULE = 2;
+    static final int PAGE_RULE = 3;
+
+    static final int NULL_STRING = 0;
+    static final int SHORT_STRING = 1;
+    static final int LONG_STRING = 2;
+    static final int STRING_REFERENCE = 3;
+
+    private final Map _strings = new HashMap();
+
+    public StylesheetOutput(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Writes a non negative number using one byte per 7 bits.
+     */
+    public void writeCount(int count) throws IOException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count " + count);
+        }
+        while (count > 0x7f) {
+            write((count & 0x7f) | 0x80);
+            count >>>= 7;
+        }
+        write(count);
+    }
+
+    /**
+     * Writes a string (which may be <code>null</code>), or a reference to it
+     * if it was written before.
+     */
+    public void writeString(String s) throws IOException {
+        if (s == null) {
+            writeCount(NULL_STRING);
+            return;
+        }
+        Integer index = (Integer) _strings.get(s);
+        if (index != null) {
+            writeCount(STRING_REFERENCE + index.intValue());
+            return;
+        }
+        _strings.put(s, new Integer(_strings.size()));
+        // at most 3 bytes per char, so writeUTF() can't fail
+        if (s.length() <= 0xffff / 3) {
+            writeCount(SHORT_STRING);
+            writeUTF(s);
+        } else {
+            writeCount(LONG_STRING);
+            writeCount(s.length());
+            writeChars(s);
+        }
+    }
+
+    public void writeStrings(List strings) throws IOException {
+        writeCount(strings.size());
+        for (Iterator i = strings.iterator(); i.hasNext(); ) {
+            writeString((String) i.next());
+        }
+    }
+
+    public void writeStylesheet(Stylesheet sheet) throws IOException {
+        writeString(sheet.getURI());
+        writeCount(sheet.getOrigin());
+
+        List imports = sheet.getImportRules();
+        writeCount(imports.size());
+        for (Iterator i = imports.iterator(); i.hasNext(); ) {
+            StylesheetInfo info = (StylesheetInfo) i.next();
+            writeString(info.getUri());
+            writeCount(info.getOrigin());
+            writeString(info.getType());
+            writeString(info.getTitle());
+            writeStrings(info.getMedia());
+        }
+
+        List fontFaces = sheet.getFontFaceRules();
+        writeCount(fontFaces.size());
+        for (Iterator i = fontFaces.iterator(); i.hasNext(); ) {
+            FontFaceRule rule = (FontFaceRule) i.next();
+            writeCount(rule.getOrigin());
+            writeRuleset(rule.getRuleset());
+        }
+
+        List contents = sheet.getContents();
+        writeCount(contents.size());
+        for (Iterator i = contents.iterator(); i.hasNext(); ) {
+            Object obj = i.next();
+            if (obj instanceof Ruleset) {
+                writeCount(RULESET);
+                writeRuleset((Ruleset) obj);
+            } else if (obj instanceof MediaRule) {
+                MediaRule rule = (MediaRule) obj;
+                writeCount(MEDIA_RULE);
+                writeCount(rule.getOrigin());
+                writeStrings(rule.getMediaTypes());
+                writeCount(rule.getContents().size());
+                for (Iterator j = rule.getContents().iterator(); j.hasNext(); ) {
+                    writeRuleset((Ruleset) j.next());
+                }
+            } else if (obj instanceof PageRule) {
+                writeCount(PAGE_RULE);
+                writePageRule((PageRule) obj);
+            } else {
+                throw new IOException("Can't write " + obj.getClass().getName());
+            }
+        }
+    }
+
+    private void writePageRule(PageRule rule) throws IOException {
+        writeCount(rule.getOrigin());
+        writeString(rule.getName());
+        writeString(rule.getPseudoPage());
+        writeRuleset(rule.getRuleset());
+
+        Map marginBoxes = rule.getMarginBoxes();
+        writeCount(marginBoxes.size());
+        for (Iterator i = marginBoxes.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            writeString(entry.getKey().toString());
+            writeDeclarations((List) entry.getValue());
+        }
+    }
+
+    /**
+     * Writes a ruleset, which may be <code>null</code>.
+     */
+    private void writeRuleset(Ruleset ruleset) throws IOException {
+        if (ruleset == null) {
+            writeBoolean(false);
+            return;
+        }
+        writeBoolean(true);
+        writeCount(ruleset.getOrigin());
+        writeDeclarations(ruleset.getPropertyDeclarations());
+
+        List selectors = ruleset.getFSSelectors();
+        writeCount(selectors.size());
+        for (Iterator i = selectors.iterator(); i.hasNext(); ) {
+            ((Selector) i.next()).write(this);
+        }
+    }
+
+    private void writeDeclarations(List declarations) throws IOException {
+        writeCount(declarations.size());
+        for (Iterator i = declarations.iterator(); i.hasNext(); ) {
+            PropertyDeclaration decl = (PropertyDeclaration) i.next();
+            writeString(decl.getPropertyName());
+            writeBoolean(decl.isImportant());
+            writeCount(decl.getOrigin());
+            ((PropertyValue) decl.getValue()).write(this);
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.logging.Level;
 import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.constants.IdentValue;
 import org.xhtmlrenderer.css.newmatch.CascadedStyle;
+import org.xhtmlrenderer.css.newmatch.CascadedStyleKey;
 import org.xhtmlrenderer.css.parser.FSColor;
 import org.xhtmlrenderer.css.parser.FSFunction;
 import org.xhtmlrenderer.css.parser.FSRGBColor;
@@ -175,12 +176,12 @@ public class CalculatedStyle {
      * @return The derived child style
      */
     public synchronized CalculatedStyle deriveStyle(CascadedStyle matched) {
-        String fingerprint = matched.getFingerprint();
-        CalculatedStyle cs = (CalculatedStyle) _childCache.get(fingerprint);
+        CascadedStyleKey key = matched.getKey();
+        CalculatedStyle cs = (CalculatedStyle) _childCache.get(key);
 
         if (cs == null) {
             cs = new CalculatedStyle(this, matched);
-            _childCache.put(fingerprint, cs);
+            _childCache.put(key, cs);
         }
         return cs;
     }
@@ -0,0 +1,111 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.css.style.derived;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xhtmlrenderer.css.style.FSDerivedValue;
+
+/**
+ * A thread safe, bounded cache of immutable derived values, keyed by their CSS
+ * text.  Once the cache is full, new values are not cached any more (values
+ * that are common in a document are usually seen early), so it never needs to
+ * evict or lock.
+ */
+public class DerivedValueCache {
+    private final String _name;
+    private final int _maxSize;
+    private final ConcurrentMap _values;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _rejected = new AtomicLong();
+
+    public DerivedValueCache(String name, int maxSize) {
+        _name = name;
+        _maxSize = maxSize;
+        _values = new ConcurrentHashMap(Math.min(maxSize, 256));
+    }
+
+    /**
+     * @return the cached value for <code>cssText</code> or <code>null</code>
+     */
+    public FSDerivedValue get(String cssText) {
+        FSDerivedValue result = (FSDerivedValue) _values.get(cssText);
+        if (result == null) {
+            _misses.incrementAndGet();
+        } else {
+            _hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Caches <code>value</code> unless the cache is full.
+     *
+     * @return the value to use, i.e. a value cached concurrently by another
+     * thread or <code>value</code>
+     */
+    public FSDerivedValue put(String cssText, FSDerivedValue value) {
+        if (_values.size() >= _maxSize) {
+            _rejected.incrementAndGet();
+            return value;
+        }
+        FSDerivedValue previous = (FSDerivedValue) _values.putIfAbsent(cssText, value);
+        return previous == null ? value : previous;
+    }
+
+    public void clear() {
+        _values.clear();
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public int getSize() {
+        return _values.size();
+    }
+
+    public int getMaxSize() {
+        return _maxSize;
+    }
+
+    public long getHits() {
+        return _hits.get();
+    }
+
+    public long getMisses() {
+        return _misses.get();
+    }
+
+    /**
+     * @return the number of values not cached because the cache was full
+     */
+    public long getRejected() {
+        return _rejected.get();
+    }
+
+    public String toString() {
+        return _name + ": size=" + getSize() + "/" + _maxSize + ", hits=" + getHits() +
+                ", misses=" + getMisses() + ", rejected=" + getRejected();
+    }
+}
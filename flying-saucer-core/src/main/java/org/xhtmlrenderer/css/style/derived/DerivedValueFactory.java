@@ -20,19 +20,28 @@
  */
 package org.xhtmlrenderer.css.style.derived;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import org.w3c.dom.css.CSSPrimitiveValue;
 import org.w3c.dom.css.CSSValue;
 import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.constants.IdentValue;
 import org.xhtmlrenderer.css.parser.PropertyValue;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.DerivedValue;
 import org.xhtmlrenderer.css.style.FSDerivedValue;
+import org.xhtmlrenderer.util.Configuration;
 
 public class DerivedValueFactory {
-    private static final Map CACHED_COLORS = new HashMap();
-    
+    private static final int CACHE_SIZE = Configuration.valueAsInt("xr.css.derived-value-cache-size", 4096);
+
+    /*
+     * Derived values which do not depend on the style they are used in are
+     * shared between styles (and documents).  Idents are singletons anyway.
+     */
+    private static final DerivedValueCache COLORS = new DerivedValueCache("colors", CACHE_SIZE);
+    private static final DerivedValueCache LENGTHS = new DerivedValueCache("lengths", CACHE_SIZE);
+    private static final DerivedValueCache NUMBERS = new DerivedValueCache("numbers", CACHE_SIZE);
+    private static final DerivedValueCache STRINGS = new DerivedValueCache("strings", CACHE_SIZE);
+
     public static FSDerivedValue newDerivedValue(
             CalculatedStyle style, CSSName cssName, PropertyValue value) {
         if (value.getCssValueType() == CSSValue.CSS_INHERIT) {
@@ -40,7 +49,14 @@ public class DerivedValueFactory {
         }
         switch (value.getPropertyValueType()) {
             case PropertyValue.VALUE_TYPE_LENGTH:
-                return new LengthValue(style, cssName, value);
+                if (! isStyleIndependentLength(value.getPrimitiveType())) {
+                    return new LengthValue(style, cssName, value);
+                }
+                FSDerivedValue length = LENGTHS.get(value.getCssText());
+                if (length == null) {
+                    length = LENGTHS.put(value.getCssText(), new LengthValue(null, cssName, value));
+                }
+                return length;
             case PropertyValue.VALUE_TYPE_IDENT:
                 IdentValue ident = value.getIdentValue();
                 if (ident == null) {
@@ -48,14 +64,24 @@ public class DerivedValueFactory {
                 }
                 return ident;
             case PropertyValue.VALUE_TYPE_STRING:
-                return new StringValue(cssName, value);
+                FSDerivedValue string = STRINGS.get(value.getCssText());
+                if (string == null) {
+                    string = STRINGS.put(value.getCssText(), new StringValue(cssName, value));
+                } else if (! isSameString((DerivedValue)string, value)) {
+                    // e.g. the same relative URI in stylesheets with different base URIs
+                    string = new StringValue(cssName, value);
+                }
+                return string;
             case PropertyValue.VALUE_TYPE_NUMBER:
-                return new NumberValue(cssName, value);
+                FSDerivedValue number = NUMBERS.get(value.getCssText());
+                if (number == null) {
+                    number = NUMBERS.put(value.getCssText(), new NumberValue(cssName, value));
+                }
+                return number;
             case PropertyValue.VALUE_TYPE_COLOR:
-                FSDerivedValue color = (FSDerivedValue)CACHED_COLORS.get(value.getCssText());
+                FSDerivedValue color = COLORS.get(value.getCssText());
                 if (color == null) {
-                    color = new ColorValue(cssName, value);
-                    CACHED_COLORS.put(value.getCssText(), color);
+                    color = COLORS.put(value.getCssText(), new ColorValue(cssName, value));
                 }
                 return color;
             case PropertyValue.VALUE_TYPE_LIST:
@@ -66,4 +92,57 @@ public class DerivedValueFactory {
                 throw new IllegalArgumentException();
         }
     }
+
+    /**
+     * Lengths in these units are converted without looking at the style
+     * (see {@link LengthValue#calcFloatProportionalValue}).
+     */
+    private static boolean isStyleIndependentLength(short primitiveType) {
+        switch (primitiveType) {
+            case CSSPrimitiveValue.CSS_PX:
+            case CSSPrimitiveValue.CSS_IN:
+            case CSSPrimitiveValue.CSS_CM:
+            case CSSPrimitiveValue.CSS_MM:
+            case CSSPrimitiveValue.CSS_PT:
+            case CSSPrimitiveValue.CSS_PC:
+            case CSSPrimitiveValue.CSS_NUMBER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSameString(DerivedValue cached, PropertyValue value) {
+        if (cached.getCssSacUnitType() != value.getPrimitiveType()) {
+            return false;
+        }
+        String expected = value.getStringValue();
+        return expected == null || cached.getStringValue().equals(expected) ||
+                ! isStringValueUsed(value.getPrimitiveType());
+    }
+
+    /**
+     * @see DerivedValue#getStringValue()
+     */
+    private static boolean isStringValueUsed(short primitiveType) {
+        return primitiveType == CSSPrimitiveValue.CSS_IDENT ||
+                primitiveType == CSSPrimitiveValue.CSS_STRING ||
+                primitiveType == CSSPrimitiveValue.CSS_URI ||
+                primitiveType == CSSPrimitiveValue.CSS_ATTR;
+    }
+
+    /**
+     * @return the caches of shared derived values, e.g. to report their
+     * statistics
+     */
+    public static DerivedValueCache[] getCaches() {
+        return new DerivedValueCache[] { COLORS, LENGTHS, NUMBERS, STRINGS };
+    }
+
+    public static void clearCaches() {
+        DerivedValueCache[] caches = getCaches();
+        for (int i = 0; i < caches.length; i++) {
+            caches[i].clear();
+        }
+    }
 }
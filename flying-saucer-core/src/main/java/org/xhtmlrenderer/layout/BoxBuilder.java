@@ -82,6 +82,7 @@ public class BoxBuilder {
     public static BlockBox createRootBox(LayoutContext c, Document document) {
         Element root = document.getDocumentElement();
 
+        c.getSharedContext().resolveStyles(document);
         CalculatedStyle style = c.getSharedContext().getStyle(root);
 
         BlockBox result;
@@ -143,7 +144,7 @@ public class BoxBuilder {
         Element source = c.getRootLayer().getMaster().getElement(); // HACK
 
         ChildBoxInfo info = new ChildBoxInfo();
-        CalculatedStyle pageStyle = new EmptyStyle().deriveStyle(pageInfo.getPageStyle());
+        CalculatedStyle pageStyle = pageInfo.getCalculatedPageStyle();
 
         CalculatedStyle tableStyle = pageStyle.deriveStyle(
                 CascadedStyle.createLayoutStyle(new PropertyDeclaration[] {
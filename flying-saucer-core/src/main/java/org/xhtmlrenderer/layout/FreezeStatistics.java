@@ -0,0 +1,178 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.layout;
+
+/**
+ * Counts what was released when a laid out box tree was frozen, i.e. when the
+ * state only needed during layout was dropped before painting (see
+ * {@link org.xhtmlrenderer.render.Box#releaseLayoutState(FreezeStatistics)}),
+ * and estimates the memory this reclaims (see {@link #getEstimatedBytes()}).
+ * Statistics of several freezes (e.g. of the documents of a batch) can be
+ * summed with {@link #add(FreezeStatistics)}.
+ */
+public class FreezeStatistics {
+    /*
+     * Approximate sizes on a 64 bit JVM with compressed references.  An
+     * InlineBox has a 12 byte header, 8 references, 3 ints and 4 booleans.
+     * An inline content list is an ArrayList and its array, which has a slot
+     * per item.  The element style map is made of IdentityHashMaps, which
+     * keep a key and a value slot per entry and are at most 2/3 full.  The
+     * cascaded style map is a HashMap, with a node and a table slot per entry.
+     */
+    private static final int INLINE_BOX_BYTES = 64;
+    private static final int INLINE_CONTENT_LIST_BYTES = 40;
+    private static final int INLINE_CONTENT_SLOT_BYTES = 4;
+    private static final int STYLE_ENTRY_BYTES = 12;
+    private static final int CASCADED_STYLE_ENTRY_BYTES = 36;
+
+    private int _freezes;
+    private long _boxes;
+    private long _inlineContentLists;
+    private long _inlineContent;
+    private long _inlineBoxes;
+    private long _inlineTextChars;
+    private long _styles;
+    private long _cascadedStyles;
+    private long _elapsedMillis;
+
+    public void add(FreezeStatistics other) {
+        _freezes += other._freezes;
+        _boxes += other._boxes;
+        _inlineContentLists += other._inlineContentLists;
+        _inlineContent += other._inlineContent;
+        _inlineBoxes += other._inlineBoxes;
+        _inlineTextChars += other._inlineTextChars;
+        _styles += other._styles;
+        _cascadedStyles += other._cascadedStyles;
+        _elapsedMillis += other._elapsedMillis;
+    }
+
+    public void freezeDone(long elapsedMillis) {
+        _freezes++;
+        _elapsedMillis += elapsedMillis;
+    }
+
+    public void boxVisited() {
+        _boxes++;
+    }
+
+    /**
+     * @param count the number of items in the released inline content list
+     * @param inlineBoxes the number of these items which are inline boxes
+     * (the others are block boxes, which stay in the box tree)
+     * @param textChars the number of text characters of these inline boxes
+     */
+    public void inlineContentReleased(int count, int inlineBoxes, int textChars) {
+        _inlineContentLists++;
+        _inlineContent += count;
+        _inlineBoxes += inlineBoxes;
+        _inlineTextChars += textChars;
+    }
+
+    public void stylesReleased(int count) {
+        _styles += count;
+    }
+
+    public void cascadedStylesReleased(int count) {
+        _cascadedStyles += count;
+    }
+
+    /**
+     * @return the number of freezes these statistics cover
+     */
+    public int getFreezes() {
+        return _freezes;
+    }
+
+    /**
+     * @return the number of boxes visited
+     */
+    public long getBoxes() {
+        return _boxes;
+    }
+
+    /**
+     * @return the number of inline content items (inline boxes and block
+     * boxes pending inline layout) no longer referenced by their block
+     */
+    public long getInlineContent() {
+        return _inlineContent;
+    }
+
+    /**
+     * @return the number of inline boxes no longer referenced by their block
+     */
+    public long getInlineBoxes() {
+        return _inlineBoxes;
+    }
+
+    /**
+     * @return the number of text characters held by the released inline
+     * boxes.  The text is shared with the laid out lines, so it is not
+     * released itself.
+     */
+    public long getInlineTextChars() {
+        return _inlineTextChars;
+    }
+
+    /**
+     * @return the number of calculated styles dropped from the element style
+     * cache.  Most of them are still referenced by their boxes.
+     */
+    public long getStyles() {
+        return _styles;
+    }
+
+    /**
+     * @return the number of per element cascaded style mappers dropped
+     */
+    public long getCascadedStyles() {
+        return _cascadedStyles;
+    }
+
+    public long getElapsedMillis() {
+        return _elapsedMillis;
+    }
+
+    /**
+     * Estimates the heap reclaimed from the counts: the released inline
+     * boxes, inline content lists and style map entries.  It is a lower
+     * bound, as the trimmed capacity of child lists, the other released
+     * layout state and the styles only referenced by the dropped map entries
+     * are not included.
+     *
+     * @return the estimated number of bytes released
+     */
+    public long getEstimatedBytes() {
+        return _inlineBoxes * INLINE_BOX_BYTES +
+                _inlineContentLists * INLINE_CONTENT_LIST_BYTES +
+                _inlineContent * INLINE_CONTENT_SLOT_BYTES +
+                _styles * STYLE_ENTRY_BYTES +
+                _cascadedStyles * CASCADED_STYLE_ENTRY_BYTES;
+    }
+
+    public String toString() {
+        return "freezes=" + _freezes + ", boxes=" + _boxes +
+                ", inlineContent=" + _inlineContent + " (" + _inlineBoxes + " inline boxes, " +
+                _inlineTextChars + " chars)" +
+                ", styles=" + _styles + ", cascadedStyles=" + _cascadedStyles +
+                ", released~" + (getEstimatedBytes() / 1024) + "KB" +
+                ", elapsed=" + _elapsedMillis + "ms";
+    }
+}
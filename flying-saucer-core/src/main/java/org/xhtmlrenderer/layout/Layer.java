@@ -31,21 +31,22 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 
 import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.constants.PageElementPosition;
 import org.xhtmlrenderer.css.newmatch.PageInfo;
-import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CssContext;
-import org.xhtmlrenderer.css.style.EmptyStyle;
 import org.xhtmlrenderer.newtable.TableCellBox;
 import org.xhtmlrenderer.render.BlockBox;
 import org.xhtmlrenderer.render.Box;
 import org.xhtmlrenderer.render.BoxDimensions;
 import org.xhtmlrenderer.render.InlineLayoutBox;
+import org.xhtmlrenderer.render.MarginAreaCache;
 import org.xhtmlrenderer.render.PageBox;
 import org.xhtmlrenderer.render.RenderingContext;
 import org.xhtmlrenderer.render.ViewportBox;
+import org.xhtmlrenderer.util.XRLog;
 
 /**
  * All positioned content as well as content with an overflow value other
@@ -78,6 +79,7 @@ public class Layer {
     
     private List _pages;
     private PageBox _lastRequestedPage = null;
+    private MarginAreaCache _marginAreaCache;
     
     private Set _pageSequences;
     private List _sortedPageSequences;
@@ -797,8 +799,7 @@ public class Layer {
         PageInfo pageInfo = c.getCss().getPageStyle(pageName, pseudoPage);
         result.setPageInfo(pageInfo);
         
-        CalculatedStyle cs = new EmptyStyle().deriveStyle(pageInfo.getPageStyle());
-        result.setStyle(cs);
+        result.setStyle(pageInfo.getCalculatedPageStyle());
         result.setOuterPageWidth(result.getWidth(c));
         
         return result;
@@ -1063,10 +1064,22 @@ public class Layer {
     
     public void layoutPages(LayoutContext c) {
         c.setRootDocumentLayer(c.getRootLayer());
+        MarginAreaCache cache = new MarginAreaCache();
         for (Iterator i = _pages.iterator(); i.hasNext(); ) {
             PageBox pageBox = (PageBox)i.next();
-            pageBox.layout(c);
+            pageBox.layout(c, cache);
         }
+        _marginAreaCache = cache;
+        XRLog.layout(Level.FINE, "Page margin areas: " + cache);
+    }
+    
+    /**
+     * @return how often the pages laid out by the last call to
+     * {@link #layoutPages(LayoutContext)} shared their margin areas, or
+     * <code>null</code> if the pages haven't been laid out
+     */
+    public MarginAreaCache getMarginAreaCache() {
+        return _marginAreaCache;
     }
     
     public void addPageSequence(BlockBox start) {
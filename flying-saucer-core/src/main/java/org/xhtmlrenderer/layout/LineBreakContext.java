@@ -20,6 +20,7 @@
 package org.xhtmlrenderer.layout;
 
 import org.w3c.dom.Text;
+import org.xhtmlrenderer.layout.breaker.ParagraphBreakPoints;
 
 /**
  * A bean which serves as a way for the layout code to pass information to the
@@ -36,6 +37,7 @@ public class LineBreakContext {
     private int _width;
     private boolean _endsOnNL;
     private Text _textNode;
+    private ParagraphBreakPoints _breakPoints;
     
     public int getLast() {
         return _master.length();
@@ -137,4 +139,17 @@ public class LineBreakContext {
     public void setTextNode(Text _text) {
         this._textNode = _text;
     }
+
+    /**
+     * The break points of the master text, shared by all lines the master
+     * text is broken into. May be <code>null</code> or refer to a previous
+     * master text.
+     */
+    public ParagraphBreakPoints getBreakPoints() {
+        return _breakPoints;
+    }
+
+    public void setBreakPoints(ParagraphBreakPoints breakPoints) {
+        _breakPoints = breakPoints;
+    }
 }
@@ -0,0 +1,202 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.layout;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.context.StyleReference;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.EmptyStyle;
+import org.xhtmlrenderer.util.XRLog;
+import org.xhtmlrenderer.util.XRRuntimeException;
+
+/**
+ * Computes the styles of all elements of a document with several threads
+ * before layout, instead of one at a time as the box tree is built.
+ * <p>
+ * The style of an element only depends on the style of its parent, so once
+ * the top of the tree has been resolved, the subtrees below it are resolved
+ * independently.  The top of the tree is resolved breadth first until there
+ * are enough subtrees to keep the threads busy; each subtree is then one task.
+ * <p>
+ * The document must not be modified while its styles are resolved.  Since
+ * DOM implementations commonly create nodes lazily when they are first visited
+ * (e.g. Xerces' deferred DOM), the whole tree is walked once before any task
+ * is started.
+ */
+public class ParallelStyleResolver {
+    /** Subtrees per thread, more balance the load of uneven subtrees */
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final StyleReference _css;
+    private final int _threads;
+    private final int _threshold;
+
+    /**
+     * @param threshold the minimum number of elements of a document for its
+     * styles to be resolved
+     */
+    public ParallelStyleResolver(StyleReference css, int threads, int threshold) {
+        _css = css;
+        _threads = threads;
+        _threshold = threshold;
+    }
+
+    /**
+     * Stores the styles of all elements of <code>doc</code> in
+     * <code>result</code>.
+     *
+     * @return the number of styles resolved, 0 if the document has less
+     * elements than the threshold
+     */
+    int resolve(Document doc, StyleMap result) {
+        Element root = doc.getDocumentElement();
+        int count = prepare(root);
+        if (root == null || count < _threshold) {
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        result.put(root, new EmptyStyle().deriveStyle(_css.getCascadedStyle(root, false)));
+
+        LinkedList frontier = new LinkedList();
+        addChildElements(root, frontier);
+        int target = _threads * TASKS_PER_THREAD;
+        while (! frontier.isEmpty() && frontier.size() < target) {
+            Element e = (Element) frontier.removeFirst();
+            resolve(e, result);
+            addChildElements(e, frontier);
+        }
+
+        if (! frontier.isEmpty()) {
+            runTasks(frontier, result);
+        }
+
+        XRLog.layout("Resolved " + count + " styles with " + _threads + " threads in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return count;
+    }
+
+    private void runTasks(List subtrees, final StyleMap result) {
+        ExecutorService executor = Executors.newFixedThreadPool(_threads, new StyleThreadFactory());
+        try {
+            List futures = new ArrayList(subtrees.size());
+            for (int i = 0; i < subtrees.size(); i++) {
+                final Element subtree = (Element) subtrees.get(i);
+                futures.add(executor.submit(new Callable() {
+                    public Object call() {
+                        resolveSubtree(subtree, result);
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                ((Future) futures.get(i)).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XRRuntimeException("Interrupted while resolving styles", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new XRRuntimeException("Failed to resolve styles", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void resolveSubtree(Element subtree, StyleMap result) {
+        LinkedList stack = new LinkedList();
+        stack.addFirst(subtree);
+        while (! stack.isEmpty()) {
+            Element e = (Element) stack.removeFirst();
+            resolve(e, result);
+            for (Node n = e.getLastChild(); n != null; n = n.getPreviousSibling()) {
+                if (n.getNodeType() == Node.ELEMENT_NODE) {
+                    stack.addFirst(n);
+                }
+            }
+        }
+    }
+
+    private void resolve(Element e, StyleMap result) {
+        CalculatedStyle parent = result.get((Element) e.getParentNode());
+        result.put(e, parent.deriveStyle(_css.getCascadedStyle(e, false)));
+    }
+
+    private static void addChildElements(Element e, List result) {
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                result.add(n);
+            }
+        }
+    }
+
+    /**
+     * Visits all elements and their attributes once, so that lazily built
+     * DOM nodes are created before the tree is shared between threads.
+     *
+     * @return the number of elements below and including <code>root</code>
+     */
+    private static int prepare(Element root) {
+        if (root == null) {
+            return 0;
+        }
+        int result = 0;
+        Node n = root;
+        while (n != null) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                result++;
+                n.getAttributes().getLength();
+            }
+            Node next = n.getFirstChild();
+            while (next == null && n != root) {
+                next = n.getNextSibling();
+                if (next == null) {
+                    n = n.getParentNode();
+                }
+            }
+            n = next;
+        }
+        return result;
+    }
+
+    private static class StyleThreadFactory implements ThreadFactory {
+        private int _count;
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread result = new Thread(r, "style-resolver-" + (++_count));
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
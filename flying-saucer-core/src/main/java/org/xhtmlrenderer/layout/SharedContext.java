@@ -23,7 +23,9 @@ import java.awt.Font;
 import java.awt.HeadlessException;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.w3c.dom.Document;
@@ -51,6 +53,7 @@ import org.xhtmlrenderer.render.RenderingContext;
 import org.xhtmlrenderer.simple.extend.FormSubmissionListener;
 import org.xhtmlrenderer.swing.Java2DTextRenderer;
 import org.xhtmlrenderer.swing.SwingReplacedElementFactory;
+import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.XRLog;
 
 /**
@@ -92,7 +95,10 @@ public class SharedContext {
 
     private int dotsPerPixel = 1;
 
-    private Map styleMap;
+    private final StyleMap styleMap = new StyleMap();
+
+    private int styleThreads = Configuration.valueAsInt("xr.layout.style-threads", 1);
+    private int parallelStyleThreshold = Configuration.valueAsInt("xr.layout.parallel-style-threshold", 2000);
 
     private ReplacedElementFactory replacedElementFactory;
     private Rectangle temp_canvas;
@@ -553,33 +559,99 @@ public class SharedContext {
     }
 
     public CalculatedStyle getStyle(Element e, boolean restyle) {
-        if (styleMap == null) {
-            styleMap = new HashMap(1024, 0.75f);
-        }
-
         CalculatedStyle result = null;
         if (! restyle) {
-            result = (CalculatedStyle)styleMap.get(e);
+            result = styleMap.get(e);
+        }
+        if (result != null) {
+            return result;
         }
-        if (result == null) {
-            Node parent = e.getParentNode();
-            CalculatedStyle parentCalculatedStyle;
-            if (parent instanceof Document) {
-                parentCalculatedStyle = new EmptyStyle();
-            } else {
-                parentCalculatedStyle = getStyle((Element)parent, false);
+
+        // Find the closest ancestor with a known style, without recursing
+        // (documents may be nested too deeply for the stack)
+        List unstyled = new ArrayList();
+        unstyled.add(e);
+        CalculatedStyle parentCalculatedStyle = null;
+        Node parent = e.getParentNode();
+        while (! (parent instanceof Document)) {
+            parentCalculatedStyle = styleMap.get((Element)parent);
+            if (parentCalculatedStyle != null) {
+                break;
             }
+            unstyled.add(parent);
+            parent = parent.getParentNode();
+        }
+        if (parentCalculatedStyle == null) {
+            parentCalculatedStyle = new EmptyStyle();
+        }
+
+        for (int i = unstyled.size() - 1; i >= 0; i--) {
+            Element current = (Element)unstyled.get(i);
+            result = parentCalculatedStyle.deriveStyle(
+                    getCss().getCascadedStyle(current, restyle && current == e));
+            styleMap.put(current, result);
+            parentCalculatedStyle = result;
+        }
+
+        return result;
+    }
 
-            result = parentCalculatedStyle.deriveStyle(getCss().getCascadedStyle(e, restyle));
+    /**
+     * @return the number of threads used to resolve the styles of a document
+     * before layout, 1 if they are resolved one at a time during layout
+     */
+    public int getStyleThreads() {
+        return styleThreads;
+    }
 
-            styleMap.put(e, result);
+    /**
+     * Sets the number of threads used to resolve the styles of all elements of
+     * a document before its box tree is built (see
+     * {@link #resolveStyles(Document)}).  With 1 thread (the default) styles
+     * are resolved on demand.
+     */
+    public void setStyleThreads(int styleThreads) {
+        this.styleThreads = Math.max(1, styleThreads);
+    }
+
+    /**
+     * Sets the number of elements a document needs to have for its styles to
+     * be resolved in parallel.  Smaller documents are not worth the
+     * overhead.
+     */
+    public void setParallelStyleThreshold(int parallelStyleThreshold) {
+        this.parallelStyleThreshold = parallelStyleThreshold;
+    }
+
+    /**
+     * Resolves the styles of all elements of <code>doc</code> with
+     * {@link #getStyleThreads()} threads, if more than one is configured and
+     * the document is large enough.  Calls to {@link #getStyle(Element)} are
+     * then answered from the resolved styles.
+     *
+     * @return the number of styles resolved
+     */
+    public int resolveStyles(Document doc) {
+        if (styleThreads <= 1) {
+            return 0;
         }
+        return new ParallelStyleResolver(getCss(), styleThreads, parallelStyleThreshold).resolve(doc, styleMap);
+    }
 
+    /**
+     * Drops the cached calculated styles of all elements (boxes keep a
+     * reference to their own style).  They are recomputed on demand.
+     *
+     * @return the number of cached styles dropped
+     */
+    public int releaseStyles() {
+        int result = styleMap.size();
+        styleMap.clear();
         return result;
     }
 
     public void reset() {
-       styleMap = null;
+       styleMap.clear();
        idMap = null;
        replacedElementFactory.reset();
     }
@@ -605,9 +677,7 @@ public class SharedContext {
             removeBoxId(id);
         }
 
-        if (styleMap != null) {
-            styleMap.remove(e);
-        }
+        styleMap.remove(e);
 
         getCss().removeStyle(e);
         getReplacedElementFactory().remove(e);
@@ -0,0 +1,96 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.layout;
+
+import java.util.IdentityHashMap;
+
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+
+/**
+ * The calculated styles of the elements of a document.  Elements are compared
+ * by identity, so the (possibly expensive) <code>hashCode()</code> and
+ * <code>equals()</code> of the DOM implementation are never called.
+ * <p>
+ * The map is safe for use by several threads: it is split into segments
+ * by the identity hash of the element, each an {@link IdentityHashMap} with
+ * its own lock, so threads resolving different parts of a document rarely
+ * wait for each other.
+ */
+class StyleMap {
+    private static final int SEGMENTS = 16;
+
+    private volatile IdentityHashMap[] _segments;
+
+    StyleMap() {
+        clear();
+    }
+
+    public CalculatedStyle get(Element e) {
+        IdentityHashMap segment = segmentFor(e);
+        synchronized (segment) {
+            return (CalculatedStyle) segment.get(e);
+        }
+    }
+
+    public void put(Element e, CalculatedStyle style) {
+        IdentityHashMap segment = segmentFor(e);
+        synchronized (segment) {
+            segment.put(e, style);
+        }
+    }
+
+    public void remove(Element e) {
+        IdentityHashMap segment = segmentFor(e);
+        synchronized (segment) {
+            segment.remove(e);
+        }
+    }
+
+    public int size() {
+        IdentityHashMap[] segments = _segments;
+        int result = 0;
+        for (int i = 0; i < SEGMENTS; i++) {
+            IdentityHashMap segment = segments[i];
+            synchronized (segment) {
+                result += segment.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all styles.  Unlike {@link java.util.Map#clear()}, the memory
+     * used by the map is released as well.
+     */
+    public void clear() {
+        IdentityHashMap[] segments = new IdentityHashMap[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new IdentityHashMap();
+        }
+        _segments = segments;
+    }
+
+    private IdentityHashMap segmentFor(Element e) {
+        int h = System.identityHashCode(e);
+        // identity hashes are not well distributed in their low bits
+        h ^= (h >>> 16) ^ (h >>> 8);
+        return _segments[h & (SEGMENTS - 1)];
+    }
+}
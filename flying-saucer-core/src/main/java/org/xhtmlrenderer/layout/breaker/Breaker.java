@@ -89,9 +89,9 @@ public class Breaker {
         if (whitespace == IdentValue.PRE ||
                 whitespace == IdentValue.PRE_WRAP ||
                 whitespace == IdentValue.PRE_LINE) {
-            int n = context.getStartSubstring().indexOf(WhitespaceStripper.EOL);
+            int n = context.getMaster().indexOf(WhitespaceStripper.EOL, context.getStart());
             if (n > -1) {
-                context.setEnd(context.getStart() + n + 1);
+                context.setEnd(n + 1);
                 context.setWidth(c.getTextRenderer().getWidth(
                         c.getFontContext(), font, context.getCalculatedSubstring()));
                 context.setNeedsNewLine(true);
@@ -125,6 +125,22 @@ public class Breaker {
     	return c.getSharedContext().getLineBreakingStrategy().getBreakPointsProvider(text, getLanguage(c, textNode), style);
     }
 
+    /**
+     * Returns the break points of the context's master text, positioned at
+     * the start of the current line. The provider is created once per master
+     * text and shared by all its lines.
+     */
+    private static ParagraphBreakPoints getParagraphBreakPoints(LayoutContext c, LineBreakContext context, CalculatedStyle style) {
+        ParagraphBreakPoints result = context.getBreakPoints();
+        if (result == null || !result.isFor(context.getMaster())) {
+            result = new ParagraphBreakPoints(context.getMaster(),
+                    getBreakPointsProvider(context.getMaster(), c, context.getTextNode(), style));
+            context.setBreakPoints(result);
+        }
+        result.setLineStart(context.getStart());
+        return result;
+    }
+
     private static String getLanguage(LayoutContext c, Element element) {
     	String language = c.getNamespaceHandler().getLang(element);
     	if (language == null || language.isEmpty()) {
@@ -147,10 +163,13 @@ public class Breaker {
             LineBreakContext context, int avail, CalculatedStyle style,
             boolean tryToBreakAnywhere) {
         FSFont f = style.getFSFont(c);
-        String currentString = context.getStartSubstring();
-        BreakPointsProvider iterator = getBreakPointsProvider(currentString, c, context.getTextNode(), style);
+        String master = context.getMaster();
+        int start = context.getStart();
+        BreakPointsProvider iterator;
         if (tryToBreakAnywhere) {
-        	iterator = new BreakAnywhereLineBreakStrategy(currentString);
+        	iterator = new BreakAnywhereLineBreakStrategy(context.getStartSubstring());
+        } else {
+        	iterator = getParagraphBreakPoints(c, context, style);
         }
         BreakPoint bp = iterator.next();
         BreakPoint lastBreakPoint = null;
@@ -158,7 +177,7 @@ public class Breaker {
         int previousWidth = 0;
         int previousPosition = 0;
         while (bp != null && bp.getPosition() != BreakIterator.DONE) {
-            int currentWidth = getWidth(c, f, currentString.substring(previousPosition, bp.getPosition()) + bp.getHyphen());
+            int currentWidth = getWidth(c, f, master.substring(start + previousPosition, start + bp.getPosition()) + bp.getHyphen());
             int widthWithHyphen = previousWidth + currentWidth;
             previousWidth = widthWithHyphen;
             previousPosition = bp.getPosition();
@@ -172,12 +191,16 @@ public class Breaker {
         if (bp != null && bp.getPosition() != BreakIterator.DONE // it fits
         		&& right >= 0 // some break point found
         		&& !lastBreakPoint.getHyphen().isEmpty()) {
-        	context.setMaster(new StringBuilder(context.getMaster()).insert(context.getStart() + right, lastBreakPoint.getHyphen()).toString());
-        	right += lastBreakPoint.getHyphen().length();
+        	String hyphen = lastBreakPoint.getHyphen();
+        	context.setMaster(new StringBuilder(master).insert(start + right, hyphen).toString());
+        	if (context.getBreakPoints() != null && context.getBreakPoints().isFor(master)) {
+        		context.getBreakPoints().textInserted(context.getMaster(), start + right, hyphen.length());
+        	}
+        	right += hyphen.length();
         }
 
         if (bp != null && bp.getPosition() == BreakIterator.DONE) {
-            context.setWidth(getWidth(c, f, currentString));
+            context.setWidth(getWidth(c, f, master.substring(start)));
             context.setEnd(context.getMaster().length());
             //It fits!
             return;
@@ -198,7 +221,7 @@ public class Breaker {
         }
 
        	// unbreakable string
-        context.setEnd(context.getStart() + currentString.length());
+        context.setEnd(master.length());
         context.setUnbreakable(true);
         context.setWidth(getWidth(c, f, context.getCalculatedSubstring()));
     }
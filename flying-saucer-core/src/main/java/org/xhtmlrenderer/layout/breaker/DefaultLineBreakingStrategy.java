@@ -28,21 +28,35 @@ import org.xhtmlrenderer.css.style.CalculatedStyle;
 public class DefaultLineBreakingStrategy implements LineBreakingStrategy {
 
 	@Override
-	public BreakPointsProvider getBreakPointsProvider(String text, String lang, CalculatedStyle style) {
-		final BreakIterator i = new UrlAwareLineBreakIterator();
-		i.setText(text);
+	public BreakPointsProvider getBreakPointsProvider(final String text, String lang, CalculatedStyle style) {
+		final LineBreakIteratorPool pool = LineBreakIteratorPool.getInstance();
 		
 		return new BreakPointsProvider() {
 			
+			private BreakIterator i = pool.claim(this, text);
+			private boolean pooled = true;
+			private int last = 0;
+			
 			@Override
 			public BreakPoint next() {
+				if (i == null) return BreakPoint.getDonePoint();
+				if (pooled && !pool.isClaimedBy(this)) {
+					// lost the pooled iterator, continue on a private one
+					i = LineBreakIteratorPool.resume(text, last);
+					pooled = false;
+				}
 				int next = i.next();
-				if (next < 0) return BreakPoint.getDonePoint();
+				if (next < 0) {
+					if (pooled) {
+						pool.release(this);
+					}
+					i = null;
+					return BreakPoint.getDonePoint();
+				}
+				last = next;
 				return new BreakPoint(next);
 			}
 		};
 	}
-	
-	
 
 }
@@ -0,0 +1,90 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package org.xhtmlrenderer.layout.breaker;
+
+import java.text.BreakIterator;
+
+/**
+ * Keeps one {@link UrlAwareLineBreakIterator} per thread so that break points
+ * providers do not have to create (and initialize the rule tables of) a new
+ * line iterator for every text they scan.
+ * <p>
+ * The iterator is lent to one owner at a time. Claiming it for a new text
+ * implicitly takes it away from the previous owner, which must check
+ * {@link #isClaimedBy(Object)} before using it again. If it lost the
+ * iterator, it continues on a private one created once with
+ * {@link #resume(String, int)}, which it keeps using from then on (and does
+ * not release to the pool).
+ */
+public class LineBreakIteratorPool {
+
+    private static final ThreadLocal<LineBreakIteratorPool> POOLS = new ThreadLocal<LineBreakIteratorPool>() {
+        protected LineBreakIteratorPool initialValue() {
+            return new LineBreakIteratorPool();
+        }
+    };
+
+    private final BreakIterator iterator = new UrlAwareLineBreakIterator();
+    private Object owner;
+
+    private LineBreakIteratorPool() {
+    }
+
+    /**
+     * @return the pool of the calling thread
+     */
+    public static LineBreakIteratorPool getInstance() {
+        return POOLS.get();
+    }
+
+    /**
+     * Hands the iterator of this pool to <code>owner</code>, positioned at the
+     * beginning of <code>text</code>.
+     */
+    public BreakIterator claim(Object owner, String text) {
+        this.owner = owner;
+        iterator.setText(text);
+        return iterator;
+    }
+
+    public boolean isClaimedBy(Object owner) {
+        return this.owner == owner;
+    }
+
+    public void release(Object owner) {
+        if (this.owner == owner) {
+            this.owner = null;
+        }
+    }
+
+    /**
+     * Creates a private line iterator over <code>text</code> that continues
+     * after <code>position</code>, a break point previously returned for the
+     * same text.
+     */
+    public static BreakIterator resume(String text, int position) {
+        BreakIterator result = new UrlAwareLineBreakIterator();
+        result.setText(text);
+        if (position > 0) {
+            int p;
+            do {
+                p = result.next();
+            } while (p != BreakIterator.DONE && p < position);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package org.xhtmlrenderer.layout.breaker;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks the break points of a whole text across all lines it is broken into.
+ * The underlying {@link BreakPointsProvider} is created once for the master
+ * text and is only ever advanced, instead of scanning the remainder of the
+ * text again for every line.
+ * <p>
+ * Positions returned by {@link #next()} are relative to the start of the
+ * current line, see {@link #setLineStart(int)}. Break points read past the
+ * end of a line are kept and delivered again if the next line (or a retry
+ * of the same line) starts before them.
+ */
+public class ParagraphBreakPoints implements BreakPointsProvider {
+
+    private final BreakPointsProvider _provider;
+    private String _master;
+
+    /**
+     * Difference between positions in the current master and positions
+     * reported by the provider (characters inserted by the breaker).
+     */
+    private int _shift;
+
+    /** Absolute positions (already shifted) read from the provider but not yet passed by a line start */
+    private final List<BreakPoint> _buffer = new ArrayList<BreakPoint>();
+    private int _next;
+    private boolean _done;
+
+    private int _lineStart;
+
+    public ParagraphBreakPoints(String master, BreakPointsProvider provider) {
+        _master = master;
+        _provider = provider;
+    }
+
+    public boolean isFor(String master) {
+        return _master == master;
+    }
+
+    /**
+     * Positions subsequent calls to {@link #next()} on the first break point
+     * after <code>start</code>.
+     */
+    public void setLineStart(int start) {
+        int keep = 0;
+        while (keep < _buffer.size() && _buffer.get(keep).getPosition() <= start) {
+            keep++;
+        }
+        if (keep > 0) {
+            _buffer.subList(0, keep).clear();
+        }
+        _next = 0;
+        _lineStart = start;
+    }
+
+    /**
+     * Notifies this walker that the breaker inserted <code>length</code>
+     * characters (a hyphen) at <code>position</code> of the master text, which
+     * is now <code>master</code>.
+     */
+    public void textInserted(String master, int position, int length) {
+        _master = master;
+        _shift += length;
+        for (int i = 0; i < _buffer.size(); i++) {
+            BreakPoint bp = _buffer.get(i);
+            if (bp.getPosition() >= position) {
+                _buffer.set(i, copy(bp, bp.getPosition() + length));
+            }
+        }
+    }
+
+    public BreakPoint next() {
+        while (_next >= _buffer.size()) {
+            if (_done) {
+                return BreakPoint.getDonePoint();
+            }
+            BreakPoint bp = _provider.next();
+            if (bp == null || bp.getPosition() == BreakIterator.DONE) {
+                _done = true;
+                return BreakPoint.getDonePoint();
+            }
+            if (bp.getPosition() + _shift > _lineStart) {
+                _buffer.add(_shift == 0 ? bp : copy(bp, bp.getPosition() + _shift));
+            }
+        }
+        BreakPoint bp = _buffer.get(_next++);
+        return copy(bp, bp.getPosition() - _lineStart);
+    }
+
+    private static BreakPoint copy(BreakPoint bp, int position) {
+        BreakPoint result = new BreakPoint(position);
+        result.setHyphen(bp.getHyphen());
+        return result;
+    }
+}
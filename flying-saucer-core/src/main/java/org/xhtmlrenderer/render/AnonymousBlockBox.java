@@ -26,6 +26,7 @@ import java.util.List;
 import org.w3c.dom.Element;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CssContext;
+import org.xhtmlrenderer.layout.FreezeStatistics;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.Styleable;
 
@@ -60,6 +61,11 @@ public class AnonymousBlockBox extends BlockBox {
         }
     }
 
+    public void releaseLayoutState(FreezeStatistics stats) {
+        _openInlineBoxes = null;
+        super.releaseLayoutState(stats);
+    }
+
     public List getOpenInlineBoxes() {
         return _openInlineBoxes;
     }
@@ -46,6 +46,7 @@ import org.xhtmlrenderer.layout.CounterFunction;
 import org.xhtmlrenderer.layout.FloatManager;
 import org.xhtmlrenderer.layout.InlineBoxing;
 import org.xhtmlrenderer.layout.InlinePaintable;
+import org.xhtmlrenderer.layout.FreezeStatistics;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.PaintingInfo;
 import org.xhtmlrenderer.layout.PersistentBFC;
@@ -69,14 +70,8 @@ public class BlockBox extends Box implements InlinePaintable {
 
     protected static final int NO_BASELINE = Integer.MIN_VALUE;
 
-    private MarkerData _markerData;
-
     private int _listCounter;
 
-    private PersistentBFC _persistentBFC;
-
-    private Box _staticEquivalent;
-
     private boolean _needPageClear;
 
     private ReplacedElement _replacedElement;
@@ -96,9 +91,6 @@ public class BlockBox extends Box implements InlinePaintable {
     private boolean _dimensionsCalculated;
     private boolean _needShrinkToFitCalculatation;
 
-    private CascadedStyle _firstLineStyle;
-    private CascadedStyle _firstLetterStyle;
-
     private FloatedBoxData _floatedBoxData;
 
     private int _childrenHeight;
@@ -208,7 +200,7 @@ public class BlockBox extends Box implements InlinePaintable {
             case CONTENT_INLINE:
                 if (which == Box.DUMP_RENDER) {
                     dumpBoxes(c, indent, getChildren(), which, result);
-                } else {
+                } else if (getInlineContent() != null) {
                     for (Iterator i = getInlineContent().iterator(); i.hasNext();) {
                         Styleable styleable = (Styleable) i.next();
                         if (styleable instanceof BlockBox) {
@@ -287,11 +279,13 @@ public class BlockBox extends Box implements InlinePaintable {
     }
 
     public MarkerData getMarkerData() {
-        return _markerData;
+        return hasRareData() ? getRareData().getMarkerData() : null;
     }
 
     public void setMarkerData(MarkerData markerData) {
-        _markerData = markerData;
+        if (markerData != null || hasRareData()) {
+            getRareData().setMarkerData(markerData);
+        }
     }
 
     public void createMarkerData(LayoutContext c) {
@@ -387,19 +381,23 @@ public class BlockBox extends Box implements InlinePaintable {
     }
 
     public PersistentBFC getPersistentBFC() {
-        return _persistentBFC;
+        return hasRareData() ? getRareData().getPersistentBFC() : null;
     }
 
     public void setPersistentBFC(PersistentBFC persistentBFC) {
-        _persistentBFC = persistentBFC;
+        if (persistentBFC != null || hasRareData()) {
+            getRareData().setPersistentBFC(persistentBFC);
+        }
     }
 
     public Box getStaticEquivalent() {
-        return _staticEquivalent;
+        return hasRareData() ? getRareData().getStaticEquivalent() : null;
     }
 
     public void setStaticEquivalent(Box staticEquivalent) {
-        _staticEquivalent = staticEquivalent;
+        if (staticEquivalent != null || hasRareData()) {
+            getRareData().setStaticEquivalent(staticEquivalent);
+        }
     }
 
     public boolean isReplaced() {
@@ -452,8 +450,9 @@ public class BlockBox extends Box implements InlinePaintable {
     public void calcChildLocations() {
         super.calcChildLocations();
 
-        if (_persistentBFC != null) {
-            _persistentBFC.getFloatManager().calcFloatLocations();
+        PersistentBFC persistentBFC = getPersistentBFC();
+        if (persistentBFC != null) {
+            persistentBFC.getFloatManager().calcFloatLocations();
         }
     }
 
@@ -467,9 +466,10 @@ public class BlockBox extends Box implements InlinePaintable {
 
 
     private void alignToStaticEquivalent() {
-        if (_staticEquivalent.getAbsY() != getAbsY()) {
-            setY(_staticEquivalent.getAbsY() - getAbsY());
-            setAbsY(_staticEquivalent.getAbsY());
+        Box staticEquivalent = getStaticEquivalent();
+        if (staticEquivalent.getAbsY() != getAbsY()) {
+            setY(staticEquivalent.getAbsY() - getAbsY());
+            setAbsY(staticEquivalent.getAbsY());
         }
     }
 
@@ -571,6 +571,32 @@ public class BlockBox extends Box implements InlinePaintable {
         }
     }
 
+    public void releaseLayoutState(FreezeStatistics stats) {
+        if (_inlineContent != null) {
+            int inlineBoxes = 0;
+            int chars = 0;
+            for (Iterator i = _inlineContent.iterator(); i.hasNext(); ) {
+                Object child = i.next();
+                if (child instanceof InlineBox) {
+                    inlineBoxes++;
+                    String text = ((InlineBox) child).getText();
+                    chars += text == null ? 0 : text.length();
+                }
+            }
+            stats.inlineContentReleased(_inlineContent.size(), inlineBoxes, chars);
+            _inlineContent = null;
+        }
+        _pendingCollapseCalculation = null;
+        super.releaseLayoutState(stats);
+    }
+
+    public boolean canPaintConcurrently(Class replacedElementType) {
+        if (_replacedElement != null && _replacedElement.getClass() != replacedElementType) {
+            return false;
+        }
+        return super.canPaintConcurrently(replacedElementType);
+    }
+
     private int calcPinnedContentWidth(CssContext c) {
         if (! getStyle().isIdent(CSSName.LEFT, IdentValue.AUTO) &&
                 ! getStyle().isIdent(CSSName.RIGHT, IdentValue.AUTO)) {
@@ -1813,19 +1839,23 @@ public class BlockBox extends Box implements InlinePaintable {
     }
 
     public CascadedStyle getFirstLetterStyle() {
-        return _firstLetterStyle;
+        return hasRareData() ? getRareData().getFirstLetterStyle() : null;
     }
 
     public void setFirstLetterStyle(CascadedStyle firstLetterStyle) {
-        _firstLetterStyle = firstLetterStyle;
+        if (firstLetterStyle != null || hasRareData()) {
+            getRareData().setFirstLetterStyle(firstLetterStyle);
+        }
     }
 
     public CascadedStyle getFirstLineStyle() {
-        return _firstLineStyle;
+        return hasRareData() ? getRareData().getFirstLineStyle() : null;
     }
 
     public void setFirstLineStyle(CascadedStyle firstLineStyle) {
-        _firstLineStyle = firstLineStyle;
+        if (firstLineStyle != null || hasRareData()) {
+            getRareData().setFirstLineStyle(firstLineStyle);
+        }
     }
 
     protected boolean isMinMaxCalculated() {
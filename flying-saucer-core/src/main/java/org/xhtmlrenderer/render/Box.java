@@ -41,6 +41,7 @@ import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CssContext;
 import org.xhtmlrenderer.css.style.derived.BorderPropertySet;
 import org.xhtmlrenderer.css.style.derived.RectPropertySet;
+import org.xhtmlrenderer.layout.FreezeStatistics;
 import org.xhtmlrenderer.layout.Layer;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.PaintingInfo;
@@ -70,7 +71,6 @@ public abstract class Box implements Styleable {
      */
     private int _height;
 
-    private Layer _layer = null;
     private Layer _containingLayer;
 
     private Box _parent;
@@ -84,9 +84,6 @@ public abstract class Box implements Styleable {
     private int _ty;
 
     private CalculatedStyle _style;
-    private Box _containingBlock;
-
-    private Dimension _relativeOffset;
 
     private PaintingInfo _paintingInfo;
 
@@ -94,10 +91,13 @@ public abstract class Box implements Styleable {
 
     private int _index;
 
-    private String _pseudoElementOrClass;
-
     private boolean _anonymous;
 
+    /**
+     * Rarely set properties, <code>null</code> until one of them is set.
+     */
+    private RareBoxData _rareData;
+
     protected Box() {
     }
 
@@ -134,7 +134,9 @@ public abstract class Box implements Styleable {
 
     public void addChild(Box child) {
         if (_boxes == null) {
-            _boxes = new ArrayList();
+            // most boxes have exactly one child (e.g. the anonymous block
+            // or line box wrapping their content)
+            _boxes = new ArrayList(1);
         }
         if (child == null) {
             throw new NullPointerException("trying to add null child");
@@ -271,11 +273,14 @@ public abstract class Box implements Styleable {
     }
 
     public Box getContainingBlock() {
-        return _containingBlock == null ? getParent() : _containingBlock;
+        Box containingBlock = _rareData == null ? null : _rareData.getContainingBlock();
+        return containingBlock == null ? getParent() : containingBlock;
     }
 
     public void setContainingBlock(Box containingBlock) {
-        _containingBlock = containingBlock;
+        if (containingBlock != null || _rareData != null) {
+            getRareData().setContainingBlock(containingBlock);
+        }
     }
 
     public Rectangle getMarginEdge(int left, int top, CssContext cssCtx, int tx, int ty) {
@@ -351,11 +356,13 @@ public abstract class Box implements Styleable {
     }
 
     public Layer getLayer() {
-        return _layer;
+        return _rareData == null ? null : _rareData.getLayer();
     }
 
     public void setLayer(Layer layer) {
-        _layer = layer;
+        if (layer != null || _rareData != null) {
+            getRareData().setLayer(layer);
+        }
     }
 
     public Dimension positionRelative(CssContext cssCtx) {
@@ -510,9 +517,9 @@ public abstract class Box implements Styleable {
 
     public void reset(LayoutContext c) {
         resetChildren(c);
-        if (_layer != null) {
-            _layer.detach();
-            _layer = null;
+        Layer layer = getLayer();
+        if (layer != null) {
+            layer.detach();
         }
 
         setContainingLayer(null);
@@ -536,6 +543,39 @@ public abstract class Box implements Styleable {
         }
     }
 
+    /**
+     * Drops state which is only needed while laying out this box and its
+     * descendants.  The box tree can still be painted afterwards, but it
+     * must not be laid out again.
+     */
+    public void releaseLayoutState(FreezeStatistics stats) {
+        stats.boxVisited();
+        if (_boxes instanceof ArrayList) {
+            ((ArrayList)_boxes).trimToSize();
+        }
+        for (int i = 0; i < getChildCount(); i++) {
+            getChild(i).releaseLayoutState(stats);
+        }
+    }
+
+    /**
+     * @return whether this box and its descendants can be painted by several
+     * threads at once, i.e. painting them doesn't change them.  Replaced
+     * elements other than those of exactly <code>replacedElementType</code>
+     * are assumed to change while painted.
+     */
+    public boolean canPaintConcurrently(Class replacedElementType) {
+        if (getStyle() != null && getStyle().isFixed()) {
+            return false;
+        }
+        for (int i = 0; i < getChildCount(); i++) {
+            if (! getChild(i).canPaintConcurrently(replacedElementType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void detach(LayoutContext c) {
         reset(c);
 
@@ -666,11 +706,13 @@ public abstract class Box implements Styleable {
     }
 
     public Dimension getRelativeOffset() {
-        return _relativeOffset;
+        return _rareData == null ? null : _rareData.getRelativeOffset();
     }
 
     public void setRelativeOffset(Dimension relativeOffset) {
-        _relativeOffset = relativeOffset;
+        if (relativeOffset != null || _rareData != null) {
+            getRareData().setRelativeOffset(relativeOffset);
+        }
     }
 
     public Box find(CssContext cssCtx, int absX, int absY, boolean findAnonymous) {
@@ -902,11 +944,29 @@ public abstract class Box implements Styleable {
     }
 
     public String getPseudoElementOrClass() {
-        return _pseudoElementOrClass;
+        return _rareData == null ? null : _rareData.getPseudoElementOrClass();
     }
 
     public void setPseudoElementOrClass(String pseudoElementOrClass) {
-        _pseudoElementOrClass = pseudoElementOrClass;
+        if (pseudoElementOrClass != null || _rareData != null) {
+            getRareData().setPseudoElementOrClass(pseudoElementOrClass);
+        }
+    }
+
+    /**
+     * Returns the rarely used properties of this box, allocating them if
+     * necessary.  Callers should first check {@link #hasRareData()} when
+     * only reading.
+     */
+    RareBoxData getRareData() {
+        if (_rareData == null) {
+            _rareData = new RareBoxData();
+        }
+        return _rareData;
+    }
+
+    boolean hasRareData() {
+        return _rareData != null;
     }
 
     public void setX(int x) {
@@ -40,6 +40,7 @@ import org.xhtmlrenderer.layout.BoxCollector;
 import org.xhtmlrenderer.layout.InlineBoxing;
 import org.xhtmlrenderer.layout.InlinePaintable;
 import org.xhtmlrenderer.layout.Layer;
+import org.xhtmlrenderer.layout.FreezeStatistics;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.PaintingInfo;
 
@@ -126,7 +127,8 @@ public class InlineLayoutBox extends Box implements InlinePaintable {
     
     public void addInlineChild(LayoutContext c, Object child, boolean callUnmarkPending) {
         if (_inlineChildren == null) {
-            _inlineChildren = new ArrayList();
+            // usually a single text run per line
+            _inlineChildren = new ArrayList(1);
         }
         
         _inlineChildren.add(child);
@@ -150,6 +152,29 @@ public class InlineLayoutBox extends Box implements InlinePaintable {
         return _inlineChildren == null ? Collections.EMPTY_LIST : _inlineChildren;
     }
     
+    public void releaseLayoutState(FreezeStatistics stats) {
+        if (_inlineChildren instanceof ArrayList) {
+            ((ArrayList)_inlineChildren).trimToSize();
+        }
+        for (int i = 0; i < getInlineChildCount(); i++) {
+            Object child = getInlineChild(i);
+            if (child instanceof Box) {
+                ((Box)child).releaseLayoutState(stats);
+            }
+        }
+        super.releaseLayoutState(stats);
+    }
+
+    public boolean canPaintConcurrently(Class replacedElementType) {
+        for (int i = 0; i < getInlineChildCount(); i++) {
+            Object child = getInlineChild(i);
+            if (child instanceof Box && ! ((Box)child).canPaintConcurrently(replacedElementType)) {
+                return false;
+            }
+        }
+        return super.canPaintConcurrently(replacedElementType);
+    }
+
     public Object getInlineChild(int i) {
         if (_inlineChildren == null) {
             throw new ArrayIndexOutOfBoundsException();
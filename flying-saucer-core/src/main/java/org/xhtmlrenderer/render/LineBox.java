@@ -39,6 +39,7 @@ import org.xhtmlrenderer.layout.BoxCollector;
 import org.xhtmlrenderer.layout.InlineBoxing;
 import org.xhtmlrenderer.layout.InlinePaintable;
 import org.xhtmlrenderer.layout.Layer;
+import org.xhtmlrenderer.layout.FreezeStatistics;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.PaintingInfo;
 import org.xhtmlrenderer.util.XRRuntimeException;
@@ -399,6 +400,26 @@ public class LineBox extends Box implements InlinePaintable {
         _nonFlowContent.add(box);
     }
     
+    public void releaseLayoutState(FreezeStatistics stats) {
+        for (int i = 0; i < getNonFlowContent().size(); i++) {
+            ((Box)getNonFlowContent().get(i)).releaseLayoutState(stats);
+        }
+        super.releaseLayoutState(stats);
+    }
+
+    public boolean canPaintConcurrently(Class replacedElementType) {
+        if (isContainsDynamicFunction()) {
+            return false;
+        }
+        // absolute, fixed and floated blocks laid out from this line
+        for (int i = 0; i < getNonFlowContent().size(); i++) {
+            if (! ((Box)getNonFlowContent().get(i)).canPaintConcurrently(replacedElementType)) {
+                return false;
+            }
+        }
+        return super.canPaintConcurrently(replacedElementType);
+    }
+
     public void reset(LayoutContext c) {
         for (int i = 0; i < getNonFlowContent().size(); i++) {
             Box content = (Box)getNonFlowContent().get(i);
@@ -0,0 +1,124 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.render;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xhtmlrenderer.css.newmatch.PageInfo;
+
+/**
+ * The laid out margin areas of the pages of a document, so that pages showing
+ * the same margin boxes share them instead of laying them out again.  The
+ * margin areas of two pages are the same if the pages use the same
+ * {@link PageInfo} (i.e. page name and pseudo page) and the
+ * <code>element()</code> functions of the margin boxes refer to the same
+ * running elements.  Page dependent content such as
+ * <code>counter(page)</code> is not part of the layout, it is computed when
+ * the margin areas are painted on a page.
+ */
+public class MarginAreaCache {
+    private final Map _templates = new HashMap();
+
+    private int _hits;
+    private int _misses;
+
+    PageBox.MarginAreaContainer[] get(PageInfo pageInfo, List runningBlocks) {
+        PageBox.MarginAreaContainer[] result =
+            (PageBox.MarginAreaContainer[])_templates.get(new Key(pageInfo, runningBlocks));
+        if (result != null) {
+            _hits++;
+        }
+        return result;
+    }
+
+    void put(PageInfo pageInfo, List runningBlocks, PageBox.MarginAreaContainer[] marginAreas) {
+        _templates.put(new Key(pageInfo, runningBlocks), marginAreas);
+    }
+
+    void laidOut() {
+        _misses++;
+    }
+
+    /**
+     * @return the number of pages which reused the margin areas of a previous page
+     */
+    public int getHits() {
+        return _hits;
+    }
+
+    /**
+     * @return the number of pages whose margin areas were laid out
+     */
+    public int getMisses() {
+        return _misses;
+    }
+
+    /**
+     * @return the number of distinct margin area layouts kept
+     */
+    public int size() {
+        return _templates.size();
+    }
+
+    public String toString() {
+        return "hits=" + _hits + ", misses=" + _misses + ", templates=" + _templates.size();
+    }
+
+    /**
+     * Compares the page info and running blocks by identity.
+     */
+    private static final class Key {
+        private final PageInfo _pageInfo;
+        private final List _runningBlocks;
+        private final int _hashCode;
+
+        public Key(PageInfo pageInfo, List runningBlocks) {
+            _pageInfo = pageInfo;
+            _runningBlocks = runningBlocks;
+
+            int hashCode = System.identityHashCode(pageInfo);
+            for (int i = 0; i < runningBlocks.size(); i++) {
+                hashCode = 31 * hashCode + System.identityHashCode(runningBlocks.get(i));
+            }
+            _hashCode = hashCode;
+        }
+
+        public boolean equals(Object obj) {
+            if (! (obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            if (_pageInfo != other._pageInfo || _runningBlocks.size() != other._runningBlocks.size()) {
+                return false;
+            }
+            for (int i = 0; i < _runningBlocks.size(); i++) {
+                if (_runningBlocks.get(i) != other._runningBlocks.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int hashCode() {
+            return _hashCode;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -33,6 +34,7 @@ import org.w3c.dom.css.CSSPrimitiveValue;
 import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.constants.IdentValue;
 import org.xhtmlrenderer.css.constants.MarginBoxName;
+import org.xhtmlrenderer.css.extend.ContentFunction;
 import org.xhtmlrenderer.css.newmatch.PageInfo;
 import org.xhtmlrenderer.css.parser.FSFunction;
 import org.xhtmlrenderer.css.parser.PropertyValue;
@@ -42,6 +44,7 @@ import org.xhtmlrenderer.css.style.CssContext;
 import org.xhtmlrenderer.css.style.derived.LengthValue;
 import org.xhtmlrenderer.css.style.derived.RectPropertySet;
 import org.xhtmlrenderer.layout.BoxBuilder;
+import org.xhtmlrenderer.layout.FreezeStatistics;
 import org.xhtmlrenderer.layout.Layer;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.newtable.TableBox;
@@ -79,6 +82,7 @@ public class PageBox {
     private PageInfo _pageInfo;
     
     private MarginAreaContainer[] _marginAreas = new MarginAreaContainer[MARGIN_AREA_DEFS.length];
+    private boolean _marginAreasShared;
     
     private Element _metadata;
     
@@ -330,6 +334,33 @@ public class PageBox {
         }
     }
 
+    /**
+     * @return the tables showing the margin boxes of this page
+     */
+    public List getMarginAreaTables() {
+        List result = new ArrayList();
+        for (int i = 0; i < MARGIN_AREA_DEFS.length; i++) {
+            MarginAreaContainer container = _marginAreas[i];
+            if (container != null) {
+                result.add(container.getTable());
+            }
+        }
+        return result;
+    }
+
+    public void releaseLayoutState(FreezeStatistics stats) {
+        if (_marginAreasShared) {
+            // released by the page which laid them out
+            return;
+        }
+        for (int i = 0; i < MARGIN_AREA_DEFS.length; i++) {
+            MarginAreaContainer container = _marginAreas[i];
+            if (container != null) {
+                container.getTable().releaseLayoutState(stats);
+            }
+        }
+    }
+
     public int getPageNo() {
         return _pageNo;
     }
@@ -364,9 +395,73 @@ public class PageBox {
     }
     
     public void layout(LayoutContext c) {
+        layout(c, null);
+    }
+    
+    /**
+     * Lays out the margin areas of this page, reusing the ones of a previous
+     * page with the same margin boxes if <code>cache</code> is given.
+     */
+    public void layout(LayoutContext c, MarginAreaCache cache) {
         c.setPage(this);
         retrievePageMetadata(c);
+        
+        List runningBlocks = cache == null ? null : getMarginAreaRunningBlocks(c);
+        if (runningBlocks != null) {
+            MarginAreaContainer[] marginAreas = cache.get(_pageInfo, runningBlocks);
+            if (marginAreas != null) {
+                _marginAreas = marginAreas;
+                _marginAreasShared = true;
+                return;
+            }
+        }
+        
         layoutMarginAreas(c);
+        if (cache != null) {
+            cache.laidOut();
+            if (runningBlocks != null) {
+                cache.put(_pageInfo, runningBlocks, _marginAreas);
+            }
+        }
+    }
+    
+    /**
+     * @return the running blocks shown by the margin boxes of this page or
+     * <code>null</code> if the margin boxes use a static content function
+     * (which might depend on the page) and so can't be shared with other pages
+     */
+    private List getMarginAreaRunningBlocks(LayoutContext c) {
+        List result = new ArrayList();
+        for (Iterator i = _pageInfo.getMarginBoxes().values().iterator(); i.hasNext(); ) {
+            List props = (List)i.next();
+            for (Iterator j = props.iterator(); j.hasNext(); ) {
+                PropertyDeclaration decl = (PropertyDeclaration)j.next();
+                if (decl.getCSSName() != CSSName.CONTENT) {
+                    continue;
+                }
+                List values = ((PropertyValue)decl.getValue()).getValues();
+                if (values == null) {
+                    continue;
+                }
+                for (Iterator k = values.iterator(); k.hasNext(); ) {
+                    PropertyValue value = (PropertyValue)k.next();
+                    if (value.getPropertyValueType() != PropertyValue.VALUE_TYPE_FUNCTION) {
+                        continue;
+                    }
+                    FSFunction func = value.getFunction();
+                    if (BoxBuilder.isElementFunction(func)) {
+                        result.add(BoxBuilder.getRunningBlock(c, value));
+                    } else {
+                        ContentFunction contentFunction = 
+                            c.getContentFunctionFactory().lookupFunction(c, func);
+                        if (contentFunction != null && contentFunction.isStatic()) {
+                            return null;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
     }
     
     // HACK Would much prefer to do this in ITextRenderer or ITextOutputDevice
@@ -476,7 +571,7 @@ public class PageBox {
         }
     }
     
-    private static class MarginAreaContainer {
+    static class MarginAreaContainer {
         private final MarginArea _area;
         private final TableBox _table;
         
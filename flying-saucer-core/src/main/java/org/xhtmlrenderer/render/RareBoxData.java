@@ -0,0 +1,118 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.render;
+
+import java.awt.Dimension;
+
+import org.xhtmlrenderer.css.newmatch.CascadedStyle;
+import org.xhtmlrenderer.layout.Layer;
+import org.xhtmlrenderer.layout.PersistentBFC;
+
+/**
+ * A bean containing box properties which are only set for a small fraction
+ * of the boxes in a typical document (relatively positioned boxes, boxes
+ * which establish a layer or block formatting context, list items, boxes
+ * generated for pseudo elements, etc.).  It is allocated on first use so that
+ * the common box does not pay for one field per property.
+ */
+class RareBoxData {
+    private Layer _layer;
+    private Box _containingBlock;
+    private Dimension _relativeOffset;
+    private String _pseudoElementOrClass;
+
+    // BlockBox only
+    private MarkerData _markerData;
+    private PersistentBFC _persistentBFC;
+    private Box _staticEquivalent;
+    private CascadedStyle _firstLineStyle;
+    private CascadedStyle _firstLetterStyle;
+
+    public Layer getLayer() {
+        return _layer;
+    }
+
+    public void setLayer(Layer layer) {
+        _layer = layer;
+    }
+
+    public Box getContainingBlock() {
+        return _containingBlock;
+    }
+
+    public void setContainingBlock(Box containingBlock) {
+        _containingBlock = containingBlock;
+    }
+
+    public Dimension getRelativeOffset() {
+        return _relativeOffset;
+    }
+
+    public void setRelativeOffset(Dimension relativeOffset) {
+        _relativeOffset = relativeOffset;
+    }
+
+    public String getPseudoElementOrClass() {
+        return _pseudoElementOrClass;
+    }
+
+    public void setPseudoElementOrClass(String pseudoElementOrClass) {
+        _pseudoElementOrClass = pseudoElementOrClass;
+    }
+
+    public MarkerData getMarkerData() {
+        return _markerData;
+    }
+
+    public void setMarkerData(MarkerData markerData) {
+        _markerData = markerData;
+    }
+
+    public PersistentBFC getPersistentBFC() {
+        return _persistentBFC;
+    }
+
+    public void setPersistentBFC(PersistentBFC persistentBFC) {
+        _persistentBFC = persistentBFC;
+    }
+
+    public Box getStaticEquivalent() {
+        return _staticEquivalent;
+    }
+
+    public void setStaticEquivalent(Box staticEquivalent) {
+        _staticEquivalent = staticEquivalent;
+    }
+
+    public CascadedStyle getFirstLineStyle() {
+        return _firstLineStyle;
+    }
+
+    public void setFirstLineStyle(CascadedStyle firstLineStyle) {
+        _firstLineStyle = firstLineStyle;
+    }
+
+    public CascadedStyle getFirstLetterStyle() {
+        return _firstLetterStyle;
+    }
+
+    public void setFirstLetterStyle(CascadedStyle firstLetterStyle) {
+        _firstLetterStyle = firstLetterStyle;
+    }
+}
@@ -20,7 +20,11 @@
 package org.xhtmlrenderer.simple;
 
 import org.w3c.dom.Document;
+import org.xhtmlrenderer.layout.Layer;
+import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.render.PageBox;
+import org.xhtmlrenderer.util.ImageUtil;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -83,6 +87,56 @@ public class Graphics2DRenderer {
     }
 
 
+    /**
+     * Lays out the document in pages, as for printing, without rendering.
+     * The shared context must have been put in print mode (see
+     * {@link SharedContext#setPrint(boolean)}) before the document was set.
+     * Afterwards any page can be rendered with {@link #renderPage(int, int)},
+     * as often as needed, without laying out the document again.
+     *
+     * @param g2 the canvas to layout on.
+     */
+    public void layoutPages(Graphics2D g2) {
+        if (! getSharedContext().isPrint()) {
+            throw new IllegalStateException("Shared context is not in print mode");
+        }
+        panel.doDocumentLayout(g2);
+        panel.assignPagePrintPositions(g2);
+    }
+
+    /**
+     * @return the number of pages of the document; call layoutPages() first.
+     */
+    public int getPageCount() {
+        Layer root = panel.getRootLayer();
+        if (root == null) {
+            throw new RuntimeException("Document needs layout");
+        }
+        return root.getPages().size();
+    }
+
+    /**
+     * Renders one page of the document to a new image of the size of the
+     * page, on a white background. Call layoutPages() first. Only the
+     * content of that page is painted, so with <code>xr.image.lazy-decode</code>
+     * images shown on other pages aren't decoded.
+     *
+     * @param pageNo the index of the page, starting at 0
+     * @param bufferedImageType On of the pre-defined image types for a java.awt.image.BufferedImage, such
+     * as TYPE_INT_ARGB or TYPE_INT_RGB.
+     * @return an image of the page
+     */
+    public BufferedImage renderPage(int pageNo, int bufferedImageType) {
+        PageBox page = panel.getPage(pageNo);
+        LayoutContext c = panel.getLayoutContext();
+        BufferedImage image = new BufferedImage(page.getWidth(c), page.getHeight(c), bufferedImageType);
+        ImageUtil.clearImage(image);
+        Graphics2D g = image.createGraphics();
+        panel.paintPage(g, pageNo);
+        g.dispose();
+        return image;
+    }
+
     /**
      * Renders the document to the given canvas. Call layout() first.
      *
@@ -244,6 +298,33 @@ public class Graphics2DRenderer {
         // return real buffer
         return buff;
     }
+
+    /**
+     * A static utility method to create images of some pages of a document,
+     * laid out in pages as for printing. The document is laid out once.
+     *
+     * @param url    URL for the document to render.
+     * @param pageNos the indexes (starting at 0) of the pages to render
+     * @param bufferedImageType On of the pre-defined image types for a java.awt.image.BufferedImage, such
+     * as TYPE_INT_ARGB or TYPE_INT_RGB.
+     * @return an image for each page in <code>pageNos</code>
+     */
+    public static BufferedImage[] renderPagesToImages(String url, int[] pageNos, int bufferedImageType) {
+        Graphics2DRenderer g2r = new Graphics2DRenderer();
+        g2r.getSharedContext().setPrint(true);
+        g2r.setDocument(url);
+
+        BufferedImage buff = new BufferedImage(1, 1, bufferedImageType);
+        Graphics2D g = (Graphics2D) buff.getGraphics();
+        g2r.layoutPages(g);
+        g.dispose();
+
+        BufferedImage[] result = new BufferedImage[pageNos.length];
+        for (int i = 0; i < pageNos.length; i++) {
+            result[i] = g2r.renderPage(pageNos[i], bufferedImageType);
+        }
+        return result;
+    }
 }
 
 /*
@@ -144,6 +144,37 @@ public class ImageRenderer {
 		}
 	}
 
+	/**
+	 * Renders a document at a given URL and writes it out to a file using the FSImageWriter provided, without
+	 * creating an image of the whole document; see {@link Java2DRenderer#writeImage(OutputStream, FSImageWriter)}.
+	 * Use this for very tall documents.
+	 *
+	 * @param url
+	 * @param fsw
+	 * @param path
+	 * @param width
+	 */
+	public static void writeImageToOutput(String url, FSImageWriter fsw, String path, int width)
+			throws IOException {
+
+		OutputStream os = null;
+		try {
+			Java2DRenderer renderer = new Java2DRenderer(url, url, width);
+
+			os = new BufferedOutputStream(new FileOutputStream(path));
+
+			renderer.writeImage(os, fsw);
+		} finally {
+			if (os != null) {
+				try {
+					os.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
 	/**
 	 * Renders a file or URL to an image file. Command line use: first
 	 * argument is URL or file path, second argument is path to image file to generate.
@@ -163,14 +194,14 @@ public class ImageRenderer {
 				String output = f.getAbsolutePath();
 				output = output.substring(0, output.lastIndexOf(".")) + ".png";
 				System.out.println("Saving image to " + output);
-				renderToImage(f, output, DEFAULT_WIDTH);
+				writeImageToOutput(f.toURI().toURL().toExternalForm(), new FSImageWriter(), output, DEFAULT_WIDTH);
 			} else {
 				usage("File to render is not found: " + url);
 			}
 		} else {
 			File out = File.createTempFile("fs", ".png");
 			System.out.println("Saving image to " + out.getAbsolutePath());
-			renderToImage(url, out.getAbsolutePath(), DEFAULT_WIDTH);
+			writeImageToOutput(url, new FSImageWriter(), out.getAbsolutePath(), DEFAULT_WIDTH);
 		}
 	}
 
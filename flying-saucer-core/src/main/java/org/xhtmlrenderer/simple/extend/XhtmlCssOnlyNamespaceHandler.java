@@ -18,6 +18,7 @@
  */
 package org.xhtmlrenderer.simple.extend;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -33,10 +34,12 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 import org.xhtmlrenderer.css.extend.StylesheetFactory;
+import org.xhtmlrenderer.css.sheet.CompiledStylesheets;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo;
 import org.xhtmlrenderer.simple.NoNamespaceHandler;
 import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.IOUtil;
 import org.xhtmlrenderer.util.XRLog;
 
 /**
@@ -377,30 +380,21 @@ public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler {
             info.setMedia("all");
             info.setType("text/css");
 
-            InputStream is = null;
             try {
-                is = getDefaultStylesheetStream();
+                byte[] source = readDefaultStylesheet();
 
                 if (_defaultStylesheetError) {
                     return null;
                 }
 
-                Stylesheet sheet = factory.parse(new InputStreamReader(is), info);
+                Stylesheet sheet = CompiledStylesheets.get(info.getUri(), info.getOrigin(), source);
+                if (sheet == null) {
+                    sheet = factory.parse(new InputStreamReader(new ByteArrayInputStream(source)), info);
+                }
                 info.setStylesheet(sheet);
-
-                is.close();
-                is = null;
             } catch (Exception e) {
                 _defaultStylesheetError = true;
                 XRLog.exception("Could not parse default stylesheet", e);
-            } finally {
-                if (is != null) {
-                    try {
-                        is.close();
-                    } catch (IOException e) {
-                        //  ignore
-                    }
-                }
             }
 
             _defaultStylesheet = info;
@@ -409,6 +403,22 @@ public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler {
         }
     }
 
+    /**
+     * @return the text of the default stylesheet or <code>null</code> if it
+     * can't be found
+     */
+    public byte[] readDefaultStylesheet() throws IOException {
+        InputStream is = getDefaultStylesheetStream();
+        if (is == null) {
+            return null;
+        }
+        try {
+            return IOUtil.readBytes(is);
+        } finally {
+            is.close();
+        }
+    }
+
     private InputStream getDefaultStylesheetStream() {
         InputStream stream = null;
         String defaultStyleSheet = Configuration.valueFor("xr.css.user-agent-default-css") + "XhtmlNamespaceHandler.css";
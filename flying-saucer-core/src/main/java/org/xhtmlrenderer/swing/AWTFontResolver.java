@@ -75,7 +75,7 @@ public class AWTFontResolver implements FontResolver {
         available_fonts_hash.put("Monospaced", new Font("Monospaced", Font.PLAIN, 1));
     }
     
-    public void flushCache() {
+    public synchronized void flushCache() {
         init();
     }
 
@@ -90,7 +90,7 @@ public class AWTFontResolver implements FontResolver {
      * @param variant  PARAM
      * @return Returns
      */
-    public FSFont resolveFont(SharedContext ctx, String[] families, float size, IdentValue weight, IdentValue style, IdentValue variant) {
+    public synchronized FSFont resolveFont(SharedContext ctx, String[] families, float size, IdentValue weight, IdentValue style, IdentValue variant) {
         //Uu.p("familes = ");
         //Uu.p(families);
         // for each font family
@@ -122,7 +122,7 @@ public class AWTFontResolver implements FontResolver {
      * @param name The new fontMapping value
      * @param font The new fontMapping value
      */
-    public void setFontMapping(String name, Font font) {
+    public synchronized void setFontMapping(String name, Font font) {
         available_fonts_hash.put(name, font.deriveFont(1f));
     }
 
@@ -255,7 +255,7 @@ public class AWTFontResolver implements FontResolver {
         return name + "-" + (size * ctx.getTextRenderer().getFontScale()) + "-" + weight + "-" + style + "-" + variant;
     }
 
-    public FSFont resolveFont(SharedContext renderingContext, FontSpecification spec) {
+    public synchronized FSFont resolveFont(SharedContext renderingContext, FontSpecification spec) {
         return resolveFont(renderingContext, spec.families, spec.size, spec.fontWeight, spec.fontStyle, spec.variant);
     }
 }
@@ -250,7 +250,13 @@ public abstract class BasicPanel extends RootPanel implements FormSubmissionList
         return (getWidth() - maxPageWidth) / 2;
     }
 
-    public void paintPage(Graphics2D g, int pageNo) {
+    /**
+     * Returns the page with the given index of a document laid out in print
+     * mode.
+     *
+     * @throws IllegalArgumentException if there is no such page
+     */
+    public PageBox getPage(int pageNo) {
         Layer root = getRootLayer();
 
         if (root == null) {
@@ -262,9 +268,15 @@ public abstract class BasicPanel extends RootPanel implements FormSubmissionList
                     "and " + root.getPages().size());
         }
 
+        return (PageBox)root.getPages().get(pageNo);
+    }
+
+    public void paintPage(Graphics2D g, int pageNo) {
+        PageBox page = getPage(pageNo);
+        Layer root = getRootLayer();
+
         RenderingContext c = newRenderingContext(g);
 
-        PageBox page = (PageBox)root.getPages().get(pageNo);
         c.setPageCount(root.getPages().size());
         c.setPage(pageNo, page);
 
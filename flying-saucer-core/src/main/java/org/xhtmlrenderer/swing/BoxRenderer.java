@@ -300,6 +300,7 @@ public class BoxRenderer {
 		BlockBox root = BoxBuilder.createRootBox(layoutContext, doc);
 		root.setContainingBlock(new ViewportBox(rect));
 		root.layout(layoutContext);
+		sharedContext.getCss().releaseMatchTargets();
 		this.root = root;
 	}
 
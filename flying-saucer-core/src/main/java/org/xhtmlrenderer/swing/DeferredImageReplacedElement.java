@@ -39,7 +39,8 @@ import javax.swing.*;
  * also has a reference to an ImageResource which points to the image which will be returned for this replaced element.
  * That Image may be loaded some time after this DeferredImageReplacedElement is created. Calling getImage() on
  * instances of DeferredImageReplacedElement will return either the original dummy image, or the actual image
- * loaded into the ImageResource.
+ * loaded into the ImageResource. Once the image is loaded, a layout is requested only if its size differs from
+ * the size the dummy image was laid out with.
  */
 public class DeferredImageReplacedElement extends ImageReplacedElement {
     private Point _location = new Point(0, 0);
@@ -149,11 +150,13 @@ public class DeferredImageReplacedElement extends ImageReplacedElement {
             } else {
                 _image = image;
             }
+            final boolean resized = _image.getWidth(null) != _targetWidth || _image.getHeight(null) != _targetHeight;
             _loaded = true;
-            XRLog.load(Level.FINE, "Icon: replaced image " + _imageResource.getImageUri() + ", repaint requested");
+            XRLog.load(Level.FINE, "Icon: replaced image " + _imageResource.getImageUri() + ", " +
+                    (resized ? "layout" : "repaint") + " requested");
             SwingUtilities.invokeLater(new Runnable() {
                 public void run() {
-                    repaintListener.repaintRequested(_doScaleImage);
+                    repaintListener.repaintRequested(resized);
                 }
             });
 
@@ -108,6 +108,7 @@ public class HoverListener extends DefaultFSMouseListener {
         }
 
         if (needRepaint) {
+            c.getCss().releaseMatchTargets();
             if (targetedRepaint) {
                 panel.repaint(repaintRegion);
             } else {
@@ -155,7 +155,7 @@ public class ImageResourceLoader {
                         }
                     } else {
                         XRLog.load(Level.FINE, "Image cache miss, URI not yet loaded, queueing: " + uri);
-                        MutableFSImage mfsi = new MutableFSImage(_repaintListener);
+                        MutableFSImage mfsi = new MutableFSImage(_repaintListener, width, height);
                         ir = new ImageResource(uri, mfsi);
                         _loadQueue.addToQueue(this, uri, mfsi, width, height);
                     }
@@ -21,9 +21,24 @@ package org.xhtmlrenderer.swing;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -39,7 +54,10 @@ import org.xhtmlrenderer.render.RenderingContext;
 import org.xhtmlrenderer.render.ViewportBox;
 import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
 import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.FSImageWriter;
 import org.xhtmlrenderer.util.ImageUtil;
+import org.xhtmlrenderer.util.XRLog;
+import org.xhtmlrenderer.util.XRRuntimeException;
 
 /**
  * <p>Renders an XML files, formatted with CSS, as an image. Input is a document in the form of file or URL,
@@ -96,6 +114,8 @@ public class Java2DRenderer {
 	private int height;
 	private static final int NO_HEIGHT = -1;
 	private Map renderingHints;
+	private int tileHeight = Configuration.valueAsInt("xr.image.tile-height", 512);
+	private int tileThreads = Configuration.valueAsInt("xr.image.tile-threads", 1);
 
 
 	/**
@@ -259,6 +279,35 @@ public class Java2DRenderer {
 		this.bufferedImageType = bufferedImageType;
 	}
 
+	/**
+	 * Sets the number of threads that paint the image.  With more than one,
+	 * the image is split into horizontal bands of {@link #setTileHeight(int)}
+	 * pixels which are painted concurrently, each through its own output
+	 * device clipped to the band.  Documents whose painting changes the laid
+	 * out boxes (fixed positioned boxes, page counters) or which contain
+	 * replaced elements other than images are still painted by one thread.
+	 * Curved shapes, such as rounded borders, may be rasterized a pixel differently than in an image painted
+	 * in one piece, as Java2D takes the clip into account.
+	 * Defaults to the <code>xr.image.tile-threads</code> configuration
+	 * property, or 1.
+	 *
+	 * @param tileThreads the number of threads painting the image
+	 */
+	public void setTileThreads(int tileThreads) {
+		this.tileThreads = Math.max(1, tileThreads);
+	}
+
+	/**
+	 * Sets the height of the bands painted concurrently, see
+	 * {@link #setTileThreads(int)}. Defaults to the <code>xr.image.tile-height</code>
+	 * configuration property, or 512.
+	 *
+	 * @param tileHeight the height in pixels of a band
+	 */
+	public void setTileHeight(int tileHeight) {
+		this.tileHeight = Math.max(1, tileHeight);
+	}
+
 	/**
 	 * Returns the SharedContext to be used by renderer. Is instantiated along with the class, so can be accessed
 	 * before {@link #getImage()} is called to tune the rendering process.
@@ -279,30 +328,149 @@ public class Java2DRenderer {
 	 */
 	public BufferedImage getImage() {
 		if (!rendered) {
-            setDocument((doc == null ? loadDocument(sourceDocument) : doc), sourceDocumentBase, new XhtmlNamespaceHandler());
-
-			layout(this.width);
+			layoutDocument();
 
-			height = this.height == -1 ? root.getHeight() : this.height;
 			outputImage = createBufferedImage(this.width, height);
 			outputDevice = new Java2DOutputDevice(outputImage);
-			Graphics2D newG = (Graphics2D) outputImage.getGraphics();
-			if ( renderingHints != null ) {
-				newG.addRenderingHints(renderingHints);
+			if (tileThreads > 1 && height > tileHeight && canPaintConcurrently()) {
+				long start = System.currentTimeMillis();
+				int bands = (height + tileHeight - 1) / tileHeight;
+				ExecutorService executor = newTileExecutor(Math.min(tileThreads, bands));
+				try {
+					paintTiles(outputImage, 0, executor);
+				} finally {
+					executor.shutdownNow();
+				}
+				XRLog.render("Painted " + bands + " bands with " + tileThreads + " threads in "
+						+ (System.currentTimeMillis() - start) + "ms");
+			} else {
+				paint(outputDevice, outputImage);
 			}
+			rendered = true;
+		}
 
-			RenderingContext rc = sharedContext.newRenderingContextInstance();
-			rc.setFontContext(new Java2DFontContext(newG));
-			rc.setOutputDevice(outputDevice);
-			sharedContext.getTextRenderer().setup(rc.getFontContext());
+		return outputImage;
+	}
 
-			root.getLayer().paint(rc);
+	/**
+	 * Renders the XML document and writes it out with <code>writer</code>, without creating an image for the
+	 * whole document. The document is painted in strips of {@link #setTileHeight(int)} pixels (times the number
+	 * of {@link #setTileThreads(int) threads}, which paint a strip concurrently), and the writer is handed an
+	 * image which paints the strip it reads from when needed, so a writer reading the image a few rows at a
+	 * time, like the PNG writer, only needs memory for one strip. The JPEG writer reads the whole image at
+	 * once, so writing a JPEG this way needs as much memory as {@link #getImage()}. As with the concurrent
+	 * painting, curved shapes may be rasterized a pixel differently than in an image painted in one piece.
+	 * If the image has already been rendered by {@link #getImage()}, that image is written instead.
+	 *
+	 * @param os the stream to write the image to; not closed
+	 * @param writer the writer for the image format
+	 * @throws IOException if the image can't be written
+	 */
+	public void writeImage(OutputStream os, FSImageWriter writer) throws IOException {
+		if (rendered) {
+			writer.write(outputImage, os);
+			return;
+		}
+		layoutDocument();
+
+		boolean concurrent = tileThreads > 1 && height > tileHeight && canPaintConcurrently();
+		int stripHeight = concurrent ? tileHeight * tileThreads : tileHeight;
+		ExecutorService executor = concurrent ? newTileExecutor(tileThreads) : null;
+		try {
+			writer.write(new StripImage(Math.min(stripHeight, height), executor), os);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
 
-			newG.dispose();
-			rendered = true;
+	/**
+	 * Loads and lays out the document, unless done before, and sets the height of the image.
+	 */
+	private void layoutDocument() {
+		if (root != null) {
+			return;
 		}
+		setDocument((doc == null ? loadDocument(sourceDocument) : doc), sourceDocumentBase, new XhtmlNamespaceHandler());
 
-		return outputImage;
+		layout(this.width);
+
+		height = this.height == -1 ? root.getHeight() : this.height;
+	}
+
+	private void paint(Java2DOutputDevice device, BufferedImage image) {
+		Graphics2D newG = (Graphics2D) image.getGraphics();
+		if ( renderingHints != null ) {
+			newG.addRenderingHints(renderingHints);
+		}
+
+		RenderingContext rc = sharedContext.newRenderingContextInstance();
+		rc.setFontContext(new Java2DFontContext(newG));
+		rc.setOutputDevice(device);
+		sharedContext.getTextRenderer().setup(rc.getFontContext());
+
+		root.getLayer().paint(rc);
+
+		newG.dispose();
+	}
+
+	/**
+	 * Paints the part of the document from <code>top</code> down to the height of <code>band</code>
+	 * into <code>band</code>.
+	 */
+	private void paintBand(BufferedImage band, int top) {
+		Graphics2D g = band.createGraphics();
+		g.translate(0, -top);
+		g.clipRect(0, top, band.getWidth(), band.getHeight());
+		paint(new Java2DOutputDevice(g), band);
+		g.dispose();
+	}
+
+	/**
+	 * Paints the bands of <code>image</code>, which shows the part of the document from <code>top</code> down,
+	 * concurrently; each band is a sub-image sharing the pixels of <code>image</code>.
+	 */
+	private void paintTiles(BufferedImage image, int top, ExecutorService executor) {
+		List futures = new ArrayList();
+		for (int y = 0; y < image.getHeight(); y += tileHeight) {
+			final BufferedImage band = image.getSubimage(
+					0, y, image.getWidth(), Math.min(tileHeight, image.getHeight() - y));
+			final int bandTop = top + y;
+			futures.add(executor.submit(new Callable() {
+				public Object call() {
+					paintBand(band, bandTop);
+					return null;
+				}
+			}));
+		}
+
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				((Future) futures.get(i)).get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new XRRuntimeException("Interrupted while painting", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new XRRuntimeException("Failed to paint", cause);
+		}
+	}
+
+	/**
+	 * Painting fixed content repositions the shared fixed boxes, see
+	 * {@link #setTileThreads(int)}.
+	 */
+	private boolean canPaintConcurrently() {
+		return ! root.getLayer().containsFixedContent() && root.canPaintConcurrently(ImageReplacedElement.class);
+	}
+
+	private ExecutorService newTileExecutor(int threads) {
+		return Executors.newFixedThreadPool(threads, new TileThreadFactory());
 	}
 
 	/**
@@ -346,6 +514,7 @@ public class Java2DRenderer {
 		BlockBox root = BoxBuilder.createRootBox(c, doc);
 		root.setContainingBlock(new ViewportBox(rect));
 		root.layout(c);
+		sharedContext.getCss().releaseMatchTargets();
 		this.root = root;
 	}
 
@@ -384,6 +553,154 @@ public class Java2DRenderer {
 		sharedContext.setInteractive(false);
 	}
 
+	/**
+	 * An image of the whole document which keeps only one strip of it in memory; reading pixels from
+	 * another strip paints that strip over the current one.
+	 */
+	private class StripImage implements RenderedImage {
+		private final BufferedImage strip;
+		private final ExecutorService executor;
+		private int stripTop = -1;
+
+		private StripImage(int stripHeight, ExecutorService executor) {
+			this.strip = createBufferedImage(width, stripHeight);
+			this.executor = executor;
+		}
+
+		private Raster getStrip(int top) {
+			if (top != stripTop) {
+				ImageUtil.clearImage(strip);
+				BufferedImage target = strip;
+				if (top + strip.getHeight() > height) {
+					target = strip.getSubimage(0, 0, width, height - top);
+				}
+				if (executor != null) {
+					paintTiles(target, top, executor);
+				} else {
+					paintBand(target, top);
+				}
+				stripTop = top;
+			}
+			return strip.getRaster();
+		}
+
+		public WritableRaster copyData(WritableRaster raster) {
+			if (raster == null) {
+				raster = createCompatibleRaster(getBounds());
+			}
+			Rectangle bounds = raster.getBounds().intersection(getBounds());
+			int stripHeight = strip.getHeight();
+			for (int y = bounds.y; y < bounds.y + bounds.height; ) {
+				int top = y / stripHeight * stripHeight;
+				int bottom = Math.min(bounds.y + bounds.height, top + stripHeight);
+				Raster source = getStrip(top).createChild(
+						bounds.x, y - top, bounds.width, bottom - y, bounds.x, y, null);
+				raster.setRect(source);
+				y = bottom;
+			}
+			return raster;
+		}
+
+		public Raster getData(Rectangle rect) {
+			return copyData(createCompatibleRaster(rect));
+		}
+
+		public Raster getData() {
+			return getData(getBounds());
+		}
+
+		public Raster getTile(int tileX, int tileY) {
+			int top = tileY * strip.getHeight();
+			return getData(new Rectangle(0, top, width, Math.min(strip.getHeight(), height - top)));
+		}
+
+		private WritableRaster createCompatibleRaster(Rectangle rect) {
+			return strip.getRaster().createCompatibleWritableRaster(rect.x, rect.y, rect.width, rect.height);
+		}
+
+		private Rectangle getBounds() {
+			return new Rectangle(0, 0, width, height);
+		}
+
+		public ColorModel getColorModel() {
+			return strip.getColorModel();
+		}
+
+		public SampleModel getSampleModel() {
+			return strip.getSampleModel();
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public int getMinX() {
+			return 0;
+		}
+
+		public int getMinY() {
+			return 0;
+		}
+
+		public int getNumXTiles() {
+			return 1;
+		}
+
+		public int getNumYTiles() {
+			return (height + strip.getHeight() - 1) / strip.getHeight();
+		}
+
+		public int getMinTileX() {
+			return 0;
+		}
+
+		public int getMinTileY() {
+			return 0;
+		}
+
+		public int getTileWidth() {
+			return width;
+		}
+
+		public int getTileHeight() {
+			return strip.getHeight();
+		}
+
+		public int getTileGridXOffset() {
+			return 0;
+		}
+
+		public int getTileGridYOffset() {
+			return 0;
+		}
+
+		public Vector getSources() {
+			return null;
+		}
+
+		public Object getProperty(String name) {
+			return java.awt.Image.UndefinedProperty;
+		}
+
+		public String[] getPropertyNames() {
+			return null;
+		}
+	}
+
+	private static class TileThreadFactory implements ThreadFactory {
+		private int _count;
+
+		public synchronized Thread newThread(Runnable r) {
+			Thread result = new Thread(r, "java2d-tile-" + (++_count));
+			result.setDaemon(true);
+			return result;
+		}
+	}
+
 	private static final class NullUserInterface implements UserInterface {
 
 		public boolean isHover(Element e) {
@@ -32,7 +32,9 @@ import java.util.logging.Level;
  * An FSImage containing a java.awt.Image which can be replaced at runtime by calling setImage(). When setImage() is
  * called, the RepaintListener passed to this class in its constructor will have repaintRequested() invoked on the
  * Swing event dispatch thread. The method isLoaded() will return true once the image load has completed. Before the
- * image has loaded, a 1x1 transparent pixel will be returned from getImage().
+ * image has loaded, a transparent placeholder of the target size, if known, will be returned from getImage(). A
+ * layout is only requested if the loaded image doesn't have the size of the placeholder, as otherwise the document
+ * was already laid out with the right size.
  */
 public class MutableFSImage extends AWTFSImage {
     private volatile BufferedImage img;
@@ -40,8 +42,20 @@ public class MutableFSImage extends AWTFSImage {
     private volatile boolean loaded;
 
     public MutableFSImage(RepaintListener repaintListener) {
+        this(repaintListener, -1, -1);
+    }
+
+    /**
+     * @param width the width the image will be scaled to, or -1 if not known
+     * @param height the height the image will be scaled to, or -1 if not known
+     */
+    public MutableFSImage(RepaintListener repaintListener, int width, int height) {
         this.repaintListener = repaintListener;
-        img = ImageUtil.createTransparentImage(10, 10);
+        if (width > 0 && height > 0) {
+            img = ImageUtil.createTransparentImage(width, height);
+        } else {
+            img = ImageUtil.createTransparentImage(10, 10);
+        }
     }
 
     public synchronized BufferedImage getImage() {
@@ -63,10 +77,11 @@ public class MutableFSImage extends AWTFSImage {
     public synchronized void setImage(String uri, BufferedImage newImg, final boolean wasScaled) {
         assert EventQueue.isDispatchThread() : "setImage() must be called on EDT";
         
+        boolean resized = newImg.getWidth() != img.getWidth(null) || newImg.getHeight() != img.getHeight(null);
         img = newImg;
         loaded = true;
         XRLog.general(Level.FINE, "Mutable image " + uri + " loaded, repaint requested");
-        repaintListener.repaintRequested(wasScaled);
+        repaintListener.repaintRequested(wasScaled && resized);
     }
 
     public boolean isLoaded() {
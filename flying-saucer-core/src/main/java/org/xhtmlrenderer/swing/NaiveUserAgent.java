@@ -19,6 +19,7 @@
  */
 package org.xhtmlrenderer.swing;
 
+import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
@@ -36,10 +37,12 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import javax.imageio.ImageIO;
 import org.xhtmlrenderer.event.DocumentListener;
+import org.xhtmlrenderer.extend.FSImage;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.resource.CSSResource;
 import org.xhtmlrenderer.resource.ImageResource;
 import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.ImageUtil;
 import org.xhtmlrenderer.util.XRLog;
 
@@ -69,6 +72,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
     protected LinkedHashMap _imageCache;
     private int _imageCacheCapacity;
     private String _baseURL;
+    private boolean _lazyImageDecoding = Configuration.isTrue("xr.image.lazy-decode", false);
 
     /**
      * Creates a new instance of NaiveUserAgent with a max image cache of 16 images.
@@ -110,6 +114,29 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
         _imageCache.clear();
     }
 
+    /**
+     * @return whether images are decoded when they are first painted rather
+     * than when they are loaded
+     * @see #setLazyImageDecoding(boolean)
+     */
+    public boolean isLazyImageDecoding() {
+        return _lazyImageDecoding;
+    }
+
+    /**
+     * Sets whether images loaded from now on are decoded when they are first
+     * painted.  If set, loading an image only reads its size from the image
+     * header, which is all layout needs, and painting the image reads it again
+     * and decodes it; images that are never painted are never decoded.  This
+     * lowers the memory needed for documents with many images and suits local
+     * resources best, as each image is read twice.  Images in a format whose
+     * header can't be read are decoded when they are loaded.  The default is
+     * the <code>xr.image.lazy-decode</code> configuration property.
+     */
+    public void setLazyImageDecoding(boolean lazyImageDecoding) {
+        _lazyImageDecoding = lazyImageDecoding;
+    }
+
     /**
      * Gets a Reader for the resource identified
      *
@@ -229,6 +256,9 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
             uri = resolveURI(uri);
             ir = (ImageResource) _imageCache.get(uri);
             //TODO: check that cached image is still valid
+            if (ir == null && _lazyImageDecoding) {
+                ir = probeImageResource(uri);
+            }
             if (ir == null) {
                 InputStream is = resolveAndOpenStream(uri);
                 if (is != null) {
@@ -259,8 +289,40 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
         return ir;
     }
 
+    /**
+     * @return an image resource with an image that is decoded when it is first
+     * painted, the resource for a missing image if the image can't be read, or
+     * <code>null</code> if the size of the image can't be read from its header
+     */
+    private ImageResource probeImageResource(String uri) {
+        InputStream is = resolveAndOpenStream(uri);
+        if (is == null) {
+            return createImageResource(uri, null);
+        }
+        try {
+            Dimension size = ImageUtil.getImageSize(is);
+            if (size != null) {
+                ImageResource result = new ImageResource(uri, new LazyImage(uri, size));
+                _imageCache.put(uri, result);
+                return result;
+            }
+        } catch (IOException e) {
+            XRLog.exception("Can't read image header; unexpected problem for URI '" + uri + "'", e);
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        return null;
+    }
+
     /**
      * Factory method to generate ImageResources from a given Image. May be overridden in subclass. 
+     * With {@link #setLazyImageDecoding(boolean) lazy image decoding}, it is called when the image
+     * is first painted, and the image of the returned resource is painted if it is an
+     * {@link AWTFSImage}.
      *
      * @param uri The URI for the image, resolved to an absolute URI.
      * @param img The image to package; may be null (for example, if image could not be loaded).
@@ -414,6 +476,76 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
     public void onLayoutException(Throwable t) { /* ignore*/ }
 
     public void onRenderException(Throwable t) { /* ignore*/ }
+
+    /**
+     * An image whose size was read from its header and which is read again
+     * and decoded when it is first painted.
+     */
+    private class LazyImage extends AWTFSImage {
+        private final String _uri;
+        private int _width;
+        private int _height;
+        private AWTFSImage _decoded;
+
+        public LazyImage(String uri, Dimension size) {
+            _uri = uri;
+            _width = size.width;
+            _height = size.height;
+        }
+
+        public synchronized int getWidth() {
+            return _decoded == null ? _width : _decoded.getWidth();
+        }
+
+        public synchronized int getHeight() {
+            return _decoded == null ? _height : _decoded.getHeight();
+        }
+
+        public synchronized void scale(int width, int height) {
+            if (_decoded != null) {
+                _decoded.scale(width, height);
+            } else if (width > 0 || height > 0) {
+                int currentWidth = _width;
+                int currentHeight = _height;
+                _width = width == -1 ? (int) (currentWidth * ((double) height / currentHeight)) : width;
+                _height = height == -1 ? (int) (currentHeight * ((double) _width / currentWidth)) : height;
+            }
+        }
+
+        public synchronized BufferedImage getImage() {
+            if (_decoded == null) {
+                BufferedImage img = decode();
+                FSImage image = createImageResource(_uri, img).getImage();
+                _decoded = image instanceof AWTFSImage ?
+                        (AWTFSImage) image : (AWTFSImage) AWTFSImage.createImage(img);
+                _decoded.scale(_width, _height);
+            }
+            return _decoded.getImage();
+        }
+
+        private BufferedImage decode() {
+            InputStream is = resolveAndOpenStream(_uri);
+            if (is == null) {
+                return null;
+            }
+            try {
+                BufferedImage result = ImageIO.read(is);
+                if (result == null) {
+                    XRLog.exception("Can't read image file; ImageIO.read() returned null for URI '" + _uri + "'");
+                }
+                return result;
+            } catch (IOException e) {
+                XRLog.exception("Can't read image file; unexpected problem for URI '" + _uri + "'", e);
+                return null;
+            } finally {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
 }
 
 /*
@@ -357,6 +357,7 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
                 root.getLayer().trimEmptyPages(c, intrinsic_size.height);
                 root.getLayer().layoutPages(c);
             }
+            getSharedContext().getCss().releaseMatchTargets();
 
             // If the initial size we fed into the layout matches the width
             // of the layout generated then we can set the scrollable property
@@ -25,6 +25,7 @@ import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.*;
 import java.util.Iterator;
 
@@ -139,6 +140,20 @@ public class FSImageWriter {
      * @throws IOException If the file could not be written.
      */
     public void write(BufferedImage bimg, OutputStream os) throws IOException {
+        write((RenderedImage) bimg, os);
+    }
+
+    /**
+     * Writes the image out to the stream. The image's pixels are read as the ImageWriter for the format
+     * needs them, so an image which creates its pixels on demand, like the one used by
+     * {@link org.xhtmlrenderer.swing.Java2DRenderer#writeImage(OutputStream, FSImageWriter)}, need not
+     * hold all of them in memory at once.
+     *
+     * @param image Image to write.
+     * @param os outputstream to write to
+     * @throws IOException If the image could not be written.
+     */
+    public void write(RenderedImage image, OutputStream os) throws IOException {
         ImageWriter writer = null;
         ImageOutputStream ios = null;
         try {
@@ -147,7 +162,7 @@ public class FSImageWriter {
             writer.setOutput(ios);
             ImageWriteParam iwparam = getImageWriteParameters(writer);
 
-            writer.write(null, new IIOImage(bimg, null, null), iwparam);
+            writer.write(null, new IIOImage(image, null, null), iwparam);
         } finally {
             if (ios != null) {
                 try {
@@ -45,6 +45,19 @@ public class IOUtil {
         }
     }
 
+    /**
+     * Reads the rest of a stream; does not close it.
+     */
+    public static byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int len;
+        while ((len = in.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
     public static void deleteAllFiles(final File dir) throws IOException {
         File[] files = dir.listFiles();
         for (int i = 0; i < files.length; i++) {
@@ -23,12 +23,16 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Level;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import javax.xml.bind.DatatypeConverter;
 
 /**
@@ -315,6 +319,34 @@ public class ImageUtil {
         return null;
     }
     
+    /**
+     * Reads the width and height of an image (e.g. PNG, JPEG or GIF) from its
+     * header, without decoding the image.  The stream is left open.
+     *
+     * @param is the image file
+     * @return the size in pixels, or <code>null</code> if the image format is
+     * not supported
+     * @throws IOException if the header can't be read
+     */
+    public static Dimension getImageSize(InputStream is) throws IOException {
+        ImageInputStream iis = new MemoryCacheImageInputStream(is);
+        try {
+            Iterator readers = ImageIO.getImageReaders(iis);
+            if (! readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = (ImageReader) readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
     interface Scaler {
         /**
          * Convenience method that returns a scaled instance of the
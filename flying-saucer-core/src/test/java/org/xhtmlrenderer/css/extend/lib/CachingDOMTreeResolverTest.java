@@ -0,0 +1,123 @@
+package org.xhtmlrenderer.css.extend.lib;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xhtmlrenderer.context.StandardAttributeResolver;
+import org.xhtmlrenderer.context.StylesheetFactoryImpl;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.extend.TreeResolver;
+import org.xhtmlrenderer.css.newmatch.CascadedStyle;
+import org.xhtmlrenderer.css.newmatch.Matcher;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+
+import junit.framework.TestCase;
+
+public class CachingDOMTreeResolverTest extends TestCase {
+
+    private static final int ROWS = 500;
+
+    private static final String CSS =
+            "tr:nth-child(even) { color: red } tr:nth-child(odd) { color: blue } tr:nth-child(3n+1) { font-size: 20px }";
+
+    public void testPositionsFollowMutations() throws Exception {
+        Document doc = createTable(10);
+        Element table = doc.getDocumentElement();
+        CachingDOMTreeResolver resolver = new CachingDOMTreeResolver(doc);
+
+        Element third = row(doc, 2);
+        assertEquals(2, resolver.getPositionOfElement(third));
+
+        table.insertBefore(doc.createElement("tr"), table.getFirstChild());
+        assertEquals(3, resolver.getPositionOfElement(third));
+
+        table.removeChild(row(doc, 0));
+        table.removeChild(row(doc, 0));
+        assertEquals(1, resolver.getPositionOfElement(third));
+
+        resolver.dispose();
+        Element other = doc.createElement("tr");
+        table.appendChild(other);
+        assertEquals(9, resolver.getPositionOfElement(other));
+    }
+
+    public void testPositionsAreInvalidatedExplicitlyWithoutListening() throws Exception {
+        Document doc = createTable(10);
+        Element table = doc.getDocumentElement();
+        CachingDOMTreeResolver resolver = new CachingDOMTreeResolver();
+
+        Element third = row(doc, 2);
+        assertEquals(2, resolver.getPositionOfElement(third));
+
+        // not notified of the change
+        table.insertBefore(doc.createElement("tr"), table.getFirstChild());
+        assertEquals(2, resolver.getPositionOfElement(third));
+
+        resolver.invalidate(table);
+        assertEquals(3, resolver.getPositionOfElement(third));
+        table.removeChild(row(doc, 0));
+        resolver.invalidateAll();
+        assertEquals(2, resolver.getPositionOfElement(third));
+    }
+
+    /**
+     * Zebra striping a table: cascades the rows with both resolvers and
+     * checks they agree.
+     */
+    public void testZebraStripedTable() throws Exception {
+        Document doc = createTable(ROWS);
+
+        CascadedStyle[] expected = cascadeRows(doc, new DOMTreeResolver());
+        CascadedStyle[] actual = cascadeRows(doc, new CachingDOMTreeResolver(doc));
+
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(expected[i].propertyByName(CSSName.COLOR).getValue().getCssText(),
+                    actual[i].propertyByName(CSSName.COLOR).getValue().getCssText());
+            assertEquals(i % 3 == 0, actual[i].hasProperty(CSSName.FONT_SIZE));
+        }
+        assertEquals("#ff0000", actual[1].propertyByName(CSSName.COLOR).getValue().getCssText());
+    }
+
+    private static CascadedStyle[] cascadeRows(Document doc, TreeResolver treeResolver) {
+        NaiveUserAgent uac = new NaiveUserAgent();
+        StylesheetFactoryImpl factory = new StylesheetFactoryImpl(uac);
+        StylesheetInfo info = new StylesheetInfo();
+        info.setUri("test.css");
+        info.setOrigin(StylesheetInfo.AUTHOR);
+        Stylesheet sheet = factory.parse(new StringReader(CSS), info);
+        List sheets = Collections.singletonList(sheet);
+
+        Matcher matcher = new Matcher(treeResolver,
+                new StandardAttributeResolver(new XhtmlNamespaceHandler(), uac, null), factory, sheets, "print");
+
+        NodeList rows = doc.getDocumentElement().getChildNodes();
+        CascadedStyle[] result = new CascadedStyle[rows.getLength()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matcher.getCascadedStyle(rows.item(i), false);
+        }
+        return result;
+    }
+
+    private static Element row(Document doc, int i) {
+        return (Element) doc.getDocumentElement().getChildNodes().item(i);
+    }
+
+    private static Document createTable(int rows) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element table = doc.createElement("table");
+        doc.appendChild(table);
+        for (int i = 0; i < rows; i++) {
+            table.appendChild(doc.createElement("tr"));
+        }
+        return doc;
+    }
+}
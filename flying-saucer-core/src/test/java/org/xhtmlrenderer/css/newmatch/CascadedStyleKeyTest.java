@@ -0,0 +1,70 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import java.util.List;
+
+import org.xhtmlrenderer.css.parser.CSSErrorHandler;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+
+import junit.framework.TestCase;
+
+public class CascadedStyleKeyTest extends TestCase {
+
+    private static final CSSErrorHandler ERRORS = new CSSErrorHandler() {
+        public void error(String uri, String message) {
+            fail(message);
+        }
+    };
+
+    public void testEqualCascadesShareAKey() throws Exception {
+        // declarations parsed separately, with a different origin and order
+        CascadedStyle first = style(StylesheetInfo.AUTHOR, "color: red; margin-top: 2px; display: block");
+        CascadedStyle second = style(StylesheetInfo.USER, "display: block; margin-top: 2px; color: red");
+        assertEquals(first.getKey(), second.getKey());
+        assertEquals(first.getKey().hashCode(), second.getKey().hashCode());
+        assertEquals(first.getKey().getHash(), second.getKey().getHash());
+        assertSame(first.getKey(), first.getKey());
+    }
+
+    public void testDifferentCascadesHaveDifferentKeys() throws Exception {
+        CascadedStyle style = style(StylesheetInfo.AUTHOR, "color: red; margin-top: 2px");
+        assertFalse(style.getKey().equals(style(StylesheetInfo.AUTHOR, "color: red; margin-top: 3px").getKey()));
+        assertFalse(style.getKey().equals(style(StylesheetInfo.AUTHOR, "color: red; margin-bottom: 2px").getKey()));
+        assertFalse(style.getKey().equals(style(StylesheetInfo.AUTHOR, "color: red").getKey()));
+    }
+
+    public void testCollidingFingerprintsAreNotEqual() throws Exception {
+        PropertyDeclaration red = new CollidingDeclaration(declarations("color: red").get(0));
+        PropertyDeclaration blue = new CollidingDeclaration(declarations("color: blue").get(0));
+        CascadedStyleKey first = new CascadedStyleKey(new PropertyDeclaration[] { red });
+        CascadedStyleKey second = new CascadedStyleKey(new PropertyDeclaration[] { blue });
+        assertEquals(first.getHash(), second.getHash());
+        assertFalse(first.equals(second));
+        assertTrue(first.equals(new CascadedStyleKey(new PropertyDeclaration[] {
+                new CollidingDeclaration(declarations("color: red").get(0)) })));
+    }
+
+    private static CascadedStyle style(int origin, String declarations) {
+        return CascadedStyle.createLayoutStyle(new CSSParser(ERRORS).parseDeclaration(origin, declarations)
+                .getPropertyDeclarations());
+    }
+
+    private static List declarations(String text) {
+        return new CSSParser(ERRORS).parseDeclaration(StylesheetInfo.AUTHOR, text).getPropertyDeclarations();
+    }
+
+    /**
+     * A declaration whose fingerprint hash collides with that of any other.
+     */
+    private static class CollidingDeclaration extends PropertyDeclaration {
+        CollidingDeclaration(Object declaration) {
+            super(((PropertyDeclaration) declaration).getCSSName(), ((PropertyDeclaration) declaration).getValue(),
+                    false, StylesheetInfo.AUTHOR);
+        }
+
+        public long getFingerprintHash() {
+            return 42;
+        }
+    }
+}
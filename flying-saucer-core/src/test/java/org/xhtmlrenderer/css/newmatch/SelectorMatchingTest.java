@@ -0,0 +1,156 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.context.StandardAttributeResolver;
+import org.xhtmlrenderer.context.StylesheetFactoryImpl;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.extend.AttributeResolver;
+import org.xhtmlrenderer.css.extend.lib.DOMTreeResolver;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+
+import junit.framework.TestCase;
+
+public class SelectorMatchingTest extends TestCase {
+
+    private Document _doc;
+    private AttributeResolver _attRes;
+    private StylesheetFactoryImpl _factory;
+
+    protected void setUp() throws Exception {
+        _doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        _doc.appendChild(_doc.createElement("body"));
+        NaiveUserAgent uac = new NaiveUserAgent();
+        _factory = new StylesheetFactoryImpl(uac);
+        _attRes = new StandardAttributeResolver(new XhtmlNamespaceHandler(), uac, null);
+    }
+
+    public void testClasses() throws Exception {
+        Element e = element("p", "class", "  first\tsecond  third ");
+        assertTrue(matches("p.first", e));
+        assertTrue(matches(".second", e));
+        assertTrue(matches(".third.first", e));
+        assertFalse(matches(".fir", e));
+        assertFalse(matches(".second.fourth", e));
+        assertFalse(matches("div.first", e));
+        assertFalse(matches(".first", element("p", "id", "first")));
+    }
+
+    public void testAttributeLists() throws Exception {
+        Element e = element("p", "title", "one two  three");
+        assertTrue(matches("[title~=two]", e));
+        assertTrue(matches("[title~=three]", e));
+        assertFalse(matches("[title~=thr]", e));
+        assertTrue(matches("[title~=single]", element("p", "title", "single")));
+
+        assertTrue(matches("[title|=en]", element("p", "title", "en-US")));
+        assertTrue(matches("[title|=en]", element("p", "title", "en")));
+        assertFalse(matches("[title|=en]", element("p", "title", "eng")));
+    }
+
+    public void testConditionsAreIndependentOfOrder() throws Exception {
+        Element e = element("li", "class", "item");
+        _doc.getDocumentElement().appendChild(_doc.createElement("li"));
+        _doc.getDocumentElement().appendChild(e);
+        assertTrue(matches("li:nth-child(2).item", e));
+        assertTrue(matches("li.item:nth-child(2)", e));
+        assertFalse(matches("li:first-child.item", e));
+        assertTrue(matches("li + li.item", e));
+        assertFalse(matches("p + li.item", e));
+    }
+
+    public void testStyleAttributeIsParsedOncePerElement() throws Exception {
+        Element e = element("td", "style", "color: red");
+        e.setAttribute("colspan", "2");
+        e.setAttribute("id", "cell");
+        _doc.getDocumentElement().appendChild(e);
+        Matcher matcher = new Matcher(new DOMTreeResolver(), _attRes, _factory, java.util.Collections.EMPTY_LIST, "print");
+
+        CascadedStyle first = matcher.getCascadedStyle(e, false);
+        assertEquals("#ff0000", first.propertyByName(CSSName.COLOR).getValue().getCssText());
+        assertTrue(first.hasProperty(CSSName.FS_COLSPAN));
+        CascadedStyle second = matcher.getCascadedStyle(e, false);
+        assertSame(first.propertyByName(CSSName.COLOR), second.propertyByName(CSSName.COLOR));
+
+        e.setAttribute("style", "color: blue");
+        CascadedStyle restyled = matcher.getCascadedStyle(e, true);
+        assertEquals("#0000ff", restyled.propertyByName(CSSName.COLOR).getValue().getCssText());
+        assertTrue(matches("td#cell", e));
+    }
+
+    public void testMatchTargetsAreReleased() throws Exception {
+        Element first = element("p", "style", "color: red");
+        Element second = element("p", "class", "x");
+        _doc.getDocumentElement().appendChild(first);
+        _doc.getDocumentElement().appendChild(second);
+        Matcher matcher = new Matcher(new DOMTreeResolver(), _attRes, _factory, java.util.Collections.EMPTY_LIST, "print");
+
+        matcher.getCascadedStyle(first, false);
+        matcher.getCascadedStyle(second, false);
+        assertEquals(3, matcher.releaseMatchTargets());
+        assertEquals(0, matcher.releaseMatchTargets());
+
+        // styles are still available, the attributes are read again
+        first.setAttribute("style", "color: blue");
+        CascadedStyle style = matcher.getCascadedStyle(first, false);
+        assertEquals("#0000ff", style.propertyByName(CSSName.COLOR).getValue().getCssText());
+        assertEquals(1, matcher.releaseMatchTargets());
+    }
+
+    public void testRulesAndPageStylesAreShared() throws Exception {
+        StylesheetInfo info = new StylesheetInfo();
+        info.setUri("test.css");
+        info.setOrigin(StylesheetInfo.AUTHOR);
+        Stylesheet sheet = _factory.parse(new StringReader(
+                "p { color: red } @media print { p { color: blue } }\n" +
+                "@page { margin: 1cm } @page :first { margin: 2cm } @page wide { size: landscape }"), info);
+        Element p = element("p", "class", "x");
+        _doc.getDocumentElement().appendChild(p);
+
+        List sheets = java.util.Collections.singletonList(sheet);
+        Matcher print = new Matcher(new DOMTreeResolver(), _attRes, _factory, sheets, "print");
+        Matcher screen = new Matcher(new DOMTreeResolver(), _attRes, _factory, sheets, "screen");
+        Matcher print2 = new Matcher(new DOMTreeResolver(), _attRes, _factory, sheets, "print");
+        assertEquals("#0000ff", print.getCascadedStyle(p, false).propertyByName(CSSName.COLOR).getValue().getCssText());
+        assertEquals("#ff0000", screen.getCascadedStyle(p, false).propertyByName(CSSName.COLOR).getValue().getCssText());
+        assertEquals("#0000ff", print2.getCascadedStyle(p, false).propertyByName(CSSName.COLOR).getValue().getCssText());
+
+        PageInfo first = print.getPageCascadedStyle(null, "first");
+        assertSame(first, print.getPageCascadedStyle(null, "first"));
+        assertEquals("2cm", first.getPageStyle().propertyByName(CSSName.MARGIN_TOP).getValue().getCssText());
+        PageInfo right = print.getPageCascadedStyle(null, "right");
+        assertNotSame(first, right);
+        assertEquals("1cm", right.getPageStyle().propertyByName(CSSName.MARGIN_TOP).getValue().getCssText());
+        PageInfo wide = print.getPageCascadedStyle("wide", "right");
+        assertNotSame(right, wide);
+        assertNotNull(wide.getPageStyle().propertyByName(CSSName.FS_PAGE_ORIENTATION));
+    }
+
+    private Element element(String name, String attribute, String value) {
+        Element result = _doc.createElement(name);
+        result.setAttribute(attribute, value);
+        return result;
+    }
+
+    private boolean matches(String selector, Element e) {
+        StylesheetInfo info = new StylesheetInfo();
+        info.setUri("test.css");
+        info.setOrigin(StylesheetInfo.AUTHOR);
+        Stylesheet sheet = _factory.parse(new StringReader(selector + " { color: red }"), info);
+        Ruleset ruleset = (Ruleset) sheet.getContents().get(0);
+        Selector sel = (Selector) ruleset.getFSSelectors().get(0);
+        while (sel.getChainedSelector() != null) {
+            sel = sel.getChainedSelector();
+        }
+        return sel.matches(e, _attRes, new DOMTreeResolver());
+    }
+}
@@ -0,0 +1,101 @@
+package org.xhtmlrenderer.css.parser;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+
+import junit.framework.TestCase;
+
+public class CSSParserTest extends TestCase {
+
+    private static final int RULES = 4000;
+
+    private static final CSSErrorHandler ERRORS = new CSSErrorHandler() {
+        public void error(String uri, String message) {
+            fail(message);
+        }
+    };
+
+    public void testNames() throws Exception {
+        Stylesheet sheet = parse(
+                "P.Note, #Main, .a\\:b, \\41 bc { COLOR: Red; Font-Family: 'Times New Roman', \"a\\\"b\"; }");
+        Ruleset ruleset = (Ruleset) sheet.getContents().get(0);
+        assertEquals(4, ruleset.getFSSelectors().size());
+
+        List declarations = ruleset.getPropertyDeclarations();
+        PropertyDeclaration color = (PropertyDeclaration) declarations.get(0);
+        assertSame(CSSName.COLOR, color.getCSSName());
+        assertEquals("#ff0000", color.getValue().getCssText());
+
+        PropertyDeclaration family = (PropertyDeclaration) declarations.get(1);
+        String[] families = ((PropertyValue) family.getValue()).getStringArrayValue();
+        assertEquals("Times New Roman", families[0]);
+        assertEquals("a\"b", families[1]);
+    }
+
+    public void testNameTable() {
+        NameTable names = new NameTable();
+        char[] buf = "xxBlockyyblock".toCharArray();
+        String block = names.get(buf, 2, 5, true);
+        assertEquals("block", block);
+        assertSame(block, names.get(buf, 9, 5, true));
+        assertEquals("Block", names.get(buf, 2, 5, false));
+        for (int i = 0; i < 1000; i++) {
+            char[] name = ("n" + i).toCharArray();
+            assertEquals("n" + i, names.get(name, 0, name.length, false));
+        }
+        assertSame(block, names.get(buf, 9, 5, false));
+    }
+
+    /**
+     * Parses a large stylesheet with a new parser and again with the same
+     * parser, which must give the same result.
+     */
+    public void testLargeStylesheet() throws Exception {
+        String css = createStylesheet();
+
+        CSSParser parser = new CSSParser(ERRORS);
+        Stylesheet sheet = parser.parseStylesheet("test.css", StylesheetInfo.AUTHOR, new StringReader(css));
+        assertEquals(RULES + 1, sheet.getContents().size());
+
+        Stylesheet again = parser.parseStylesheet("test.css", StylesheetInfo.AUTHOR, new StringReader(css));
+        assertEquals(RULES + 1, again.getContents().size());
+        for (int i = 0; i < RULES; i += 97) {
+            Ruleset expected = (Ruleset) sheet.getContents().get(i);
+            Ruleset actual = (Ruleset) again.getContents().get(i);
+            assertEquals(expected.getPropertyDeclarations().size(), actual.getPropertyDeclarations().size());
+            for (int j = 0; j < expected.getPropertyDeclarations().size(); j++) {
+                PropertyDeclaration e = (PropertyDeclaration) expected.getPropertyDeclarations().get(j);
+                PropertyDeclaration a = (PropertyDeclaration) actual.getPropertyDeclarations().get(j);
+                assertSame(e.getCSSName(), a.getCSSName());
+                assertEquals(e.getValue().getCssText(), a.getValue().getCssText());
+            }
+        }
+    }
+
+    private static Stylesheet parse(String css) throws Exception {
+        return new CSSParser(ERRORS).parseStylesheet("test.css", StylesheetInfo.AUTHOR, new StringReader(css));
+    }
+
+    private static String createStylesheet() {
+        StringBuffer result = new StringBuffer();
+        for (int i = 0; i < RULES; i++) {
+            result.append(".col-").append(i % 12).append("-").append(i).append(", .row > .cell-").append(i)
+                    .append(":first-child {\n");
+            result.append("  display: block; float: left; position: relative;\n");
+            result.append("  margin: 0 ").append(i % 30).append("px; padding: 0.5em 1em;\n");
+            result.append("  color: #").append(Integer.toHexString(0x100000 + i)).append(";\n");
+            result.append("  background-color: rgb(").append(i % 256).append(", 10, 20);\n");
+            result.append("  font-family: \"Helvetica Neue\", Helvetica, Arial, sans-serif;\n");
+            result.append("  border: 1px solid transparent; text-align: center; width: ")
+                    .append(i % 100).append("%;\n}\n");
+        }
+        result.append("@media print { .col-1-1 { display: none } }\n");
+        return result.toString();
+    }
+}
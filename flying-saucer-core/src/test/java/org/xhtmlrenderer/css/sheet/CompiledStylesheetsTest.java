@@ -0,0 +1,230 @@
+package org.xhtmlrenderer.css.sheet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.context.StandardAttributeResolver;
+import org.xhtmlrenderer.context.StylesheetFactoryImpl;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.extend.lib.DOMTreeResolver;
+import org.xhtmlrenderer.css.newmatch.CascadedStyle;
+import org.xhtmlrenderer.css.newmatch.Matcher;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+import org.xml.sax.InputSource;
+
+import junit.framework.TestCase;
+
+public class CompiledStylesheetsTest extends TestCase {
+
+    private static final String URI = "http://example.com/compiled.css";
+
+    private static final String CSS =
+            "body { color: #333; font: italic bold 12px/1.5 'Times New Roman', serif }\n" +
+            "div.note > p:first-child, #main li:nth-child(2n+1) { display: none !important }\n" +
+            "p[title|=en] { border: 1px solid rgb(10, 20, 30); margin: 0 auto }\n" +
+            "li { counter-increment: item 2 }\n" +
+            "@media print { p { color: cmyk(0, 0, 0, 1) } }\n" +
+            "@page :first { margin: 2cm; @top-center { content: \"Title\" } }\n";
+
+    private StylesheetFactoryImpl _factory;
+
+    protected void setUp() throws Exception {
+        _factory = new StylesheetFactoryImpl(new NaiveUserAgent());
+        CompiledStylesheets.clear();
+    }
+
+    protected void tearDown() throws Exception {
+        CompiledStylesheets.clear();
+    }
+
+    public void testRoundTrip() throws Exception {
+        Stylesheet sheet = parse();
+        CompiledStylesheets.register(new ByteArrayInputStream(write(sheet)));
+
+        Stylesheet compiled = CompiledStylesheets.get(URI, StylesheetInfo.AUTHOR, source(CSS));
+        assertNotNull(compiled);
+        assertNotSame(compiled, CompiledStylesheets.get(URI, StylesheetInfo.AUTHOR, source(CSS)));
+        assertNull(CompiledStylesheets.get(URI, StylesheetInfo.USER_AGENT, source(CSS)));
+        assertNull(CompiledStylesheets.get("http://example.com/other.css", StylesheetInfo.AUTHOR, source(CSS)));
+        assertEquals(sheet.getContents().size(), compiled.getContents().size());
+
+        Ruleset ruleset = (Ruleset) compiled.getContents().get(0);
+        PropertyDeclaration color = (PropertyDeclaration) ruleset.getPropertyDeclarations().get(0);
+        assertSame(CSSName.COLOR, color.getCSSName());
+        PropertyDeclaration style = (PropertyDeclaration) ruleset.getPropertyDeclarations().get(1);
+        assertSame(IdentValue.ITALIC, style.asIdentValue());
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(
+                new StringReader("<body><div class='note'><p title='en-US'>a</p></div>"
+                        + "<ul id='main'><li>b</li></ul></body>")));
+        String[] tags = { "body", "p", "li" };
+        for (int i = 0; i < tags.length; i++) {
+            Element e = (Element) doc.getElementsByTagName(tags[i]).item(0);
+            assertEquals(tags[i], toString(match(sheet, e)), toString(match(compiled, e)));
+        }
+    }
+
+    public void testChangedStylesheetIsParsed() throws Exception {
+        CompiledStylesheets.register(new ByteArrayInputStream(write(parse())));
+        assertTrue(CompiledStylesheets.contains(URI));
+        assertNull(CompiledStylesheets.get(URI, StylesheetInfo.AUTHOR, source(CSS + "p { color: red }")));
+    }
+
+    public void testFactoryUsesCompiledStylesheetOfUnchangedText() throws Exception {
+        File file = File.createTempFile("compiled", ".css");
+        try {
+            writeFile(file, "p { color: red }");
+            String uri = file.toURI().toString();
+            // compiled from a different text, so that it can be told apart
+            Map stylesheets = Collections.singletonMap(uri, parse());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CompiledStylesheets.write(stylesheets, Collections.singletonMap(uri, source("p { color: red }")), out);
+            CompiledStylesheets.register(new ByteArrayInputStream(out.toByteArray()));
+
+            StylesheetInfo info = new StylesheetInfo();
+            info.setUri(uri);
+            info.setOrigin(StylesheetInfo.AUTHOR);
+            Stylesheet sheet = new StylesheetFactoryImpl(new NaiveUserAgent()).getStylesheet(info);
+            assertEquals(parse().getContents().size(), sheet.getContents().size());
+
+            writeFile(file, "p { color: blue }");
+            sheet = new StylesheetFactoryImpl(new NaiveUserAgent()).getStylesheet(info);
+            assertEquals(1, sheet.getContents().size());
+            Ruleset ruleset = (Ruleset) sheet.getContents().get(0);
+            PropertyDeclaration color = (PropertyDeclaration) ruleset.getPropertyDeclarations().get(0);
+            assertEquals("#0000ff", color.getValue().getCssText());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testCompiler() throws Exception {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(messages);
+        assertEquals(1, new StylesheetCompiler(err, err).compile(new String[0]));
+
+        File css = File.createTempFile("compiled", ".css");
+        File bundle = File.createTempFile("compiled", ".bin");
+        try {
+            writeFile(css, CSS);
+            assertEquals(0, new StylesheetCompiler(err, err).compile(
+                    new String[] { bundle.getPath(), css.getPath() }));
+            InputStream in = new FileInputStream(bundle);
+            try {
+                CompiledStylesheets.register(in);
+            } finally {
+                in.close();
+            }
+            assertNotNull(CompiledStylesheets.get(css.toURI().toString(), StylesheetInfo.AUTHOR, source(CSS)));
+            XhtmlNamespaceHandler handler = new XhtmlNamespaceHandler();
+            assertNotNull(CompiledStylesheets.get(handler.getNamespace(), StylesheetInfo.USER_AGENT,
+                    handler.readDefaultStylesheet()));
+        } finally {
+            css.delete();
+            bundle.delete();
+        }
+    }
+
+    public void testDifferentVersionIsRejected() throws Exception {
+        byte[] data = write(parse());
+        data[8] ^= 1; // tables version
+        try {
+            CompiledStylesheets.register(new ByteArrayInputStream(data));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertNull(CompiledStylesheets.get(URI, StylesheetInfo.AUTHOR, source(CSS)));
+    }
+
+    /**
+     * The default stylesheet read back has the same rules as the parsed one.
+     */
+    public void testDefaultStylesheet() throws Exception {
+        XhtmlNamespaceHandler handler = new XhtmlNamespaceHandler();
+        StylesheetInfo info = handler.getDefaultStylesheet(_factory);
+        byte[] source = handler.readDefaultStylesheet();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledStylesheets.write(Collections.singletonMap(info.getUri(), info.getStylesheet()),
+                Collections.singletonMap(info.getUri(), source), out);
+        CompiledStylesheets.register(new ByteArrayInputStream(out.toByteArray()));
+
+        Stylesheet parsed = _factory.parse(new StringReader(new String(source)), info);
+        Stylesheet compiled = CompiledStylesheets.get(info.getUri(), StylesheetInfo.USER_AGENT, source);
+        assertNotNull(compiled);
+        assertEquals(parsed.getContents().size(), compiled.getContents().size());
+        for (int i = 0; i < parsed.getContents().size(); i++) {
+            Object expected = parsed.getContents().get(i);
+            Object actual = compiled.getContents().get(i);
+            assertEquals(expected.getClass(), actual.getClass());
+            if (expected instanceof Ruleset) {
+                assertEquals(((Ruleset) expected).getPropertyDeclarations().size(),
+                        ((Ruleset) actual).getPropertyDeclarations().size());
+            }
+        }
+    }
+
+    private Stylesheet parse() {
+        StylesheetInfo info = new StylesheetInfo();
+        info.setUri(URI);
+        info.setOrigin(StylesheetInfo.AUTHOR);
+        return _factory.parse(new StringReader(CSS), info);
+    }
+
+    private static byte[] write(Stylesheet sheet) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledStylesheets.write(Collections.singletonMap(URI, sheet),
+                Collections.singletonMap(URI, source(CSS)), out);
+        return out.toByteArray();
+    }
+
+    private CascadedStyle match(Stylesheet sheet, Element e) {
+        NaiveUserAgent uac = new NaiveUserAgent();
+        Matcher matcher = new Matcher(new DOMTreeResolver(),
+                new StandardAttributeResolver(new XhtmlNamespaceHandler(), uac, null),
+                _factory, Collections.singletonList(sheet), "print");
+        return matcher.getCascadedStyle(e, false);
+    }
+
+    private static String toString(CascadedStyle style) {
+        StringBuffer result = new StringBuffer();
+        CSSName[] names = { CSSName.COLOR, CSSName.FONT_STYLE, CSSName.FONT_WEIGHT, CSSName.FONT_SIZE,
+                CSSName.LINE_HEIGHT, CSSName.FONT_FAMILY, CSSName.DISPLAY, CSSName.BORDER_TOP_COLOR,
+                CSSName.MARGIN_LEFT, CSSName.COUNTER_INCREMENT };
+        for (int i = 0; i < names.length; i++) {
+            PropertyDeclaration decl = style.propertyByName(names[i]);
+            result.append(names[i]).append('=');
+            result.append(decl == null ? "" : decl.getValue().getCssText()).append(';');
+        }
+        return result.toString();
+    }
+
+    private static byte[] source(String css) throws IOException {
+        return css.getBytes("UTF-8");
+    }
+
+    private static void writeFile(File file, String css) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(source(css));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.xhtmlrenderer.css.style.derived;
+
+import java.io.StringReader;
+
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.parser.CSSErrorHandler;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.parser.PropertyValue;
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.css.style.FSDerivedValue;
+
+import junit.framework.TestCase;
+
+public class DerivedValueCacheTest extends TestCase {
+
+    private static final CSSErrorHandler ERRORS = new CSSErrorHandler() {
+        public void error(String uri, String message) {
+            fail(message);
+        }
+    };
+
+    protected void setUp() throws Exception {
+        DerivedValueFactory.clearCaches();
+    }
+
+    public void testFullCacheRejectsNewValues() throws Exception {
+        DerivedValueCache cache = new DerivedValueCache("test", 2);
+        FSDerivedValue one = number("1");
+        assertSame(one, cache.put("1", one));
+        assertSame(one, cache.put("1", number("1")));
+        cache.put("2", number("2"));
+
+        FSDerivedValue three = number("3");
+        assertSame(three, cache.put("3", three));
+        assertNull(cache.get("3"));
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getRejected());
+
+        assertSame(one, cache.get("1"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testStyleIndependentValuesAreShared() throws Exception {
+        assertSame(derive(CSSName.WIDTH, "12px"), derive(CSSName.WIDTH, "12px"));
+        assertSame(derive(CSSName.LINE_HEIGHT, "1.5"), derive(CSSName.LINE_HEIGHT, "1.5"));
+        assertSame(derive(CSSName.COLOR, "red"), derive(CSSName.COLOR, "red"));
+        assertNotSame(derive(CSSName.WIDTH, "12px"), derive(CSSName.WIDTH, "12pt"));
+    }
+
+    public void testStyleDependentLengthsAreNotCached() throws Exception {
+        assertNotSame(derive(CSSName.WIDTH, "2em"), derive(CSSName.WIDTH, "2em"));
+        assertNotSame(derive(CSSName.WIDTH, "50%"), derive(CSSName.WIDTH, "50%"));
+        DerivedValueCache lengths = DerivedValueFactory.getCaches()[1];
+        assertEquals("lengths", lengths.getName());
+        assertEquals(0, lengths.getSize());
+    }
+
+    public void testRelativeURIsOfDifferentStylesheetsAreNotShared() throws Exception {
+        FSDerivedValue first = derive("http://example.com/a/style.css", CSSName.BACKGROUND_IMAGE, "url(image.png)");
+        FSDerivedValue again = derive("http://example.com/a/style.css", CSSName.BACKGROUND_IMAGE, "url(image.png)");
+        FSDerivedValue second = derive("http://example.com/b/style.css", CSSName.BACKGROUND_IMAGE, "url(image.png)");
+        assertSame(first, again);
+        assertNotSame(first, second);
+        assertEquals("http://example.com/a/image.png", first.asString());
+        assertEquals("http://example.com/b/image.png", second.asString());
+    }
+
+    private static FSDerivedValue number(String text) {
+        return new NumberValue(CSSName.LINE_HEIGHT, new PropertyValue(
+                org.w3c.dom.css.CSSPrimitiveValue.CSS_NUMBER, Float.parseFloat(text), text));
+    }
+
+    private static FSDerivedValue derive(CSSName name, String value) throws Exception {
+        return derive("http://example.com/style.css", name, value);
+    }
+
+    private static FSDerivedValue derive(String uri, CSSName name, String value) throws Exception {
+        Ruleset ruleset = (Ruleset) new CSSParser(ERRORS).parseStylesheet(uri, StylesheetInfo.AUTHOR,
+                new StringReader("p { " + name + ": " + value + " }")).getContents().get(0);
+        PropertyDeclaration declaration = (PropertyDeclaration) ruleset.getPropertyDeclarations().get(0);
+        return DerivedValueFactory.newDerivedValue(null, name, (PropertyValue) declaration.getValue());
+    }
+}
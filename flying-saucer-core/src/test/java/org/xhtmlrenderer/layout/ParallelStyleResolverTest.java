@@ -0,0 +1,117 @@
+package org.xhtmlrenderer.layout;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+import org.xml.sax.InputSource;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that styles resolved in parallel equal the styles resolved on demand.
+ */
+public class ParallelStyleResolverTest extends TestCase {
+
+    private static final int SECTIONS = 400;
+
+    private static final String CSS =
+            "body { font-size: 12px; color: #333 }\n" +
+            "div.section { margin: 1em 0; padding-left: 2em }\n" +
+            "div.section > h2 { font-size: 150%; color: navy }\n" +
+            "p { line-height: 1.4 } p.note { font-style: italic; color: gray }\n" +
+            "ul li:nth-child(odd) { background-color: #eee }\n" +
+            "ul li:first-child { font-weight: bold }\n" +
+            "table td.num { text-align: right } tr:nth-child(even) td { color: red }\n" +
+            "div.section:nth-child(3n) p span { text-decoration: underline }\n";
+
+    public void testStylesResolvedInParallel() throws Exception {
+        Document doc = createDocument();
+        NodeList elements = doc.getElementsByTagName("*");
+
+        SharedContext reference = createContext(doc);
+        CalculatedStyle[] expected = new CalculatedStyle[elements.getLength()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = reference.getStyle((Element) elements.item(i));
+        }
+
+        int max = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        for (int threads = 1; threads <= max; threads *= 2) {
+            SharedContext context = createContext(doc);
+            StyleMap styles = new StyleMap();
+            int count = new ParallelStyleResolver(context.getCss(), threads, 0).resolve(doc, styles);
+
+            assertEquals(expected.length, count);
+            assertEquals(expected.length, styles.size());
+            for (int i = 0; i < expected.length; i++) {
+                assertSameStyle(expected[i], styles.get((Element) elements.item(i)));
+            }
+        }
+    }
+
+    public void testSharedContextUsesResolvedStyles() throws Exception {
+        Document doc = createDocument();
+        SharedContext context = createContext(doc);
+        context.setStyleThreads(2);
+        context.setParallelStyleThreshold(Integer.MAX_VALUE);
+        assertEquals(0, context.resolveStyles(doc));
+
+        context.setParallelStyleThreshold(0);
+        int count = context.resolveStyles(doc);
+        assertEquals(doc.getElementsByTagName("*").getLength(), count);
+        Element h2 = (Element) doc.getElementsByTagName("h2").item(0);
+        assertEquals("#000080", context.getStyle(h2).asString(CSSName.COLOR));
+    }
+
+    public void testDeepDocument() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element e = doc.createElement("html");
+        doc.appendChild(e);
+        for (int i = 0; i < 20000; i++) {
+            Element child = doc.createElement(i % 2 == 0 ? "div" : "span");
+            e.appendChild(child);
+            e = child;
+        }
+        SharedContext context = createContext(doc);
+        assertEquals("inline", context.getStyle(e).asString(CSSName.DISPLAY));
+        assertEquals("block", context.getStyle((Element) e.getParentNode()).asString(CSSName.DISPLAY));
+    }
+
+    private static void assertSameStyle(CalculatedStyle expected, CalculatedStyle actual) {
+        CSSName[] names = { CSSName.COLOR, CSSName.FONT_SIZE, CSSName.FONT_STYLE, CSSName.FONT_WEIGHT,
+                CSSName.BACKGROUND_COLOR, CSSName.TEXT_ALIGN, CSSName.TEXT_DECORATION, CSSName.DISPLAY,
+                CSSName.PADDING_LEFT, CSSName.MARGIN_TOP };
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i].toString(), expected.asString(names[i]), actual.asString(names[i]));
+        }
+    }
+
+    private static SharedContext createContext(Document doc) {
+        SharedContext result = new SharedContext(new NaiveUserAgent());
+        result.setMedia("print");
+        result.getCss().setDocumentContext(result, new XhtmlNamespaceHandler(), doc, null);
+        return result;
+    }
+
+    private static Document createDocument() throws Exception {
+        StringBuffer html = new StringBuffer();
+        html.append("<html><head><style type='text/css'>").append(CSS).append("</style></head><body>");
+        for (int i = 0; i < SECTIONS; i++) {
+            html.append("<div class='section'><h2>Section ").append(i).append("</h2>");
+            html.append("<p>Some <span>text</span> and <b>more</b> text.</p><p class='note'>A note.</p>");
+            html.append("<ul><li>one</li><li>two</li><li>three</li><li>four</li></ul>");
+            html.append("<table><tr><td>a</td><td class='num'>1</td></tr><tr><td>b</td><td class='num'>2</td></tr></table>");
+            html.append("</div>");
+        }
+        html.append("</body></html>");
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+                new InputSource(new StringReader(html.toString())));
+    }
+}
@@ -0,0 +1,130 @@
+package org.xhtmlrenderer.layout.breaker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.render.InlineLayoutBox;
+import org.xhtmlrenderer.render.InlineText;
+import org.xhtmlrenderer.render.LineBox;
+import org.xhtmlrenderer.swing.BoxRenderer;
+
+/**
+ * Lays out short paragraphs in a box 20 monospaced characters wide and checks
+ * where the lines were broken.
+ */
+public class BreakerTest extends TestCase {
+
+    private static final String STYLE = "body { margin: 0 } "
+            + "p { width: 120px; margin: 0; font-family: monospace; font-size: 10px }";
+
+    public void testLineAfterHyphenStartsAfterInsertedHyphen() throws Exception {
+        // hyphenation points between the letter runs of "aaaa bbbbbbbbbbbbccccccccccccdddddddddddd"
+        final int[] providers = new int[1];
+        LineBreakingStrategy hyphenating = new LineBreakingStrategy() {
+            public BreakPointsProvider getBreakPointsProvider(String text, String lang, CalculatedStyle style) {
+                providers[0]++;
+                return new ListBreakPointsProvider(Arrays.asList(new BreakPoint[] {
+                        new BreakPoint(5), hyphen(17), hyphen(29), new BreakPoint(41) }));
+            }
+        };
+        List lines = layout("<p>aaaa bbbbbbbbbbbbccccccccccccdddddddddddd</p>", hyphenating);
+        assertEquals(Arrays.asList(new String[] {
+                "aaaa bbbbbbbbbbbb-", "cccccccccccc-", "dddddddddddd" }), lines);
+        // one provider for all lines, although the breaker inserted hyphens into the text
+        assertEquals(1, providers[0]);
+    }
+
+    public void testTextIsBrokenAgainAfterFailedFit() throws Exception {
+        // the first word does not fit behind the bold text, and is retried on the next line
+        List lines = layout("<p><b>xxxxxxxxxxxxxxxxx</b>bbbbbbbb cccccccc dddddddd eeeeeeee</p>", null);
+        assertEquals(Arrays.asList(new String[] {
+                "xxxxxxxxxxxxxxxxx", "bbbbbbbb cccccccc", "dddddddd eeeeeeee" }), lines);
+    }
+
+    public void testBreakWordBreaksAnywhereInWordsTooLong() throws Exception {
+        String word = "wwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwww";
+        List lines = layout("<p style='word-wrap: break-word'>aa " + word + " bb</p>", null);
+        assertEquals("aa", lines.get(0));
+        assertEquals(word.substring(0, 20), lines.get(1));
+        assertEquals(word.substring(20, 40), lines.get(2));
+        assertEquals(word.substring(40) + " bb", lines.get(3));
+        assertEquals(4, lines.size());
+    }
+
+    public void testWordTooLongIsNotBrokenWithoutBreakWord() throws Exception {
+        String word = "wwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwwww";
+        List lines = layout("<p>aa " + word + " bb</p>", null);
+        assertEquals("aa", lines.get(0));
+        // an unbreakable string takes the rest of the text with it
+        assertTrue((String) lines.get(1), ((String) lines.get(1)).startsWith(word));
+    }
+
+    private static BreakPoint hyphen(int position) {
+        BreakPoint result = new BreakPoint(position);
+        result.setHyphen("-");
+        return result;
+    }
+
+    /**
+     * Returns the text of each line of <code>body</code>, without trailing
+     * spaces.
+     */
+    private static List layout(String body, LineBreakingStrategy strategy) throws Exception {
+        File doc = File.createTempFile("breaker", ".xhtml");
+        try {
+            Writer w = new OutputStreamWriter(new FileOutputStream(doc), "UTF-8");
+            try {
+                w.write("<html><head><style>" + STYLE + "</style></head><body>" + body + "</body></html>");
+            } finally {
+                w.close();
+            }
+            BoxRenderer renderer = new BoxRenderer(doc, 400);
+            if (strategy != null) {
+                renderer.getSharedContext().setLineBreakingStrategy(strategy);
+            }
+            List result = new ArrayList();
+            collectLines(renderer.render(), result);
+            return result;
+        } finally {
+            doc.delete();
+        }
+    }
+
+    private static void collectLines(Box box, List lines) {
+        if (box instanceof LineBox) {
+            StringBuffer text = new StringBuffer();
+            collectText(box, text);
+            lines.add(text.toString().trim());
+            return;
+        }
+        for (int i = 0; i < box.getChildCount(); i++) {
+            collectLines(box.getChild(i), lines);
+        }
+    }
+
+    private static void collectText(Box box, StringBuffer text) {
+        if (box instanceof InlineLayoutBox) {
+            InlineLayoutBox iB = (InlineLayoutBox) box;
+            for (int i = 0; i < iB.getInlineChildCount(); i++) {
+                Object child = iB.getInlineChild(i);
+                if (child instanceof InlineText) {
+                    text.append(((InlineText) child).getSubstring());
+                } else {
+                    collectText((Box) child, text);
+                }
+            }
+        }
+        for (int i = 0; i < box.getChildCount(); i++) {
+            collectText(box.getChild(i), text);
+        }
+    }
+}
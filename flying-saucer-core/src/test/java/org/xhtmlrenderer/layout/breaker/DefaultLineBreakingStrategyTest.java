@@ -0,0 +1,69 @@
+package org.xhtmlrenderer.layout.breaker;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class DefaultLineBreakingStrategyTest extends TestCase {
+
+    /**
+     * Two providers on one thread keep taking the pooled iterator from each
+     * other, and a third takes it from both halfway through.
+     */
+    public void testInterleavedProvidersOverLongTexts() throws Exception {
+        String first = text("alpha beta-gamma http://example.com/a/b ", 300);
+        String second = text("one two, three/four ", 400);
+        List expectedFirst = breakPoints(first);
+        List expectedSecond = breakPoints(second);
+
+        DefaultLineBreakingStrategy strategy = new DefaultLineBreakingStrategy();
+        BreakPointsProvider a = strategy.getBreakPointsProvider(first, "en", null);
+        BreakPointsProvider b = strategy.getBreakPointsProvider(second, "en", null);
+        List actualFirst = new ArrayList();
+        List actualSecond = new ArrayList();
+        boolean aDone = false;
+        boolean bDone = false;
+        while (! aDone || ! bDone) {
+            if (! aDone) {
+                aDone = ! read(a, actualFirst);
+            }
+            if (! bDone) {
+                bDone = ! read(b, actualSecond);
+            }
+            if (actualFirst.size() == expectedFirst.size() / 2) {
+                assertEquals(2, strategy.getBreakPointsProvider("x y", "en", null).next().getPosition());
+            }
+        }
+        assertEquals(expectedFirst, actualFirst);
+        assertEquals(expectedSecond, actualSecond);
+    }
+
+    private static boolean read(BreakPointsProvider provider, List positions) {
+        int position = provider.next().getPosition();
+        if (position == BreakIterator.DONE) {
+            return false;
+        }
+        positions.add(new Integer(position));
+        return true;
+    }
+
+    private static List breakPoints(String text) {
+        BreakIterator iterator = new UrlAwareLineBreakIterator();
+        iterator.setText(text);
+        List result = new ArrayList();
+        for (int p = iterator.next(); p != BreakIterator.DONE; p = iterator.next()) {
+            result.add(new Integer(p));
+        }
+        return result;
+    }
+
+    private static String text(String words, int count) {
+        StringBuffer result = new StringBuffer();
+        for (int i = 0; i < count; i++) {
+            result.append(words).append(i).append(' ');
+        }
+        return result.toString();
+    }
+}
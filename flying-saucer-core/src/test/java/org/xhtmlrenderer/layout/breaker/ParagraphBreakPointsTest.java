@@ -0,0 +1,69 @@
+package org.xhtmlrenderer.layout.breaker;
+
+import java.text.BreakIterator;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ParagraphBreakPointsTest extends TestCase {
+
+    private static final String MASTER = "aaaa bbbbbbbbcccccccc";
+
+    public void testPositionsAreRelativeToLineStart() throws Exception {
+        ParagraphBreakPoints points = newBreakPoints();
+        points.setLineStart(0);
+        assertEquals(5, points.next().getPosition());
+        points.setLineStart(5);
+        assertEquals(8, points.next().getPosition());
+        assertEquals(16, points.next().getPosition());
+        assertEquals(BreakIterator.DONE, points.next().getPosition());
+    }
+
+    public void testRetriedLineSeesBreakPointsAgain() throws Exception {
+        ParagraphBreakPoints points = newBreakPoints();
+        points.setLineStart(0);
+        assertEquals(5, points.next().getPosition());
+        assertEquals(13, points.next().getPosition());
+        // the line did not fit, and is tried again from the same start
+        points.setLineStart(0);
+        assertEquals(5, points.next().getPosition());
+        assertEquals(13, points.next().getPosition());
+        assertEquals(21, points.next().getPosition());
+    }
+
+    public void testBreakPointsAfterInsertedHyphenAreShifted() throws Exception {
+        ParagraphBreakPoints points = newBreakPoints();
+        points.setLineStart(0);
+        points.next();
+        BreakPoint hyphen = points.next();
+        assertEquals(13, hyphen.getPosition());
+        assertEquals("-", hyphen.getHyphen());
+        // read past the end of the line before the hyphen is inserted
+        assertEquals(21, points.next().getPosition());
+
+        String hyphenated = "aaaa bbbbbbbb-cccccccc";
+        points.textInserted(hyphenated, 13, 1);
+        assertTrue(points.isFor(hyphenated));
+        assertFalse(points.isFor(MASTER));
+        points.setLineStart(14);
+        assertEquals(8, points.next().getPosition());
+        assertEquals(BreakIterator.DONE, points.next().getPosition());
+    }
+
+    public void testBreakPointsReadAfterInsertedHyphenAreShifted() throws Exception {
+        ParagraphBreakPoints points = newBreakPoints();
+        points.setLineStart(0);
+        points.next();
+        points.next();
+        points.textInserted("aaaa bbbbbbbb-cccccccc", 13, 1);
+        points.setLineStart(14);
+        assertEquals(8, points.next().getPosition());
+    }
+
+    private static ParagraphBreakPoints newBreakPoints() {
+        BreakPoint hyphen = new BreakPoint(13);
+        hyphen.setHyphen("-");
+        return new ParagraphBreakPoints(MASTER, new ListBreakPointsProvider(Arrays.asList(
+                new BreakPoint[] { new BreakPoint(5), hyphen, new BreakPoint(21) })));
+    }
+}
@@ -0,0 +1,127 @@
+package org.xhtmlrenderer.render;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.xhtmlrenderer.layout.FreezeStatistics;
+import org.xhtmlrenderer.swing.BoxRenderer;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the properties which only a few boxes use are kept out of the
+ * boxes themselves, and are only allocated for those few boxes of a generated
+ * document mixing paragraphs, lists and tables.
+ */
+public class BoxFootprintTest extends TestCase {
+
+    private static final int SECTIONS = 200;
+
+    public void testRarePropertiesAreNotBoxFields() throws Exception {
+        Field[] rare = RareBoxData.class.getDeclaredFields();
+        Class[] boxClasses = { Box.class, BlockBox.class, InlineLayoutBox.class };
+        for (int i = 0; i < boxClasses.length; i++) {
+            Field[] fields = boxClasses[i].getDeclaredFields();
+            for (int j = 0; j < fields.length; j++) {
+                for (int k = 0; k < rare.length; k++) {
+                    assertFalse(boxClasses[i].getName() + "." + fields[j].getName(),
+                            fields[j].getName().equals(rare[k].getName()));
+                }
+            }
+        }
+        // all the rare properties cost a box a single reference
+        assertEquals(1, countReferenceFields(Box.class, RareBoxData.class));
+    }
+
+    public void testFewBoxesHaveRareData() throws Exception {
+        File doc = createDocument();
+        try {
+            BoxRenderer renderer = new BoxRenderer(doc, 800);
+            Box root = renderer.render();
+            // the attributes snapshotted for matching are dropped after the layout
+            assertEquals(0, renderer.getSharedContext().getCss().releaseMatchTargets());
+
+            int[] counts = new int[3];
+            count(root, counts);
+            int boxes = counts[0];
+            assertTrue(boxes > SECTIONS * 10);
+            assertTrue(counts[1] > SECTIONS);
+            // only the list items (marker data) and table cells (own block formatting context)
+            assertTrue(counts[2] + " of " + boxes + " boxes have rare data", counts[2] * 4 < boxes);
+
+            FreezeStatistics stats = new FreezeStatistics();
+            root.releaseLayoutState(stats);
+            assertEquals(boxes, stats.getBoxes());
+            // each paragraph releases the inline boxes of its text and emphasis
+            assertTrue(stats.getInlineBoxes() >= SECTIONS * 3);
+            assertTrue(stats.getEstimatedBytes() > stats.getInlineBoxes() * 64);
+
+            FreezeStatistics batch = new FreezeStatistics();
+            batch.add(stats);
+            batch.add(stats);
+            assertEquals(2 * stats.getEstimatedBytes(), batch.getEstimatedBytes());
+        } finally {
+            doc.delete();
+        }
+    }
+
+    private static int countReferenceFields(Class clazz, Class type) {
+        int result = 0;
+        Field[] fields = clazz.getDeclaredFields();
+        for (int i = 0; i < fields.length; i++) {
+            if (! Modifier.isStatic(fields[i].getModifiers()) && fields[i].getType() == type) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the boxes, the inline texts and the boxes with rare data below
+     * and including <code>box</code>.
+     */
+    private static void count(Box box, int[] counts) {
+        counts[0]++;
+        if (box.hasRareData()) {
+            counts[2]++;
+        }
+        if (box instanceof InlineLayoutBox) {
+            InlineLayoutBox iB = (InlineLayoutBox) box;
+            for (int i = 0; i < iB.getInlineChildCount(); i++) {
+                Object child = iB.getInlineChild(i);
+                if (child instanceof Box) {
+                    count((Box) child, counts);
+                } else {
+                    counts[1]++;
+                }
+            }
+        }
+        for (int i = 0; i < box.getChildCount(); i++) {
+            count(box.getChild(i), counts);
+        }
+    }
+
+    private static File createDocument() throws Exception {
+        File result = File.createTempFile("footprint", ".xhtml");
+        Writer w = new OutputStreamWriter(new FileOutputStream(result), "UTF-8");
+        try {
+            w.write("<html><head><style>td { border: 1px solid black } em { color: red }</style></head><body>");
+            for (int i = 0; i < SECTIONS; i++) {
+                w.write("<h2>Section " + i + "</h2>");
+                w.write("<p>Lorem ipsum dolor sit amet, <em>consectetur</em> adipiscing elit, sed do eiusmod tempor "
+                        + "incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud "
+                        + "exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat.</p>");
+                w.write("<ul><li>one</li><li>two</li><li>three</li></ul>");
+                w.write("<table><tr><td>a</td><td>b</td></tr><tr><td>c</td><td>d</td></tr></table>");
+            }
+            w.write("</body></html>");
+        } finally {
+            w.close();
+        }
+        return result;
+    }
+}
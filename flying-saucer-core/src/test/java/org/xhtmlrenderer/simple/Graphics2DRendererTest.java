@@ -0,0 +1,100 @@
+package org.xhtmlrenderer.simple;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.resource.XMLResource;
+
+public class Graphics2DRendererTest extends TestCase {
+
+    private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE };
+
+    public void testEachPageIsRenderedOnItsOwn() throws Exception {
+        Graphics2DRenderer renderer = layoutPages();
+        assertEquals(3, renderer.getPageCount());
+        for (int i = 2; i >= 0; i--) {
+            BufferedImage image = renderer.renderPage(i, BufferedImage.TYPE_INT_RGB);
+            assertEquals(200, image.getWidth());
+            assertEquals(100, image.getHeight());
+            assertEquals(COLORS[i].getRGB(), image.getRGB(40, 50));
+            assertEquals(Color.WHITE.getRGB(), image.getRGB(5, 5));
+        }
+    }
+
+    public void testPageOutOfRangeIsRejected() throws Exception {
+        Graphics2DRenderer renderer = layoutPages();
+        try {
+            renderer.renderPage(3, BufferedImage.TYPE_INT_RGB);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Page 3 is not between 0 and 3", e.getMessage());
+        }
+    }
+
+    public void testLayoutPagesNeedsPrintMode() throws Exception {
+        Graphics2DRenderer renderer = new Graphics2DRenderer();
+        renderer.setDocument(document(), null);
+        try {
+            renderer.layoutPages(newGraphics());
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testSelectedPagesAreRenderedToImages() throws Exception {
+        File file = File.createTempFile("graphics2d-renderer", ".xhtml");
+        try {
+            Writer out = new FileWriter(file);
+            try {
+                out.write(html());
+            } finally {
+                out.close();
+            }
+            BufferedImage[] images = Graphics2DRenderer.renderPagesToImages(
+                    file.toURI().toString(), new int[] { 2, 0 }, BufferedImage.TYPE_INT_RGB);
+            assertEquals(2, images.length);
+            assertEquals(Color.BLUE.getRGB(), images[0].getRGB(40, 50));
+            assertEquals(Color.RED.getRGB(), images[1].getRGB(40, 50));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Graphics2DRenderer layoutPages() {
+        Graphics2DRenderer renderer = new Graphics2DRenderer();
+        renderer.getSharedContext().setPrint(true);
+        renderer.setDocument(document(), null);
+        Graphics2D g = newGraphics();
+        renderer.layoutPages(g);
+        g.dispose();
+        return renderer;
+    }
+
+    private static Graphics2D newGraphics() {
+        return new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+    }
+
+    private static Document document() {
+        return XMLResource.load(new StringReader(html())).getDocument();
+    }
+
+    private static String html() {
+        return "<html><head><style>"
+                + "@page { size: 200px 100px; margin: 10px } "
+                + "body { margin: 0 } div { height: 60px } div + div { page-break-before: always }"
+                + "</style></head><body>"
+                + "<div style='background: red'></div>"
+                + "<div style='background: lime'></div>"
+                + "<div style='background: blue'></div>"
+                + "</body></html>";
+    }
+}
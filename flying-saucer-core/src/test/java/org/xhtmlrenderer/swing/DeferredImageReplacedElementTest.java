@@ -0,0 +1,62 @@
+package org.xhtmlrenderer.swing;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+import org.xhtmlrenderer.resource.ImageResource;
+
+public class DeferredImageReplacedElementTest extends TestCase {
+
+    private final List _requests = new ArrayList();
+
+    private final RepaintListener _listener = new RepaintListener() {
+        public void repaintRequested(boolean doLayout) {
+            _requests.add(Boolean.valueOf(doLayout));
+        }
+    };
+
+    public void testImageOfKnownSizeOnlyRequestsRepaint() throws Exception {
+        DeferredImageReplacedElement element = new DeferredImageReplacedElement(loadedImage(), _listener, 20, 10);
+        assertEquals(20, element.getImage().getWidth(null));
+        assertEquals(10, element.getImage().getHeight(null));
+        assertEquals(Boolean.FALSE, nextRequest());
+    }
+
+    public void testImageOfUnknownSizeRequestsLayout() throws Exception {
+        DeferredImageReplacedElement element = new DeferredImageReplacedElement(loadedImage(), _listener, -1, -1);
+        element.getImage();
+        assertEquals(20, element.getIntrinsicWidth());
+        assertEquals(Boolean.TRUE, nextRequest());
+    }
+
+    public void testScaledImageOfPlaceholderSizeOnlyRequestsRepaint() throws Exception {
+        final MutableFSImage image = new MutableFSImage(_listener, 20, 10);
+        assertEquals(20, image.getWidth());
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                image.setImage("test", new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), true);
+            }
+        });
+        assertTrue(image.isLoaded());
+        assertEquals(Boolean.FALSE, nextRequest());
+    }
+
+    private static ImageResource loadedImage() {
+        return new ImageResource("test", AWTFSImage.createImage(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB)));
+    }
+
+    private Object nextRequest() throws Exception {
+        // requests are made on the event dispatch thread
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+            }
+        });
+        assertEquals(1, _requests.size());
+        return _requests.get(0);
+    }
+}
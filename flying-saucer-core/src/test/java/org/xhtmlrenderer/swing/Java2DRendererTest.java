@@ -0,0 +1,93 @@
+package org.xhtmlrenderer.swing;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+
+import javax.imageio.ImageIO;
+import javax.xml.bind.DatatypeConverter;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.util.FSImageWriter;
+
+public class Java2DRendererTest extends TestCase {
+
+    public void testTiledImageIsTheSameAsUntiled() throws Exception {
+        BufferedImage eager = render(document(), 1);
+        BufferedImage tiled = render(document(), 4);
+        assertEquals(eager.getWidth(), tiled.getWidth());
+        assertEquals(eager.getHeight(), tiled.getHeight());
+        assertTrue(eager.getHeight() > 1000);
+        for (int y = 0; y < eager.getHeight(); y++) {
+            for (int x = 0; x < eager.getWidth(); x++) {
+                assertEquals("pixel " + x + "," + y, eager.getRGB(x, y), tiled.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testTiledImageWithFixedBoxIsTheSameAsUntiled() throws Exception {
+        String document = document().replaceFirst("<body([^>]*)>",
+                "<body$1><div style='position: fixed; top: 250px; left: 40px; width: 100px; height: 60px; "
+                        + "background: orange; border: 2px solid black'>Fixed</div>");
+        BufferedImage eager = render(document, 1);
+        BufferedImage tiled = render(document, 4);
+        assertEquals(eager.getHeight(), tiled.getHeight());
+        for (int y = 0; y < eager.getHeight(); y++) {
+            for (int x = 0; x < eager.getWidth(); x++) {
+                assertEquals("pixel " + x + "," + y, eager.getRGB(x, y), tiled.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testStreamedImageIsTheSameAsRendered() throws Exception {
+        BufferedImage eager = render(document(), 1);
+        for (int threads = 1; threads <= 3; threads += 2) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            newRenderer(document(), threads).writeImage(out, new FSImageWriter());
+            BufferedImage streamed = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(eager.getWidth(), streamed.getWidth());
+            assertEquals(eager.getHeight(), streamed.getHeight());
+            for (int y = 0; y < eager.getHeight(); y++) {
+                for (int x = 0; x < eager.getWidth(); x++) {
+                    assertEquals("pixel " + x + "," + y, eager.getRGB(x, y), streamed.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    private static BufferedImage render(String document, int threads) {
+        return newRenderer(document, threads).getImage();
+    }
+
+    private static Java2DRenderer newRenderer(String document, int threads) {
+        Document doc = XMLResource.load(new StringReader(document)).getDocument();
+        Java2DRenderer renderer = new Java2DRenderer(doc, 400);
+        renderer.setTileThreads(threads);
+        renderer.setTileHeight(100);
+        return renderer;
+    }
+
+    private static String document() throws Exception {
+        BufferedImage image = new BufferedImage(60, 150, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, Color.RED.getRGB());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        String src = "data:image/png;base64," + DatatypeConverter.printBase64Binary(out.toByteArray());
+
+        StringBuffer result = new StringBuffer("<html><body style='background: #eef'>");
+        for (int i = 0; i < 20; i++) {
+            result.append("<div style='border: 3px solid green; padding: 5px; margin: 7px'>")
+                    .append("<img src='").append(src).append("' style='float: right' />")
+                    .append("<p><u>Paragraph ").append(i).append("</u> with some text that wraps onto ")
+                    .append("several lines, so that lines and borders cross the bands.</p>")
+                    .append("<ol><li>one</li><li style='position: relative; top: 20px'>two</li></ol>")
+                    .append("</div>");
+        }
+        return result.append("</body></html>").toString();
+    }
+}
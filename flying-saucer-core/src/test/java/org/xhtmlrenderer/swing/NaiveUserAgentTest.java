@@ -1,7 +1,18 @@
 package org.xhtmlrenderer.swing;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
 import junit.framework.TestCase;
 
+import org.xhtmlrenderer.extend.FSImage;
+import org.xhtmlrenderer.resource.ImageResource;
+
 public class NaiveUserAgentTest
         extends TestCase
 {
@@ -63,4 +74,49 @@ public class NaiveUserAgentTest
         assertEquals("jar:file:/path/jarfile.jar!/other.xhtml", resolve("jar:file:/path/jarfile.jar!/foo/","/other.xhtml"));
     }
 
+    public void testLazyImageDecoding() throws Exception
+    {
+        File file = File.createTempFile("lazy", ".gif");
+        try {
+            ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "gif", file);
+            NaiveUserAgent userAgent = new NaiveUserAgent();
+            userAgent.setLazyImageDecoding(true);
+            FSImage image = userAgent.getImageResource(file.toURI().toString()).getImage();
+            assertEquals(40, image.getWidth());
+            assertEquals(30, image.getHeight());
+
+            // the size of the decoded image is the size it was scaled to before
+            image.scale(20, -1);
+            assertEquals(15, image.getHeight());
+            BufferedImage decoded = ((AWTFSImage) image).getImage();
+            assertEquals(20, decoded.getWidth());
+            assertEquals(15, decoded.getHeight());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testLazyImageIsCreatedByFactory() throws Exception
+    {
+        File file = File.createTempFile("lazy", ".gif");
+        try {
+            ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "gif", file);
+            // the factory paints the image red
+            final BufferedImage created = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = created.createGraphics();
+            g.setColor(Color.RED);
+            g.fillRect(0, 0, 40, 30);
+            g.dispose();
+            NaiveUserAgent userAgent = new NaiveUserAgent() {
+                protected ImageResource createImageResource(String uri, Image img) {
+                    return new ImageResource(uri, AWTFSImage.createImage(img == null ? null : created));
+                }
+            };
+            userAgent.setLazyImageDecoding(true);
+            FSImage image = userAgent.getImageResource(file.toURI().toString()).getImage();
+            assertEquals(Color.RED.getRGB(), ((AWTFSImage) image).getImage().getRGB(10, 10));
+        } finally {
+            file.delete();
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package org.xhtmlrenderer.fop;
+
+import java.text.BreakIterator;
+
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.layout.breaker.BreakPoint;
+import org.xhtmlrenderer.layout.breaker.BreakPointsProvider;
+import org.xhtmlrenderer.layout.breaker.LineBreakIteratorPool;
+
+/**
+ * Streams the line break opportunities of a text merged with its hyphenation
+ * points. Text is hyphenated segment by segment (between two line break
+ * opportunities) only when the consumer asks for points in that segment, so
+ * a line breaker that stops at the line width never hyphenates the rest
+ * of a long paragraph.
+ */
+public class FOPBreakPointsProvider implements BreakPointsProvider {
+
+	private static final char SOFT_HYPHEN = '\u00AD';
+
+	private static final int[] NO_POINTS = new int[0];
+
+	private static final int NONE = -2;
+
+	private final String text;
+	private final String lang;
+	private final IdentValue hyphens;
+	private final HyphenationCache hyphenationCache;
+
+	private final LineBreakIteratorPool pool;
+	private BreakIterator breakIt;
+	private boolean pooled = true;
+
+	private int segmentStart = 0;
+	private int segmentEnd = NONE;
+	private int[] segmentHyphens = NO_POINTS;
+	private int hyphenIndex = 0;
+
+	public FOPBreakPointsProvider(String text, String lang, IdentValue hyphens, HyphenationCache hyphenationCache) {
+		this.text = text;
+		this.lang = lang;
+		this.hyphens = hyphens;
+		this.hyphenationCache = hyphenationCache;
+		this.pool = LineBreakIteratorPool.getInstance();
+		this.breakIt = pool.claim(this, text);
+	}
+
+	@Override
+	public BreakPoint next() {
+		if (segmentEnd == NONE) {
+			int end = nextLineBreak();
+			if (end == BreakIterator.DONE) {
+				return BreakPoint.getDonePoint();
+			}
+			segmentEnd = end;
+			segmentHyphens = findHyphens(segmentStart, end);
+			hyphenIndex = 0;
+		}
+		if (hyphenIndex < segmentHyphens.length) {
+			BreakPoint point = new BreakPoint(segmentHyphens[hyphenIndex++]);
+			point.setHyphen("-");
+			return point;
+		}
+		BreakPoint point = new BreakPoint(segmentEnd);
+		segmentStart = segmentEnd;
+		segmentEnd = NONE;
+		return point;
+	}
+
+	private int nextLineBreak() {
+		if (breakIt == null) {
+			return BreakIterator.DONE;
+		}
+		if (pooled && !pool.isClaimedBy(this)) {
+			// lost the pooled iterator, continue on a private one
+			breakIt = LineBreakIteratorPool.resume(text, segmentStart);
+			pooled = false;
+		}
+		int p = breakIt.next();
+		if (p == BreakIterator.DONE) {
+			if (pooled) {
+				pool.release(this);
+			}
+			breakIt = null;
+		}
+		return p;
+	}
+
+	/**
+	 * @return absolute positions of hyphenation points strictly inside the segment, in ascending order
+	 */
+	private int[] findHyphens(int start, int end) {
+		if (hyphens == IdentValue.MANUAL) {
+			return findSoftHyphens(start, end);
+		}
+		if (hyphens == IdentValue.AUTO) {
+			return findAutoHyphens(start, end);
+		}
+		return NO_POINTS;
+	}
+
+	/**
+	 * @return absolute positions of the soft hyphens in the segment, in ascending order. A soft
+	 * hyphen only starts a segment at the start of the text, as there is no line break before one.
+	 */
+	private int[] findSoftHyphens(int start, int end) {
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == SOFT_HYPHEN) {
+				count++;
+			}
+		}
+		if (count == 0) {
+			return NO_POINTS;
+		}
+		int[] result = new int[count];
+		count = 0;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == SOFT_HYPHEN) {
+				result[count++] = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Hyphenates every run of letters in the segment separately. FOP refuses
+	 * to hyphenate input that contains letters on both sides of a non-letter,
+	 * e.g. words joined by a non-breaking space.
+	 */
+	private int[] findAutoHyphens(int start, int end) {
+		int[] result = NO_POINTS;
+		int count = 0;
+		int i = start;
+		while (i < end) {
+			while (i < end && !Character.isLetter(text.charAt(i))) {
+				i++;
+			}
+			int wordStart = i;
+			while (i < end && Character.isLetter(text.charAt(i))) {
+				i++;
+			}
+			if (i - wordStart < 4) {
+				// remain and push char count of two each leave nothing to hyphenate
+				continue;
+			}
+			int[] points = hyphenationCache.hyphenate(lang, text.substring(wordStart, i));
+			for (int j = 0; j < points.length; j++) {
+				int position = wordStart + points[j];
+				if (position <= start || position >= end) {
+					continue;
+				}
+				if (count == result.length) {
+					int[] grown = new int[Math.max(4, count * 2)];
+					System.arraycopy(result, 0, grown, 0, count);
+					result = grown;
+				}
+				result[count++] = position;
+			}
+		}
+		if (count == result.length) {
+			return result;
+		}
+		int[] trimmed = new int[count];
+		System.arraycopy(result, 0, trimmed, 0, count);
+		return trimmed;
+	}
+
+}
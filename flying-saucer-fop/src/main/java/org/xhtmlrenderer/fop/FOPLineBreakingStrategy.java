@@ -18,72 +18,41 @@
  */
 package org.xhtmlrenderer.fop;
 
-import java.text.BreakIterator;
-import java.util.Arrays;
-import java.util.TreeSet;
-
-import org.apache.fop.hyphenation.Hyphenation;
-import org.apache.fop.hyphenation.HyphenationTree;
-import org.apache.fop.hyphenation.Hyphenator;
-import org.xhtmlrenderer.css.constants.IdentValue;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.fop.nbsp.NonBreakPointsEnhancer;
-import org.xhtmlrenderer.layout.breaker.BreakPoint;
 import org.xhtmlrenderer.layout.breaker.BreakPointsProvider;
 import org.xhtmlrenderer.layout.breaker.LineBreakingStrategy;
-import org.xhtmlrenderer.layout.breaker.ListBreakPointsProvider;
-import org.xhtmlrenderer.layout.breaker.UrlAwareLineBreakIterator;
 
 /**
+ * Line breaking strategy adding hyphenation points computed by Apache FOP.
+ * Break points are produced lazily by {@link FOPBreakPointsProvider}, words
+ * are hyphenated only when the line breaker reaches them and the results
+ * are kept in a per language {@link HyphenationCache}.
+ *
  * @author Lukas Zaruba, lukas.zaruba@gmail.com
  */
 public class FOPLineBreakingStrategy implements LineBreakingStrategy {
 	
-	private static final int SOFT_HYPHEN = '\u00AD';
+	public static final int DEFAULT_HYPHENATION_CACHE_SIZE = 10000;
+	
+	private final NonBreakPointsEnhancer enhancer = new NonBreakPointsEnhancer();
+	
+	private final HyphenationCache hyphenationCache;
 	
-	private TreeSet<BreakPoint> getPoints(String text, String lang, CalculatedStyle style) {
-		text = new NonBreakPointsEnhancer().enhance(text, lang);
-		BreakIterator breakIt = new UrlAwareLineBreakIterator();
-		breakIt.setText(text);
-		TreeSet<BreakPoint> points = new TreeSet<BreakPoint>();
-		int p = BreakIterator.DONE;
-		while ((p = breakIt.next()) != BreakIterator.DONE) {
-			points.add(new BreakPoint(p));
-		}
-		if (style.getHyphens() == IdentValue.NONE) {
-			return points;
-		}
-		if (style.getHyphens() == IdentValue.MANUAL) {
-			int index = text.indexOf(SOFT_HYPHEN);
-			while (index >= 0) {
-				BreakPoint point = new BreakPoint(index);
-				addHyphen(point);
-				points.add(point);
-			    index = text.indexOf(SOFT_HYPHEN, index + 1);
-			}
-			return points;
-		}
-		if (style.getHyphens() == IdentValue.AUTO) {
-			HyphenationTree tree = Hyphenator.getFopHyphenationTree(lang);
-			Hyphenation s = tree.hyphenate(text, 2, 2);
-			if (s == null) return points;
-			for (int i = 0; i < s.getHyphenationPoints().length; i++) {
-				int position = s.getHyphenationPoints()[i];
-				BreakPoint point = new BreakPoint(position);
-				addHyphen(point);
-				points.add(point);
-			}
-		}
-		return points;
+	public FOPLineBreakingStrategy() {
+		this(DEFAULT_HYPHENATION_CACHE_SIZE);
+	}
+	
+	/**
+	 * @param hyphenationCacheSize maximum number of hyphenated words remembered per language
+	 */
+	public FOPLineBreakingStrategy(int hyphenationCacheSize) {
+		this.hyphenationCache = new HyphenationCache(hyphenationCacheSize);
 	}
 
 	@Override
 	public BreakPointsProvider getBreakPointsProvider(String text, String lang, CalculatedStyle style) {
-		return new ListBreakPointsProvider(Arrays.asList(getPoints(text, lang, style).toArray(new BreakPoint[0])));
-	}
-	
-	private void addHyphen(BreakPoint p) {
-		p.setHyphen("\u002D");
+		return new FOPBreakPointsProvider(enhancer.enhance(text, lang), lang, style.getHyphens(), hyphenationCache);
 	}
 	
 }
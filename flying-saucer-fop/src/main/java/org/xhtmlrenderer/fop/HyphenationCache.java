@@ -0,0 +1,107 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package org.xhtmlrenderer.fop;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.fop.hyphenation.Hyphenation;
+import org.apache.fop.hyphenation.HyphenationTree;
+import org.apache.fop.hyphenation.Hyphenator;
+
+/**
+ * Loads each FOP hyphenation tree once and remembers the hyphenation points
+ * of recently seen words, per language. Word caches are bounded LRU maps.
+ * Instances are safe to share between threads.
+ */
+public class HyphenationCache {
+
+	private static final int[] NO_POINTS = new int[0];
+
+	private static final HyphenationTree NO_TREE = new HyphenationTree();
+
+	private final int maxWordsPerLanguage;
+
+	private final Map<String, HyphenationTree> trees = new ConcurrentHashMap<String, HyphenationTree>();
+
+	private final Map<String, Map<String, int[]>> words = new ConcurrentHashMap<String, Map<String, int[]>>();
+
+	public HyphenationCache(int maxWordsPerLanguage) {
+		this.maxWordsPerLanguage = maxWordsPerLanguage;
+	}
+
+	/**
+	 * Returns the hyphenation points of <code>word</code>, relative to its first
+	 * character. The returned array must not be modified.
+	 */
+	public int[] hyphenate(String lang, String word) {
+		Map<String, int[]> cache = getWordCache(lang);
+		int[] result;
+		synchronized (cache) {
+			result = cache.get(word);
+		}
+		if (result != null) {
+			return result;
+		}
+		result = NO_POINTS;
+		HyphenationTree tree = getTree(lang);
+		if (tree != null) {
+			Hyphenation h = tree.hyphenate(word, 2, 2);
+			if (h != null) {
+				result = h.getHyphenationPoints();
+			}
+		}
+		synchronized (cache) {
+			cache.put(word, result);
+		}
+		return result;
+	}
+
+	private HyphenationTree getTree(String lang) {
+		HyphenationTree tree = trees.get(lang);
+		if (tree == null) {
+			tree = Hyphenator.getFopHyphenationTree(lang);
+			if (tree == null) {
+				tree = NO_TREE;
+			}
+			trees.put(lang, tree);
+		}
+		return tree == NO_TREE ? null : tree;
+	}
+
+	private Map<String, int[]> getWordCache(String lang) {
+		Map<String, int[]> cache = words.get(lang);
+		if (cache == null) {
+			synchronized (words) {
+				cache = words.get(lang);
+				if (cache == null) {
+					cache = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+						private static final long serialVersionUID = 1L;
+
+						protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+							return size() > maxWordsPerLanguage;
+						}
+					};
+					words.put(lang, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+}
@@ -18,7 +18,11 @@
  */
 package org.xhtmlrenderer.fop.nbsp;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,12 +46,18 @@ import java.util.regex.Pattern;
  * 
  * Lines starting with '#' and empty lines are skipped and can be used as comments.
  * 
+ * Rules are loaded and compiled once per language and instance.
+ * 
  * @author Lukas Zaruba, lukas.zaruba@gmail.com
  */
 public class NonBreakPointsEnhancer {
 	
+	private static final List<Pattern> NO_RULES = Collections.emptyList();
+	
 	private NonBreakPointsLoader loader;
 	
+	private final Map<String, List<Pattern>> compiledRules = new ConcurrentHashMap<String, List<Pattern>>();
+	
 	public NonBreakPointsEnhancer() {
 		this(new NonBreakPointsLoaderImpl());
 	}
@@ -63,18 +73,34 @@ public class NonBreakPointsEnhancer {
 		if (input == null) return null;
 		if (input.isEmpty()) return "";
 		if (lang == null || lang.isEmpty()) return input;
-		List<String> rules = loader.loadNBSP(lang);
-		if (rules == null) return input;
-		for (String r : rules) {
-			Matcher m = Pattern.compile(r).matcher(input);
-			if (m.groupCount() != 3) {
-				throw new IllegalArgumentException("Expression must contain exactly 3 groups! " + r);
-			}
+		List<Pattern> rules = getRules(lang);
+		for (Pattern r : rules) {
+			Matcher m = r.matcher(input);
 			if (m.find()) {
 				input = m.replaceAll("$1\u00A0$3");
 			}
 		}
 		return input;
 	}
+	
+	private List<Pattern> getRules(String lang) {
+		List<Pattern> result = compiledRules.get(lang);
+		if (result != null) return result;
+		List<String> rules = loader.loadNBSP(lang);
+		if (rules == null) {
+			result = NO_RULES;
+		} else {
+			result = new ArrayList<Pattern>(rules.size());
+			for (String r : rules) {
+				Pattern p = Pattern.compile(r);
+				if (p.matcher("").groupCount() != 3) {
+					throw new IllegalArgumentException("Expression must contain exactly 3 groups! " + r);
+				}
+				result.add(p);
+			}
+		}
+		compiledRules.put(lang, result);
+		return result;
+	}
 
 }
@@ -0,0 +1,146 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ */
+package org.xhtmlrenderer.fop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.layout.breaker.BreakPoint;
+import org.xhtmlrenderer.layout.breaker.BreakPointsProvider;
+
+public class FOPBreakPointsProviderTest {
+
+	private final HyphenationCache cache = new HyphenationCache(100);
+
+	@Test
+	public void noHyphens() throws Exception {
+		assertEquals("[5, 10, 14]", positions(new FOPBreakPointsProvider("some text here", "en", IdentValue.NONE, cache)));
+	}
+
+	@Test
+	public void manualHyphens() throws Exception {
+		String text = "hyphen\u00ADation is good";
+		assertEquals("[6-, 7, 13, 16, 20]", positions(new FOPBreakPointsProvider(text, "en", IdentValue.MANUAL, cache)));
+	}
+
+	@Test
+	public void manualHyphenAtStartOfText() throws Exception {
+		String text = "\u00ADhyphen\u00ADation";
+		assertEquals("[0-, 1, 7-, 8, 13]", positions(new FOPBreakPointsProvider(text, "en", IdentValue.MANUAL, cache)));
+	}
+
+	@Test
+	public void autoHyphensAreOrderedAndInsideWords() throws Exception {
+		String text = "Silbentrennung funktioniert wunderbar";
+		List<BreakPoint> points = collect(new FOPBreakPointsProvider(text, "de", IdentValue.AUTO, cache));
+		int previous = 0;
+		boolean hyphenated = false;
+		for (BreakPoint p : points) {
+			assertTrue(p.getPosition() > previous);
+			previous = p.getPosition();
+			hyphenated |= !p.getHyphen().isEmpty();
+		}
+		assertEquals(text.length(), previous);
+		assertTrue(hyphenated);
+	}
+
+	@Test
+	public void interleavedProvidersOnOneThread() throws Exception {
+		BreakPointsProvider first = new FOPBreakPointsProvider("one two three", "en", IdentValue.NONE, cache);
+		assertEquals(4, first.next().getPosition());
+		BreakPointsProvider second = new FOPBreakPointsProvider("alpha beta", "en", IdentValue.NONE, cache);
+		assertEquals(6, second.next().getPosition());
+		assertEquals(8, first.next().getPosition());
+		assertEquals(10, second.next().getPosition());
+		assertEquals(13, first.next().getPosition());
+		assertEquals(BreakIterator.DONE, first.next().getPosition());
+		assertEquals(BreakIterator.DONE, second.next().getPosition());
+	}
+
+	@Test
+	public void interleavedProvidersOverLongTexts() throws Exception {
+		String first = repeat("one two, three/four ", 300);
+		String second = repeat("hyphen\u00ADation is good ", 400);
+		String expectedFirst = positions(new FOPBreakPointsProvider(first, "en", IdentValue.NONE, cache));
+		String expectedSecond = positions(new FOPBreakPointsProvider(second, "en", IdentValue.MANUAL, cache));
+
+		BreakPointsProvider a = new FOPBreakPointsProvider(first, "en", IdentValue.NONE, cache);
+		BreakPointsProvider b = new FOPBreakPointsProvider(second, "en", IdentValue.MANUAL, cache);
+		List<BreakPoint> actualFirst = new ArrayList<BreakPoint>();
+		List<BreakPoint> actualSecond = new ArrayList<BreakPoint>();
+		boolean aDone = false;
+		boolean bDone = false;
+		while (!aDone || !bDone) {
+			if (!aDone) {
+				aDone = !read(a, actualFirst);
+			}
+			if (!bDone) {
+				bDone = !read(b, actualSecond);
+			}
+		}
+		assertEquals(expectedFirst, positions(actualFirst));
+		assertEquals(expectedSecond, positions(actualSecond));
+	}
+
+	private static boolean read(BreakPointsProvider provider, List<BreakPoint> points) {
+		BreakPoint p = provider.next();
+		if (p.getPosition() == BreakIterator.DONE) {
+			return false;
+		}
+		points.add(p);
+		return true;
+	}
+
+	private static String repeat(String words, int count) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			result.append(words).append(i).append(' ');
+		}
+		return result.toString();
+	}
+
+	private static List<BreakPoint> collect(BreakPointsProvider provider) {
+		List<BreakPoint> result = new ArrayList<BreakPoint>();
+		BreakPoint p;
+		while ((p = provider.next()).getPosition() != BreakIterator.DONE) {
+			result.add(p);
+		}
+		return result;
+	}
+
+	private static String positions(BreakPointsProvider provider) {
+		return positions(collect(provider));
+	}
+
+	private static String positions(List<BreakPoint> points) {
+		StringBuilder result = new StringBuilder("[");
+		for (BreakPoint p : points) {
+			if (result.length() > 1) {
+				result.append(", ");
+			}
+			result.append(p.getPosition()).append(p.getHyphen());
+		}
+		return result.append("]").toString();
+	}
+
+}
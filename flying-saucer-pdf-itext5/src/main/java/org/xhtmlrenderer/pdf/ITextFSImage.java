@@ -26,16 +26,52 @@ import com.itextpdf.text.Image;
 public class ITextFSImage implements FSImage, Cloneable {
     private Image _image;
 
+    private Loader _loader;
+    private float _plainWidth;
+    private float _plainHeight;
+
+    private byte[] _source;
+    private String _sourceDigest;
+
     public ITextFSImage(Image image) {
         _image = image;
     }
 
+    /**
+     * Creates an image that is loaded when it is first drawn.
+     *
+     * @param width the width in dots
+     * @param height the height in dots
+     */
+    public ITextFSImage(Loader loader, float width, float height) {
+        _loader = loader;
+        _plainWidth = width;
+        _plainHeight = height;
+    }
+
+    /**
+     * Sets the image file the image was read from, which is needed to
+     * downsample it (see {@link ImageDownsampler}).
+     */
+    public void setSource(byte[] source, String sourceDigest) {
+        _source = source;
+        _sourceDigest = sourceDigest;
+    }
+
+    public byte[] getSource() {
+        return _source;
+    }
+
+    public String getSourceDigest() {
+        return _sourceDigest;
+    }
+
     public int getWidth() {
-        return (int)_image.getPlainWidth();
+        return (int) (_image == null ? _plainWidth : _image.getPlainWidth());
     }
 
     public int getHeight() {
-        return (int)_image.getPlainHeight();
+        return (int) (_image == null ? _plainHeight : _image.getPlainHeight());
     }
 
     public void scale(int width, int height) {
@@ -54,16 +90,48 @@ public class ITextFSImage implements FSImage, Cloneable {
             }
 
             if (currentWith != targetWidth || currentHeight != targetHeight) {
-                _image.scaleAbsolute(targetWidth, targetHeight);
+                if (_image == null) {
+                    _plainWidth = targetWidth;
+                    _plainHeight = targetHeight;
+                } else {
+                    _image.scaleAbsolute(targetWidth, targetHeight);
+                }
             }
         }
     }
 
+    /**
+     * @return the image, loading it first if needed, or <code>null</code> if
+     * it can't be loaded
+     */
     public Image getImage() {
+        if (_image == null && _loader != null) {
+            Image image = _loader.load();
+            if (image != null) {
+                _image = Image.getInstance(image);
+                _image.scaleAbsolute(_plainWidth, _plainHeight);
+                _loader = null;
+            }
+        }
         return _image;
     }
 
     public Object clone() {
-        return new ITextFSImage(Image.getInstance(_image));
+        ITextFSImage result = _image == null ?
+                new ITextFSImage(_loader, _plainWidth, _plainHeight) :
+                new ITextFSImage(Image.getInstance(_image));
+        result.setSource(_source, _sourceDigest);
+        return result;
+    }
+
+    /**
+     * Loads the image of an {@link ITextFSImage} that is loaded when it is
+     * first drawn.
+     */
+    public interface Loader {
+        /**
+         * @return the image, or <code>null</code> if it can't be loaded
+         */
+        Image load();
     }
 }
@@ -75,7 +75,7 @@ public class ITextFontResolver implements FontResolver {
         }
     }
 
-    public FSFont resolveFont(SharedContext renderingContext, FontSpecification spec) {
+    public synchronized FSFont resolveFont(SharedContext renderingContext, FontSpecification spec) {
         return resolveFont(renderingContext, spec.families, spec.size, spec.fontWeight, spec.fontStyle, spec.variant);
     }
 
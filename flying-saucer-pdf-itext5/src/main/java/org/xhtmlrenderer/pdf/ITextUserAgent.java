@@ -20,10 +20,12 @@
  */
 package org.xhtmlrenderer.pdf;
 
+import java.awt.Dimension;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
 
 import org.xhtmlrenderer.extend.FSImage;
 import org.xhtmlrenderer.layout.SharedContext;
@@ -33,9 +35,9 @@ import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.ContentTypeDetectingInputStreamWrapper;
 import org.xhtmlrenderer.util.XRLog;
 
+import com.itextpdf.text.BadElementException;
 import com.itextpdf.text.Image;
 import com.itextpdf.text.Rectangle;
-import com.itextpdf.text.pdf.PdfReader;
 
 import org.xhtmlrenderer.util.ImageUtil;
 
@@ -46,6 +48,8 @@ public class ITextUserAgent extends NaiveUserAgent {
 
     private final ITextOutputDevice _outputDevice;
 
+    private ImageDownsampler _imageDownsampler = ImageDownsampler.getInstance();
+
     public ITextUserAgent(ITextOutputDevice outputDevice) {
         super(Configuration.valueAsInt("xr.image.cache-capacity", IMAGE_CACHE_CAPACITY));
         _outputDevice = outputDevice;
@@ -73,6 +77,8 @@ public class ITextUserAgent extends NaiveUserAgent {
             if (ImageUtil.isEmbeddedBase64Image(uriStr)) {
                 resource = loadEmbeddedBase64ImageResource(uriStr);
                 _imageCache.put(uriStr, resource);
+            } else if ((resource = getCachedPDFAsImageResource(uriStr)) != null) {
+                _imageCache.put(uriStr, resource);
             } else {
                 InputStream is = resolveAndOpenStream(uriStr);
                 if (is != null) {
@@ -81,23 +87,30 @@ public class ITextUserAgent extends NaiveUserAgent {
                         is=cis;
                         if (cis.isPdf()) {
                             URI uri = new URI(uriStr);
-                            PdfReader reader = _outputDevice.getReader(uri);
-                            PDFAsImage image = new PDFAsImage(uri);
-                            Rectangle rect = reader.getPageSizeWithRotation(PDFAsImage.pageNumberFromURI(uri));
-                            image.setInitialWidth(rect.getWidth() * _outputDevice.getDotsPerPoint());
-                            image.setInitialHeight(rect.getHeight() * _outputDevice.getDotsPerPoint());
-                            resource = new ImageResource(uriStr, image);
+                            resource = createPDFAsImageResource(uriStr, uri, _outputDevice.getPDFSource(uri));
                         } else {
-                            Image image = Image.getInstance(readStream(is));
-                            scaleToOutputResolution(image);
-                            resource = new ImageResource(uriStr, new ITextFSImage(image));
+                            if (isLazyImageDecoding() && ! _imageDownsampler.isEnabled()) {
+                                resource = probeImageResource(uriStr, is);
+                                if (resource == null) {
+                                    // the size can't be read from the header, so read the whole image
+                                    is.close();
+                                    is = resolveAndOpenStream(uriStr);
+                                }
+                            }
+                            if (resource == null && is != null) {
+                                resource = new ImageResource(uriStr, createImage(readStream(is)));
+                            }
+                        }
+                        if (resource != null) {
+                            _imageCache.put(uriStr, resource);
                         }
-                        _imageCache.put(uriStr, resource);
                     } catch (Exception e) {
                         XRLog.exception("Can't read image file; unexpected problem for URI '" + uriStr + "'", e);
                     } finally {
                         try {
-                            is.close();
+                            if (is != null) {
+                                is.close();
+                            }
                         } catch (IOException e) {
                             // ignore
                         }
@@ -117,18 +130,93 @@ public class ITextUserAgent extends NaiveUserAgent {
         return resource;
     }
     
+    /**
+     * @return the image for a PDF whose content is already cached (e.g. for
+     * another renderer), or <code>null</code>
+     */
+    private ImageResource getCachedPDFAsImageResource(String uriStr) {
+        URI uri;
+        try {
+            uri = new URI(uriStr);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        PDFSourceCache.Source source = PDFSourceCache.getInstance().getCachedSource(uri);
+        if (source == null || PDFAsImage.pageNumberFromURI(uri) > source.getNumberOfPages()) {
+            return null;
+        }
+        return createPDFAsImageResource(uriStr, uri, source);
+    }
+
+    private ImageResource createPDFAsImageResource(String uriStr, URI uri, PDFSourceCache.Source source) {
+        PDFAsImage image = new PDFAsImage(uri);
+        Rectangle rect = source.getPageSize(PDFAsImage.pageNumberFromURI(uri));
+        image.setInitialWidth(rect.getWidth() * _outputDevice.getDotsPerPoint());
+        image.setInitialHeight(rect.getHeight() * _outputDevice.getDotsPerPoint());
+        return new ImageResource(uriStr, image);
+    }
+
     private ImageResource loadEmbeddedBase64ImageResource(final String uri) {
         try {
             byte[] buffer = ImageUtil.getEmbeddedBase64Image(uri);
-            Image image = Image.getInstance(buffer);
-            scaleToOutputResolution(image);
-            return new ImageResource(null, new ITextFSImage(image));
+            return new ImageResource(null, createImage(buffer));
         } catch (Exception e) {
             XRLog.exception("Can't read XHTML embedded image.", e);
         }
         return new ImageResource(null, null);
     }
 
+    private ITextFSImage createImage(byte[] data) throws BadElementException, IOException {
+        Image image = Image.getInstance(data);
+        scaleToOutputResolution(image);
+        ITextFSImage result = new ITextFSImage(image);
+        if (_imageDownsampler.isEnabled()) {
+            result.setSource(data, ImageDownsampler.getDigest(data));
+        }
+        return result;
+    }
+
+    /**
+     * @return an image that is decoded when it is first drawn, or
+     * <code>null</code> if the size of the image can't be read from its header
+     * @see #setLazyImageDecoding(boolean)
+     */
+    private ImageResource probeImageResource(String uriStr, InputStream is) throws IOException {
+        Dimension size = ImageUtil.getImageSize(is);
+        if (size == null) {
+            return null;
+        }
+        float factor = _sharedContext.getDotsPerPixel();
+        return new ImageResource(uriStr, new ITextFSImage(
+                new ImageLoader(uriStr), size.width * factor, size.height * factor));
+    }
+
+    /**
+     * @param image an image from {@link #getImageResource(String)}, scaled to
+     * the size it is rendered at
+     * @return <code>image</code> or, if its resolution at that size is higher
+     * than needed, a downsampled copy
+     * @see ImageDownsampler
+     */
+    public FSImage downsample(FSImage image) {
+        if (image instanceof ITextFSImage) {
+            return _imageDownsampler.downsample((ITextFSImage) image, _outputDevice.getDotsPerPoint());
+        }
+        return image;
+    }
+
+    public ImageDownsampler getImageDownsampler() {
+        return _imageDownsampler;
+    }
+
+    /**
+     * Sets the downsampler for the images loaded from now on; the default is
+     * {@link ImageDownsampler#getInstance()}.
+     */
+    public void setImageDownsampler(ImageDownsampler imageDownsampler) {
+        _imageDownsampler = imageDownsampler;
+    }
+
     private void scaleToOutputResolution(Image image) {
         float factor = _sharedContext.getDotsPerPixel();
         if (factor != 1.0f) {
@@ -136,6 +224,37 @@ public class ITextUserAgent extends NaiveUserAgent {
         }
     }
 
+    /**
+     * Reads and decodes a lazily decoded image once it is drawn, and keeps it
+     * for all copies of the image.
+     */
+    private class ImageLoader implements ITextFSImage.Loader {
+        private final String _uri;
+        private boolean _loaded;
+        private Image _image;
+
+        public ImageLoader(String uri) {
+            _uri = uri;
+        }
+
+        public synchronized Image load() {
+            if (! _loaded) {
+                _loaded = true;
+                byte[] data = getBinaryResource(_uri);
+                if (data == null) {
+                    XRLog.exception("Can't read image file; image at URI '" + _uri + "' not found");
+                    return null;
+                }
+                try {
+                    _image = Image.getInstance(data);
+                } catch (Exception e) {
+                    XRLog.exception("Can't read image file; unexpected problem for URI '" + _uri + "'", e);
+                }
+            }
+            return _image;
+        }
+    }
+
     public SharedContext getSharedContext() {
         return _sharedContext;
     }
@@ -0,0 +1,269 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.pdf;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.logging.Level;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.DownscaleQuality;
+import org.xhtmlrenderer.util.ImageUtil;
+import org.xhtmlrenderer.util.ScalingOptions;
+import org.xhtmlrenderer.util.XRLog;
+import org.xhtmlrenderer.util.XRRuntimeException;
+
+import com.itextpdf.text.Image;
+
+/**
+ * Replaces images with a much higher resolution than needed for the size
+ * they are shown at (e.g. a 4000x3000 photo shown as a 5cm thumbnail) by a
+ * downsampled copy, so that the PDF doesn't embed the full image.  JPEG
+ * images are recompressed as JPEG, all others as PNG (i.e. Flate).  The
+ * downsampled images are cached by the content of the source image and the
+ * target size, so an image shown at the same size in many documents is
+ * downsampled only once.
+ * <p>
+ * Downsampling is disabled unless <code>xr.pdf.image.max-dpi</code> is set
+ * to the highest resolution (in pixels per inch of the rendered image) to
+ * keep.  <code>xr.pdf.image.jpeg-quality</code> sets the JPEG quality
+ * (0 to 1), <code>xr.pdf.image.downscale-quality</code> the scaling process
+ * (see {@link DownscaleQuality}) and <code>xr.pdf.image.cache-size</code> the
+ * number of downsampled images kept.
+ */
+public class ImageDownsampler {
+    /**
+     * Images are only downsampled if that reduces their width and height by
+     * at least this factor.
+     */
+    private static final float MIN_REDUCTION = 0.8f;
+
+    private static final ImageDownsampler INSTANCE = new ImageDownsampler(
+            Configuration.valueAsInt("xr.pdf.image.max-dpi", 0),
+            Configuration.valueAsFloat("xr.pdf.image.jpeg-quality", 0.85f),
+            DownscaleQuality.forString(
+                    Configuration.valueFor("xr.pdf.image.downscale-quality", "HIGH"),
+                    DownscaleQuality.HIGH_QUALITY),
+            Configuration.valueAsInt("xr.pdf.image.cache-size", 64));
+
+    private final int _maxDpi;
+    private final float _jpegQuality;
+    private final DownscaleQuality _downscaleQuality;
+    private final int _maxCount;
+
+    private final LinkedHashMap _images = new LinkedHashMap(16, 0.75f, true);
+
+    private long _hits;
+    private long _misses;
+
+    public ImageDownsampler(int maxDpi, float jpegQuality, DownscaleQuality downscaleQuality, int maxCount) {
+        _maxDpi = maxDpi;
+        _jpegQuality = jpegQuality;
+        _downscaleQuality = downscaleQuality;
+        _maxCount = maxCount;
+    }
+
+    public static ImageDownsampler getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return _maxDpi > 0;
+    }
+
+    /**
+     * @return the SHA-1 digest of <code>data</code> in hex, e.g. to identify
+     * an image file in the cache
+     */
+    static String getDigest(byte[] data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new XRRuntimeException(e.getMessage(), e);
+        }
+        byte[] hash = digest.digest(data);
+        StringBuffer result = new StringBuffer(hash.length * 2);
+        for (int i = 0; i < hash.length; i++) {
+            result.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+            result.append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param fsImage the image at the size it is rendered at
+     * @param dotsPerPoint the resolution of the output device
+     * @return a downsampled copy of <code>fsImage</code> with the same size,
+     * or <code>fsImage</code> itself if it doesn't need to be downsampled,
+     * can't be downsampled or its source is unknown
+     */
+    public ITextFSImage downsample(ITextFSImage fsImage, float dotsPerPoint) {
+        if (! isEnabled() || fsImage.getSource() == null) {
+            return fsImage;
+        }
+        Image image = fsImage.getImage();
+        if (! (image.isJpeg() || image.isImgRaw()) || image.getColorspace() == 4) {
+            return fsImage;
+        }
+
+        int width = (int) Math.ceil(image.getPlainWidth() / dotsPerPoint * _maxDpi / 72);
+        int height = (int) Math.ceil(image.getPlainHeight() / dotsPerPoint * _maxDpi / 72);
+        if (width < 1 || height < 1 ||
+                width > image.getWidth() * MIN_REDUCTION || height > image.getHeight() * MIN_REDUCTION) {
+            return fsImage;
+        }
+
+        Image result = getImage(fsImage, width, height);
+        if (result == null) {
+            return fsImage;
+        }
+        result.scaleAbsolute(image.getPlainWidth(), image.getPlainHeight());
+        return new ITextFSImage(result);
+    }
+
+    private Image getImage(ITextFSImage fsImage, int width, int height) {
+        String key = fsImage.getSourceDigest() + ':' + width + 'x' + height;
+        synchronized (this) {
+            Image result = (Image) _images.get(key);
+            if (result != null) {
+                _hits++;
+                // a copy keeps the serial id, so the image is still written once
+                return Image.getInstance(result);
+            }
+            _misses++;
+        }
+
+        Image result = createImage(fsImage, width, height);
+        if (result == null || _maxCount <= 0) {
+            return result;
+        }
+        synchronized (this) {
+            _images.put(key, result);
+            for (Iterator i = _images.values().iterator(); _images.size() > _maxCount && i.hasNext(); ) {
+                i.next();
+                i.remove();
+            }
+        }
+        return Image.getInstance(result);
+    }
+
+    private Image createImage(ITextFSImage fsImage, int width, int height) {
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(fsImage.getSource()));
+            if (source == null) {
+                return null;
+            }
+            boolean alpha = source.getColorModel().hasAlpha();
+            int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            if (source.getType() != type) {
+                // the scalers create images of the same type, which must not be a custom one
+                BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), type);
+                Graphics2D g = converted.createGraphics();
+                g.drawImage(source, 0, 0, null);
+                g.dispose();
+                source = converted;
+            }
+
+            ScalingOptions opt = new ScalingOptions(width, height, type,
+                    _downscaleQuality, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            BufferedImage scaled = ImageUtil.getScaledInstance(opt, source);
+
+            byte[] data;
+            if (fsImage.getImage().isJpeg() && ! alpha) {
+                data = writeJpeg(scaled);
+            } else {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(scaled, "png", out);
+                data = out.toByteArray();
+            }
+            if (data == null) {
+                return null;
+            }
+            XRLog.load(Level.FINE, "Downsampled image from " + source.getWidth() + "x" + source.getHeight() +
+                    " to " + width + "x" + height + " (" + fsImage.getSource().length + " to " +
+                    data.length + " bytes)");
+            return Image.getInstance(data);
+        } catch (Exception e) {
+            XRLog.load(Level.WARNING, "Can't downsample image, using the original", e);
+            return null;
+        }
+    }
+
+    private byte[] writeJpeg(BufferedImage image) throws IOException {
+        Iterator writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (! writers.hasNext()) {
+            return null;
+        }
+        ImageWriter writer = (ImageWriter) writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageOutputStream ios = ImageIO.createImageOutputStream(out);
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(_jpegQuality);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            ios.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Drops all downsampled images and resets the statistics.
+     */
+    public synchronized void clear() {
+        _images.clear();
+        _hits = 0;
+        _misses = 0;
+    }
+
+    public synchronized int getCount() {
+        return _images.size();
+    }
+
+    public synchronized long getHits() {
+        return _hits;
+    }
+
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    public synchronized String toString() {
+        return "Downsampled images: count=" + _images.size() + "/" + _maxCount +
+                ", hits=" + _hits + ", misses=" + _misses;
+    }
+}
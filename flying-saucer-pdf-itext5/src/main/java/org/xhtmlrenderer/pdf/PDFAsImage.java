@@ -118,6 +118,9 @@ public class PDFAsImage implements FSImage {
     public static int pageNumberFromURI(URI uri) {
         String fragment = uri.getFragment();
         int pageNumber = 1;
+        if (fragment == null) {
+            return pageNumber;
+        }
         Matcher pageMatcher = pageUriPattern.matcher(fragment);
         if(!fragment.isEmpty() && pageMatcher.find()) {
             pageNumber = Integer.parseInt(pageMatcher.group(1));
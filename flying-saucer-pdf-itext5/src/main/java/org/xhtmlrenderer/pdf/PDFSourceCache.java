@@ -0,0 +1,216 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.pdf;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.xhtmlrenderer.extend.UserAgentCallback;
+import org.xhtmlrenderer.util.Configuration;
+
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfReader;
+
+/**
+ * The content and page sizes of the PDF files used as images (e.g. a
+ * letterhead in <code>&lt;img src="letterhead.pdf"&gt;</code>), shared by
+ * all renderers so that a PDF is read and parsed only once, not once per
+ * document.  A <code>PdfReader</code> can't be shared between writers, so
+ * each output device still creates its own reader from the cached content,
+ * but needs it only when the PDF is first imported into the output PDF.
+ * <p>
+ * The total size of the cached PDFs is limited by the
+ * <code>xr.pdf.source-cache-size</code> configuration property (in bytes);
+ * the least recently used PDFs are dropped first.  The cache is disabled by
+ * default: it is shared by the whole JVM, and a cached PDF is used without
+ * asking the <code>UserAgentCallback</code> again, so it is never reloaded
+ * when the file changes, and is returned to every renderer that can resolve
+ * its URI.  Enable it only if the PDFs used as images don't change while
+ * the application runs, or call {@link #clear()} when they do.
+ */
+public class PDFSourceCache {
+    private static final PDFSourceCache INSTANCE = new PDFSourceCache(
+            Configuration.valueAsInt("xr.pdf.source-cache-size", 0));
+
+    private long _maxSize;
+    private final LinkedHashMap _sources = new LinkedHashMap(16, 0.75f, true);
+    private long _size;
+
+    private long _hits;
+    private long _misses;
+
+    public PDFSourceCache(long maxSize) {
+        _maxSize = maxSize;
+    }
+
+    public static PDFSourceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the total size in bytes of the cached PDFs, dropping the least
+     * recently used ones if they no longer fit.  0 disables the cache.
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        _maxSize = maxSize;
+        for (Iterator i = _sources.values().iterator(); _size > _maxSize && i.hasNext(); ) {
+            _size -= ((Source) i.next()).getData().length;
+            i.remove();
+        }
+    }
+
+    /**
+     * @return the cached PDF for <code>uri</code>, loading it through
+     * <code>uac</code> if it is not cached
+     * @throws IOException if the PDF cannot be loaded or parsed
+     */
+    public Source getSource(UserAgentCallback uac, URI uri) throws IOException {
+        String key = getKey(uri);
+        synchronized (this) {
+            Source result = (Source) _sources.get(key);
+            if (result != null) {
+                _hits++;
+                return result;
+            }
+            _misses++;
+        }
+
+        byte[] data = uac.getBinaryResource(key);
+        if (data == null) {
+            throw new IOException("Could not read " + key);
+        }
+        PdfReader reader = new PdfReader(data);
+        Rectangle[] pageSizes = new Rectangle[reader.getNumberOfPages()];
+        for (int i = 0; i < pageSizes.length; i++) {
+            pageSizes[i] = reader.getPageSizeWithRotation(i + 1);
+        }
+        reader.close();
+        Source result = new Source(data, pageSizes);
+
+        synchronized (this) {
+            if (data.length <= _maxSize && ! _sources.containsKey(key)) {
+                _sources.put(key, result);
+                _size += data.length;
+                for (Iterator i = _sources.values().iterator(); _size > _maxSize && i.hasNext(); ) {
+                    _size -= ((Source) i.next()).getData().length;
+                    i.remove();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the cached PDF for <code>uri</code> or <code>null</code>
+     */
+    public synchronized Source getCachedSource(URI uri) {
+        Source result = (Source) _sources.get(getKey(uri));
+        if (result != null) {
+            _hits++;
+        }
+        return result;
+    }
+
+    /**
+     * @return the URI of the PDF file, i.e. without a fragment
+     */
+    private static String getKey(URI uri) {
+        if (uri.getFragment() == null) {
+            return uri.toString();
+        }
+        try {
+            return new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null).toString();
+        } catch (URISyntaxException e) {
+            return uri.toString();
+        }
+    }
+
+    /**
+     * Drops all cached PDFs and resets the statistics.
+     */
+    public synchronized void clear() {
+        _sources.clear();
+        _size = 0;
+        _hits = 0;
+        _misses = 0;
+    }
+
+    public synchronized int getCount() {
+        return _sources.size();
+    }
+
+    /**
+     * @return the total size of the cached PDFs in bytes
+     */
+    public synchronized long getSize() {
+        return _size;
+    }
+
+    public synchronized long getHits() {
+        return _hits;
+    }
+
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    public synchronized String toString() {
+        return "PDF sources: count=" + _sources.size() + ", size=" + _size + "/" + _maxSize +
+                ", hits=" + _hits + ", misses=" + _misses;
+    }
+
+    /**
+     * A PDF file.  The content must not be modified.
+     */
+    public static final class Source {
+        private final byte[] _data;
+        private final Rectangle[] _pageSizes;
+
+        private Source(byte[] data, Rectangle[] pageSizes) {
+            _data = data;
+            _pageSizes = pageSizes;
+        }
+
+        public byte[] getData() {
+            return _data;
+        }
+
+        public int getNumberOfPages() {
+            return _pageSizes.length;
+        }
+
+        /**
+         * @return the size of a page (counting from 1) taking its rotation
+         * into account
+         */
+        public Rectangle getPageSize(int pageNumber) {
+            if (pageNumber < 1 || pageNumber > _pageSizes.length) {
+                throw new IllegalArgumentException("No page " + pageNumber);
+            }
+            return new Rectangle(_pageSizes[pageNumber - 1]);
+        }
+
+        public PdfReader createReader() throws IOException {
+            return new PdfReader(_data);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * {{{ header & license
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package org.xhtmlrenderer.pdf;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+import org.xhtmlrenderer.layout.FreezeStatistics;
+import org.xhtmlrenderer.util.XRLog;
+import org.xhtmlrenderer.util.XRRuntimeException;
+
+import com.lowagie.text.DocumentException;
+
+/**
+ * Concatenates a batch of independent documents into a single PDF, laying out
+ * the next documents on worker threads while the current one is written.
+ * <p>
+ * Every document is laid out by its own {@link ITextRenderer}, created by a
+ * {@link Callable} on a worker thread (so loading the document is done there
+ * too).  The documents are written in the order they are supplied, the first
+ * one creates the PDF (and its renderer's PDF settings, e.g. encryption or
+ * version, apply), the others are appended with
+ * {@link ITextRenderer#writeNextDocument(ITextRenderer, int)}.  At most
+ * <code>lookAhead</code> documents are laid out ahead of the one being written,
+ * so memory use does not grow with the size of the batch.
+ */
+public class ITextBatchRenderer {
+    private final int _threads;
+    private final int _lookAhead;
+
+    private boolean _continuousPageNumbers;
+
+    private final FreezeStatistics _freezeStatistics = new FreezeStatistics();
+
+    public ITextBatchRenderer() {
+        this(1, 2);
+    }
+
+    /**
+     * @param threads the number of threads laying out documents
+     * @param lookAhead the maximum number of documents laid out (or being laid
+     * out) ahead of the document being written
+     */
+    public ITextBatchRenderer(int threads, int lookAhead) {
+        if (threads < 1 || lookAhead < 1) {
+            throw new IllegalArgumentException("threads and lookAhead must be positive");
+        }
+        _threads = threads;
+        _lookAhead = lookAhead;
+    }
+
+    public boolean isContinuousPageNumbers() {
+        return _continuousPageNumbers;
+    }
+
+    /**
+     * If set, pages are numbered across the whole batch instead of restarting
+     * at 1 for every document.
+     */
+    public void setContinuousPageNumbers(boolean continuousPageNumbers) {
+        _continuousPageNumbers = continuousPageNumbers;
+    }
+
+    /**
+     * @return what was released by freezing the documents written so far
+     * (see {@link ITextRenderer#freeze()})
+     */
+    public FreezeStatistics getFreezeStatistics() {
+        return _freezeStatistics;
+    }
+
+    /**
+     * Writes the documents to <code>os</code> as a single PDF.
+     * <p>
+     * <B>NOTE:</B> Caller is responsible for cleaning up the OutputStream if
+     * something goes wrong.
+     *
+     * @param documents the documents, each a <code>Callable</code> returning an
+     * {@link ITextRenderer} whose document has been set.  It is only iterated
+     * on the calling thread, as documents are needed.
+     * @return the number of documents written
+     */
+    public int createPDF(OutputStream os, Iterator<? extends Callable<ITextRenderer>> documents)
+            throws DocumentException {
+        ExecutorService executor = Executors.newFixedThreadPool(_threads, new LayoutThreadFactory());
+        LinkedList<Future<ITextRenderer>> pending = new LinkedList<Future<ITextRenderer>>();
+        ITextRenderer first = null;
+        int count = 0;
+        int pageCount = 0;
+        try {
+            submit(executor, pending, documents);
+            while (! pending.isEmpty()) {
+                ITextRenderer renderer = get(pending.removeFirst());
+                submit(executor, pending, documents);
+
+                int initialPageNo = _continuousPageNumbers ? pageCount + 1 : 0;
+                if (first == null) {
+                    first = renderer;
+                    first.createPDF(os, false, initialPageNo);
+                } else {
+                    first.writeNextDocument(renderer, initialPageNo);
+                    _freezeStatistics.add(renderer.getFreezeStatistics());
+                }
+                count++;
+                pageCount += renderer.getRootBox().getLayer().getPages().size();
+            }
+            if (first != null) {
+                first.finishPDF();
+                _freezeStatistics.add(first.getFreezeStatistics());
+            }
+        } finally {
+            for (Iterator<Future<ITextRenderer>> i = pending.iterator(); i.hasNext(); ) {
+                i.next().cancel(true);
+            }
+            executor.shutdownNow();
+        }
+
+        XRLog.general(Level.INFO, "Wrote " + count + " documents (" + pageCount + " pages), " + _freezeStatistics);
+
+        return count;
+    }
+
+    private void submit(ExecutorService executor, LinkedList<Future<ITextRenderer>> pending,
+            Iterator<? extends Callable<ITextRenderer>> documents) {
+        while (pending.size() < _lookAhead && documents.hasNext()) {
+            pending.add(executor.submit(new LayoutTask(documents.next())));
+        }
+    }
+
+    private static ITextRenderer get(Future<ITextRenderer> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XRRuntimeException("Interrupted while waiting for a document to be laid out", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new XRRuntimeException("Could not lay out document", cause);
+        }
+    }
+
+    private static class LayoutTask implements Callable<ITextRenderer> {
+        private final Callable<ITextRenderer> _document;
+
+        public LayoutTask(Callable<ITextRenderer> document) {
+            _document = document;
+        }
+
+        public ITextRenderer call() throws Exception {
+            ITextRenderer result = _document.call();
+            result.layout();
+            return result;
+        }
+    }
+
+    private static class LayoutThreadFactory implements ThreadFactory {
+        private int _count;
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread result = new Thread(r, "ITextBatchRenderer-layout-" + (++_count));
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
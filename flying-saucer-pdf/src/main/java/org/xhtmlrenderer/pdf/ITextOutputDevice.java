@@ -90,6 +90,7 @@ import com.lowagie.text.pdf.PdfDictionary;
 import com.lowagie.text.pdf.PdfImportedPage;
 import com.lowagie.text.pdf.PdfIndirectReference;
 import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
 import com.lowagie.text.pdf.PdfOutline;
 import com.lowagie.text.pdf.PdfReader;
 import com.lowagie.text.pdf.PdfString;
@@ -137,6 +138,8 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
 
     private Map _readerCache = new HashMap();
 
+    private WriterResources _resources = new WriterResources(null);
+
     private PdfDestination _defaultDestination;
 
     private List _bookmarks = new ArrayList();
@@ -147,6 +150,8 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
 
     private int _startPageNo;
 
+    private int[] _pageNos;
+
     private int _nextFormFieldIndex;
 
     private Set _linkTargetAreas;
@@ -157,6 +162,19 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
 
     public void setWriter(PdfWriter writer) {
         _writer = writer;
+        if (writer != _resources.getWriter()) {
+            _resources = new WriterResources(writer);
+            _defaultDestination = null;
+        }
+    }
+
+    /**
+     * Uses the images and PDF pages <code>other</code> added to its writer
+     * when this device writes to the same writer, so that an image or a PDF
+     * used by several documents of a batch is written only once.
+     */
+    public void shareResources(ITextOutputDevice other) {
+        _resources = other._resources;
     }
 
     public PdfWriter getWriter() {
@@ -361,12 +379,37 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
             int distanceFromTop = page.getMarginBorderPadding(c, CalculatedStyle.TOP);
             distanceFromTop += box.getAbsY() + box.getMargin(c).top() - page.getTop();
             result = new PdfDestination(PdfDestination.XYZ, 0, page.getHeight(c) / _dotsPerPoint - distanceFromTop / _dotsPerPoint, 0);
-            result.addPage(_writer.getPageReference(_startPageNo + page.getPageNo() + 1));
+            PdfIndirectReference pageRef = getPageReference(page);
+            if (pageRef == null) {
+                return null;
+            }
+            result.addPage(pageRef);
         }
 
         return result;
     }
 
+    /**
+     * @return the reference to the PDF page showing <code>page</code>, or
+     * <code>null</code> if that page isn't written
+     */
+    private PdfIndirectReference getPageReference(PageBox page) {
+        int pageNo = page.getPageNo();
+        if (_pageNos != null) {
+            pageNo = -1;
+            for (int i = 0; i < _pageNos.length; i++) {
+                if (_pageNos[i] == page.getPageNo()) {
+                    pageNo = i;
+                    break;
+                }
+            }
+            if (pageNo == -1) {
+                return null;
+            }
+        }
+        return _writer.getPageReference(_startPageNo + pageNo + 1);
+    }
+
     public void drawBorderLine(Shape bounds, int side, int lineWidth, boolean solid) {
        /*( float x = bounds.x;
         float y = bounds.y;
@@ -827,7 +870,7 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         } else {
             Image image = ((ITextFSImage) fsImage).getImage();
 
-            if (fsImage.getHeight() <= 0 || fsImage.getWidth() <= 0) {
+            if (image == null || fsImage.getHeight() <= 0 || fsImage.getWidth() <= 0) {
                 return;
             }
 
@@ -843,6 +886,7 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
             double[] mx = new double[6];
             inverse.getMatrix(mx);
 
+            image = _resources.getImage(image);
             try {
                 _currentPage.addImage(image, (float) mx[0], (float) mx[1], (float) mx[2], (float) mx[3], (float) mx[4], (float) mx[5]);
             } catch (DocumentException e) {
@@ -853,15 +897,19 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
 
     private void drawPDFAsImage(PDFAsImage image, int x, int y) {
         URI uri = image.getURI();
-        PdfReader reader = null;
+        PdfImportedPage page = _resources.getImportedPage(uri);
+        if (page == null) {
+            PdfReader reader = null;
 
-        try {
-            reader = getReader(uri);
-        } catch (IOException e) {
-            throw new XRRuntimeException("Could not load " + uri + ": " + e.getMessage(), e);
-        }
+            try {
+                reader = getReader(uri);
+            } catch (IOException e) {
+                throw new XRRuntimeException("Could not load " + uri + ": " + e.getMessage(), e);
+            }
 
-        PdfImportedPage page = getWriter().getImportedPage(reader, 1);
+            page = getWriter().getImportedPage(reader, 1);
+            _resources.putImportedPage(uri, page);
+        }
 
         AffineTransform at = AffineTransform.getTranslateInstance(x, y);
         at.translate(0, image.getHeightAsFloat());
@@ -886,17 +934,26 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
     public PdfReader getReader(URI uri) throws IOException {
         PdfReader result = (PdfReader) _readerCache.get(uri);
         if (result == null) {
-            result = new PdfReader(getSharedContext().getUserAgentCallback().getBinaryResource(uri.toString()));
+            result = getPDFSource(uri).createReader();
             _readerCache.put(uri, result);
         }
         return result;
     }
 
+    /**
+     * @return the content and page sizes of a PDF used as an image, shared
+     * with other renderers
+     */
+    public PDFSourceCache.Source getPDFSource(URI uri) throws IOException {
+        return PDFSourceCache.getInstance().getSource(getSharedContext().getUserAgentCallback(), uri);
+    }
+
     public float getDotsPerPoint() {
         return _dotsPerPoint;
     }
 
     public void start(Document doc) {
+        _bookmarks = new ArrayList();
         loadBookmarks(doc);
         loadMetadata(doc);
     }
@@ -936,10 +993,9 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
 
                     if (targetBox.getStyle().isIdent(CSSName.FS_NAMED_DESTINATION, IdentValue.CREATE)) {
                         String anchorName = (String) entry.getKey();
-                        dests.add(new PdfString(anchorName, PdfString.TEXT_UNICODE));
-
                         PdfDestination dest = createDestination(c, targetBox);
                         if (dest != null) {
+                            dests.add(new PdfString(anchorName, PdfString.TEXT_UNICODE));
                             PdfIndirectReference ref = _writer.addToBody(dest).getIndirectReference();
                             dests.add(ref);
                         }
@@ -983,8 +1039,11 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
             PageBox page = root.getLayer().getPage(c, getPageRefY(box));
             int distanceFromTop = page.getMarginBorderPadding(c, CalculatedStyle.TOP);
             distanceFromTop += box.getAbsY() - page.getTop();
-            target = new PdfDestination(PdfDestination.XYZ, 0, normalizeY(distanceFromTop / _dotsPerPoint), 0);
-            target.addPage(_writer.getPageReference(_startPageNo + page.getPageNo() + 1));
+            PdfIndirectReference pageRef = getPageReference(page);
+            if (pageRef != null) {
+                target = new PdfDestination(PdfDestination.XYZ, 0, normalizeY(distanceFromTop / _dotsPerPoint), 0);
+                target.addPage(pageRef);
+            }
         }
         if (target == null) {
             target = _defaultDestination;
@@ -1217,6 +1276,144 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         }
     }
 
+    /**
+     * The images and imported PDF pages added to a writer, so that they are
+     * added once however often they are used.  The writer itself already
+     * writes an image once per serial id (which its copies share), but images
+     * loaded separately (e.g. from different URIs) with the same content are
+     * only recognized by hashing the content.
+     */
+    private static class WriterResources {
+        private final PdfWriter _writer;
+        private final Map _importedPages = new HashMap();
+        private final Map _imagesBySerialId = new HashMap();
+        private final Map _imagesByContent = new HashMap();
+
+        public WriterResources(PdfWriter writer) {
+            _writer = writer;
+        }
+
+        public PdfWriter getWriter() {
+            return _writer;
+        }
+
+        public PdfImportedPage getImportedPage(URI uri) {
+            return (PdfImportedPage) _importedPages.get(uri);
+        }
+
+        public void putImportedPage(URI uri, PdfImportedPage page) {
+            _importedPages.put(uri, page);
+        }
+
+        /**
+         * @return the first image added with the same content as
+         * <code>image</code>, or <code>image</code>
+         */
+        public Image getImage(Image image) {
+            Long serialId = image.getMySerialId();
+            Image result = (Image) _imagesBySerialId.get(serialId);
+            if (result == null) {
+                String key = getContentKey(image);
+                if (key != null) {
+                    result = (Image) _imagesByContent.get(key);
+                    if (result == null) {
+                        _imagesByContent.put(key, image);
+                    }
+                }
+                if (result == null) {
+                    result = image;
+                }
+                _imagesBySerialId.put(serialId, result);
+            }
+            return result;
+        }
+
+        /**
+         * @return a key identifying everything written for the image
+         * (including its mask) or <code>null</code> if it can't be compared by
+         * content
+         */
+        private static String getContentKey(Image image) {
+            byte[] data = image.getRawData();
+            if (data == null || image.getLayer() != null) {
+                return null;
+            }
+            StringBuffer result = new StringBuffer();
+            if (image.getAdditional() != null && ! appendDictionary(result, image.getAdditional())) {
+                return null;
+            }
+            result.append(image.type()).append(',');
+            result.append(image.getWidth()).append('x').append(image.getHeight()).append(',');
+            result.append(image.getColorspace()).append(',').append(image.getBpc()).append(',');
+            result.append(image.isMask()).append(',').append(image.isInverted()).append(',');
+            result.append(image.isInterpolation()).append(',').append(image.isDeflated()).append(',');
+            result.append(image.getCompressionLevel()).append(',');
+            int[] transparency = image.getTransparency();
+            if (transparency != null) {
+                for (int i = 0; i < transparency.length; i++) {
+                    result.append(transparency[i]).append(' ');
+                }
+            }
+            result.append(',');
+            if (image.getICCProfile() != null) {
+                appendDigest(result, image.getICCProfile().getData());
+            }
+            result.append(',');
+            appendDigest(result, data);
+            if (image.getImageMask() != null) {
+                String mask = getContentKey(image.getImageMask());
+                if (mask == null) {
+                    return null;
+                }
+                result.append(",mask(").append(mask).append(')');
+            }
+            return result.toString();
+        }
+
+        /**
+         * @return <code>false</code> if the dictionary holds values which
+         * can't be compared by their text, e.g. streams
+         */
+        private static boolean appendDictionary(StringBuffer buf, PdfDictionary dict) {
+            List keys = new ArrayList(dict.getKeys());
+            Collections.sort(keys, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    return o1.toString().compareTo(o2.toString());
+                }
+            });
+            buf.append("<<");
+            for (Iterator i = keys.iterator(); i.hasNext(); ) {
+                PdfName key = (PdfName) i.next();
+                PdfObject value = dict.get(key);
+                buf.append(key).append(' ');
+                if (value.isDictionary()) {
+                    if (! appendDictionary(buf, (PdfDictionary) value)) {
+                        return false;
+                    }
+                } else if (value.isArray()) {
+                    for (Iterator j = ((PdfArray) value).listIterator(); j.hasNext(); ) {
+                        PdfObject item = (PdfObject) j.next();
+                        if (item.isDictionary() || item.isStream() || item.isArray()) {
+                            return false;
+                        }
+                    }
+                    buf.append(value);
+                } else if (value.isStream()) {
+                    return false;
+                } else {
+                    buf.append(value);
+                }
+                buf.append(' ');
+            }
+            buf.append(">>,");
+            return true;
+        }
+
+        private static void appendDigest(StringBuffer buf, byte[] data) {
+            buf.append(data.length).append(':').append(ImageDownsampler.getDigest(data));
+        }
+    }
+
     // Class for storing metadata element name/content pairs from the head
     // section of an xhtml document.
     private static class Metadata {
@@ -1268,6 +1465,19 @@ public class ITextOutputDevice extends AbstractOutputDevice implements OutputDev
         _startPageNo = startPageNo;
     }
 
+    /**
+     * Sets the pages of the document which are written, in the order they
+     * are written, so that links and bookmarks point to the right PDF page.
+     * Links to other pages are left out, bookmarks of other pages point to
+     * the first page.
+     *
+     * @param pageNos the indexes of the pages written, or <code>null</code>
+     * if all pages are written
+     */
+    public void setPageNos(int[] pageNos) {
+        _pageNos = pageNos;
+    }
+
     public void drawSelection(RenderingContext c, InlineText inlineText) {
         throw new UnsupportedOperationException();
     }
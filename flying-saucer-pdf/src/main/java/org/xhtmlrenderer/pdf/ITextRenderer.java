@@ -30,7 +30,9 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.Iterator;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.regex.Pattern;
 
 import javax.xml.transform.OutputKeys;
@@ -49,16 +51,19 @@ import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserInterface;
 import org.xhtmlrenderer.layout.BoxBuilder;
+import org.xhtmlrenderer.layout.FreezeStatistics;
 import org.xhtmlrenderer.layout.Layer;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.SharedContext;
 import org.xhtmlrenderer.render.BlockBox;
+import org.xhtmlrenderer.render.Box;
 import org.xhtmlrenderer.render.PageBox;
 import org.xhtmlrenderer.render.RenderingContext;
 import org.xhtmlrenderer.render.ViewportBox;
 import org.xhtmlrenderer.resource.XMLResource;
 import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
 import org.xhtmlrenderer.util.Configuration;
+import org.xhtmlrenderer.util.XRLog;
 import org.xml.sax.InputSource;
 
 import com.lowagie.text.DocumentException;
@@ -98,6 +103,17 @@ public class ITextRenderer {
 
     private boolean _timeouted;
 
+    private boolean _frozen;
+    private final FreezeStatistics _freezeStatistics = new FreezeStatistics();
+
+    /**
+     * Shared by the renderers writing the same layout, see
+     * {@link #ITextRenderer(ITextRenderer)}; held while the boxes are changed
+     * by painting.
+     */
+    private final Object _paintLock;
+    private boolean _concurrentPaint;
+
     public ITextRenderer() {
         this(DEFAULT_DOTS_PER_POINT, DEFAULT_DOTS_PER_PIXEL);
     }
@@ -112,6 +128,7 @@ public class ITextRenderer {
 
     public ITextRenderer(float dotsPerPoint, int dotsPerPixel, ITextOutputDevice outputDevice, ITextUserAgent userAgent) {
         _dotsPerPoint = dotsPerPoint;
+        _paintLock = new Object();
 
         _outputDevice = outputDevice;
 
@@ -136,6 +153,34 @@ public class ITextRenderer {
         _timeouted= false;
     }
 
+    /**
+     * Creates a renderer which writes the document laid out by
+     * <code>laidOut</code> without laying it out again.  The layout is frozen
+     * (see {@link #freeze()}) and shared: renderers created from the same
+     * layout can write PDFs, export text and find page positions at the same
+     * time, each through its own output device.  If painting changes the laid
+     * out boxes (fixed positioned boxes, page counters in the content, form
+     * fields), the pages are painted by one renderer at a time.
+     * <code>laidOut</code> must not load or lay out another document while
+     * the renderers created from it are used.
+     */
+    public ITextRenderer(ITextRenderer laidOut) {
+        if (laidOut._root == null) {
+            throw new IllegalStateException("Document needs layout");
+        }
+        laidOut.freeze();
+
+        _dotsPerPoint = laidOut._dotsPerPoint;
+        _sharedContext = laidOut._sharedContext;
+        _outputDevice = new ITextOutputDevice(_dotsPerPoint);
+        _outputDevice.setSharedContext(_sharedContext);
+        _doc = laidOut._doc;
+        _root = laidOut._root;
+        _frozen = true;
+        _paintLock = laidOut._paintLock;
+        _concurrentPaint = laidOut._concurrentPaint;
+    }
+
     public Document getDocument() {
         return _doc;
     }
@@ -230,7 +275,68 @@ public class ITextRenderer {
         Dimension dim = root.getLayer().getPaintingDimension(c);
         root.getLayer().trimEmptyPages(c, dim.height);
         root.getLayer().layoutPages(c);
+        _sharedContext.getCss().releaseMatchTargets();
         _root = root;
+        _frozen = false;
+    }
+
+    /**
+     * Drops the state which is only needed while laying out the current
+     * document (inline content, cached element styles, etc.) so that it
+     * can be garbage collected before the document is painted.  The document
+     * must not be laid out again afterwards without calling {@link #layout()}.
+     * This is done automatically before the PDF is written.
+     *
+     * @return what was released, or <code>null</code> if the current document
+     * has already been frozen
+     */
+    public FreezeStatistics freeze() {
+        synchronized (_paintLock) {
+            if (_frozen || _root == null) {
+                return null;
+            }
+            long start = System.currentTimeMillis();
+            FreezeStatistics stats = new FreezeStatistics();
+
+            _root.releaseLayoutState(stats);
+            List pages = _root.getLayer().getPages();
+            // painting fixed content repositions the fixed boxes for each page
+            _concurrentPaint = ! _root.getLayer().containsFixedContent() &&
+                    _root.canPaintConcurrently(ITextImageElement.class);
+            for (int i = 0; i < pages.size(); i++) {
+                PageBox page = (PageBox)pages.get(i);
+                page.releaseLayoutState(stats);
+                for (Iterator j = page.getMarginAreaTables().iterator(); _concurrentPaint && j.hasNext(); ) {
+                    _concurrentPaint = ((Box)j.next()).canPaintConcurrently(ITextImageElement.class);
+                }
+            }
+            stats.stylesReleased(_sharedContext.releaseStyles());
+            stats.cascadedStylesReleased(_sharedContext.getCss().releaseCascadedStyles());
+
+            stats.freezeDone(System.currentTimeMillis() - start);
+            _frozen = true;
+            _freezeStatistics.add(stats);
+
+            XRLog.layout(Level.FINE, "Released layout state: " + stats);
+
+            return stats;
+        }
+    }
+
+    /**
+     * @return the sum of the statistics of all freezes done by this renderer,
+     * i.e. over all documents rendered in a batch
+     */
+    public FreezeStatistics getFreezeStatistics() {
+        return _freezeStatistics;
+    }
+
+    /**
+     * @return whether the pages of the frozen document are painted without
+     * holding the lock shared by all renderers of the layout
+     */
+    boolean isConcurrentPaint() {
+        return _concurrentPaint;
     }
 
     private Rectangle getInitialExtents(LayoutContext c) {
@@ -283,7 +389,32 @@ public class ITextRenderer {
         _pdfDoc.setPageSize(firstPageSize);
         _pdfDoc.newPage();
 
-        writePDF(pages, c, firstPageSize, _pdfDoc, _writer);
+        writePDF(pages, null, c, firstPageSize, _pdfDoc, _writer);
+    }
+
+    /**
+     * Writes the document laid out by another renderer as the next document
+     * of the PDF being created by this renderer (see
+     * {@link #createPDF(OutputStream, boolean)}).  This allows the documents
+     * of a batch to be laid out by separate renderers, e.g. on other threads,
+     * while they are written in order into a single PDF.
+     *
+     * @see ITextBatchRenderer
+     */
+    public void writeNextDocument(ITextRenderer laidOut, int initialPageNo) throws DocumentException {
+        if (laidOut == this) {
+            writeNextDocument(initialPageNo);
+            return;
+        }
+        laidOut._pdfDoc = _pdfDoc;
+        laidOut._writer = _writer;
+        laidOut._outputDevice.shareResources(_outputDevice);
+        try {
+            laidOut.writeNextDocument(initialPageNo);
+        } finally {
+            laidOut._pdfDoc = null;
+            laidOut._writer = null;
+        }
     }
 
     public void finishPDF() {
@@ -302,11 +433,40 @@ public class ITextRenderer {
      * something goes wrong.
      */
     public void createPDF(OutputStream os, boolean finish, int initialPageNo) throws DocumentException {
+        createPDF(os, finish, initialPageNo, null);
+    }
+
+    /**
+     * Writes some pages of the laid out document as a PDF.  The other pages
+     * aren't painted, so images only shown on them aren't loaded, and links
+     * to them are left out.  Page numbers and counts shown in the pages are
+     * those of the whole document.  The renderer can write other pages
+     * afterwards without laying out the document again.
+     *
+     * @param pageNos the indexes (starting at 0) of the pages to write, in
+     * the order they are written
+     */
+    public void createPDF(OutputStream os, int[] pageNos) throws DocumentException {
+        if (pageNos.length == 0) {
+            throw new IllegalArgumentException("No pages to write");
+        }
+        createPDF(os, true, 0, pageNos);
+    }
+
+    private void createPDF(OutputStream os, boolean finish, int initialPageNo, int[] pageNos) throws DocumentException {
         List pages = _root.getLayer().getPages();
+        if (pageNos != null) {
+            for (int i = 0; i < pageNos.length; i++) {
+                if (pageNos[i] < 0 || pageNos[i] >= pages.size()) {
+                    throw new IllegalArgumentException("Page " + pageNos[i] + " is not between 0 " +
+                            "and " + pages.size());
+                }
+            }
+        }
 
         RenderingContext c = newRenderingContext();
         c.setInitialPageNo(initialPageNo);
-        PageBox firstPage = (PageBox) pages.get(0);
+        PageBox firstPage = (PageBox) pages.get(pageNos == null ? 0 : pageNos[0]);
         com.lowagie.text.Rectangle firstPageSize = new com.lowagie.text.Rectangle(0, 0, firstPage.getWidth(c) / _dotsPerPoint,
                 firstPage.getHeight(c) / _dotsPerPoint);
 
@@ -330,7 +490,7 @@ public class ITextRenderer {
         firePreOpen();
         doc.open();
 
-        writePDF(pages, c, firstPageSize, doc, writer);
+        writePDF(pages, pageNos, c, firstPageSize, doc, writer);
 
         if (finish) {
             fireOnClose();
@@ -356,31 +516,46 @@ public class ITextRenderer {
         }
     }
 
-    private void writePDF(List pages, RenderingContext c, com.lowagie.text.Rectangle firstPageSize, com.lowagie.text.Document doc,
-            PdfWriter writer) throws DocumentException {
+    private void writePDF(List pages, int[] pageNos, RenderingContext c, com.lowagie.text.Rectangle firstPageSize,
+            com.lowagie.text.Document doc, PdfWriter writer) throws DocumentException {
+        freeze();
+
         _outputDevice.setRoot(_root);
+        _outputDevice.setPageNos(pageNos);
 
-        _outputDevice.start(_doc);
+        synchronized (_paintLock) {
+            _outputDevice.start(_doc);
+        }
         _outputDevice.setWriter(writer);
         _outputDevice.initializePage(writer.getDirectContent(), firstPageSize.getHeight());
 
-        _root.getLayer().assignPagePaintingPositions(c, Layer.PAGED_MODE_PRINT);
+        synchronized (_paintLock) {
+            _root.getLayer().assignPagePaintingPositions(c, Layer.PAGED_MODE_PRINT);
+        }
 
         int pageCount = _root.getLayer().getPages().size();
         c.setPageCount(pageCount);
         firePreWrite(pageCount); // opportunity to adjust meta data
         setDidValues(doc); // set PDF header fields from meta data
-        for (int i = 0; i < pageCount; i++) {
+        int writeCount = pageNos == null ? pageCount : pageNos.length;
+        for (int i = 0; i < writeCount; i++) {
 
             if (isTimeouted() || Thread.currentThread().isInterrupted())
                 throw new RuntimeException("Timeout occured");
 
-            PageBox currentPage = (PageBox) pages.get(i);
-            c.setPage(i, currentPage);
-            paintPage(c, writer, currentPage);
+            int pageNo = pageNos == null ? i : pageNos[i];
+            PageBox currentPage = (PageBox) pages.get(pageNo);
+            c.setPage(pageNo, currentPage);
+            if (_concurrentPaint) {
+                paintPage(c, writer, currentPage);
+            } else {
+                synchronized (_paintLock) {
+                    paintPage(c, writer, currentPage);
+                }
+            }
             _outputDevice.finishPage();
-            if (i != pageCount - 1) {
-                PageBox nextPage = (PageBox) pages.get(i + 1);
+            if (i != writeCount - 1) {
+                PageBox nextPage = (PageBox) pages.get(pageNos == null ? i + 1 : pageNos[i + 1]);
                 com.lowagie.text.Rectangle nextPageSize = new com.lowagie.text.Rectangle(0, 0, nextPage.getWidth(c) / _dotsPerPoint,
                         nextPage.getHeight(c) / _dotsPerPoint);
                 doc.setPageSize(nextPageSize);
@@ -389,7 +564,9 @@ public class ITextRenderer {
             }
         }
 
-        _outputDevice.finish(c, _root);
+        synchronized (_paintLock) {
+            _outputDevice.finish(c, _root);
+        }
     }
 
     // Sets the document information dictionary values from html metadata
@@ -508,7 +685,9 @@ public class ITextRenderer {
     public void exportText(Writer writer) throws IOException {
         RenderingContext c = newRenderingContext();
         c.setPageCount(_root.getLayer().getPages().size());
-        _root.exportText(c, writer);
+        synchronized (_paintLock) {
+            _root.exportText(c, writer);
+        }
     }
 
     public BlockBox getRootBox() {
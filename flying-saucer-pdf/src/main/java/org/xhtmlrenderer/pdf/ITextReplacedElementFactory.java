@@ -61,6 +61,9 @@ public class ITextReplacedElementFactory implements ReplacedElementFactory {
                     if (cssWidth != -1 || cssHeight != -1) {
                         fsImage.scale(cssWidth, cssHeight);
                     }
+                    if (uac instanceof ITextUserAgent) {
+                        fsImage = ((ITextUserAgent) uac).downsample(fsImage);
+                    }
                     return new ITextImageElement(fsImage);
                 }                    
             }
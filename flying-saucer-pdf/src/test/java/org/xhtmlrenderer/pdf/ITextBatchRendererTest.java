@@ -0,0 +1,61 @@
+package org.xhtmlrenderer.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+public class ITextBatchRendererTest {
+
+    private static final int DOCUMENTS = 7;
+
+    @Test
+    public void documentsAreWrittenInOrder() throws Exception {
+        ITextBatchRenderer batch = new ITextBatchRenderer(3, 2);
+        batch.setContinuousPageNumbers(true);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertEquals(DOCUMENTS, batch.createPDF(os, documents().iterator()));
+
+        PdfReader reader = new PdfReader(os.toByteArray());
+        assertEquals(DOCUMENTS * 2, reader.getNumberOfPages());
+        PdfTextExtractor extractor = new PdfTextExtractor(reader);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            String first = extractor.getTextFromPage(2 * i + 1);
+            assertTrue(first, first.indexOf("Document " + i) != -1);
+            assertTrue(first, first.indexOf("Page " + (2 * i + 1)) != -1);
+            String second = extractor.getTextFromPage(2 * i + 2);
+            assertTrue(second, second.indexOf("End of " + i) != -1);
+            assertTrue(second, second.indexOf("Page " + (2 * i + 2)) != -1);
+        }
+        assertEquals(DOCUMENTS, batch.getFreezeStatistics().getFreezes());
+    }
+
+    private static List<Callable<ITextRenderer>> documents() {
+        List<Callable<ITextRenderer>> result = new ArrayList<Callable<ITextRenderer>>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            final String content = "<html><head><style>"
+                    + "@page { @bottom-center { content: 'Page ' counter(page) } }"
+                    + "</style></head><body>"
+                    + "<p style='page-break-after: always'>Document " + i + "</p>"
+                    + "<p>End of " + i + "</p>"
+                    + "</body></html>";
+            result.add(new Callable<ITextRenderer>() {
+                public ITextRenderer call() {
+                    ITextRenderer renderer = new ITextRenderer();
+                    renderer.setDocumentFromString(content);
+                    return renderer;
+                }
+            });
+        }
+        return result;
+    }
+}
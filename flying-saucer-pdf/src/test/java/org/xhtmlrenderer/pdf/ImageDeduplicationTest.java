@@ -0,0 +1,89 @@
+package org.xhtmlrenderer.pdf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.codec.Base64;
+
+public class ImageDeduplicationTest {
+
+    private byte[] _png;
+    private File _first;
+    private File _second;
+
+    @Before
+    public void setUp() throws Exception {
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 10, 10);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        _png = out.toByteArray();
+
+        _first = write("logo-a");
+        _second = write("logo-b");
+    }
+
+    @After
+    public void tearDown() {
+        _first.delete();
+        _second.delete();
+    }
+
+    @Test
+    public void sameImageFromDifferentSourcesIsWrittenOnce() throws Exception {
+        String dataUri = "data:image/png;base64," + Base64.encodeBytes(_png, Base64.DONT_BREAK_LINES);
+        StringBuffer html = new StringBuffer("<html><body>");
+        for (int i = 0; i < 10; i++) {
+            html.append("<p><img src='").append(_first.toURI()).append("' />");
+            html.append("<img src='").append(_second.toURI()).append("' />");
+            html.append("<img src='").append(dataUri).append("' /></p>");
+        }
+        html.append("</body></html>");
+
+        ITextRenderer renderer = new ITextRenderer();
+        renderer.setDocumentFromString(html.toString());
+        renderer.layout();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        renderer.createPDF(os);
+
+        PdfReader reader = new PdfReader(os.toByteArray());
+        Set images = new HashSet();
+        for (int i = 1; i <= reader.getNumberOfPages(); i++) {
+            PdfDictionary resources = reader.getPageN(i).getAsDict(PdfName.RESOURCES);
+            PdfDictionary xObject = resources.getAsDict(PdfName.XOBJECT);
+            for (Iterator j = xObject.getKeys().iterator(); j.hasNext(); ) {
+                images.add(xObject.getAsIndirectObject((PdfName) j.next()).toString());
+            }
+        }
+        assertEquals(images.toString(), 1, images.size());
+    }
+
+    private File write(String prefix) throws Exception {
+        File result = File.createTempFile(prefix, ".png");
+        FileOutputStream out = new FileOutputStream(result);
+        out.write(_png);
+        out.close();
+        return result;
+    }
+}
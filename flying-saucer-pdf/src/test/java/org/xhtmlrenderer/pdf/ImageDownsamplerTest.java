@@ -0,0 +1,69 @@
+package org.xhtmlrenderer.pdf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xhtmlrenderer.util.DownscaleQuality;
+
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfNumber;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfStream;
+
+public class ImageDownsamplerTest {
+
+    private File _photo;
+
+    @Before
+    public void setUp() throws Exception {
+        BufferedImage image = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.BLUE, 1200, 900, Color.YELLOW));
+        g.fillRect(0, 0, 1200, 900);
+        g.dispose();
+        _photo = File.createTempFile("photo", ".jpg");
+        ImageIO.write(image, "jpeg", _photo);
+    }
+
+    @After
+    public void tearDown() {
+        _photo.delete();
+    }
+
+    @Test
+    public void thumbnailIsDownsampledOnce() throws Exception {
+        ImageDownsampler downsampler = new ImageDownsampler(72, 0.85f, DownscaleQuality.HIGH_QUALITY, 8);
+        ITextRenderer renderer = new ITextRenderer();
+        ((ITextUserAgent) renderer.getSharedContext().getUserAgentCallback()).setImageDownsampler(downsampler);
+        String img = "<img style='width: 120px' src='" + _photo.toURI() + "' />";
+        renderer.setDocumentFromString("<html><body>" + img + img + img + "</body></html>");
+        renderer.layout();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        renderer.createPDF(os);
+
+        assertEquals(1, downsampler.getMisses());
+        assertEquals(2, downsampler.getHits());
+
+        // 120px = 90pt, i.e. 90 pixels at 72 dpi
+        PdfReader reader = new PdfReader(os.toByteArray());
+        PdfDictionary xObject = reader.getPageN(1).getAsDict(PdfName.RESOURCES).getAsDict(PdfName.XOBJECT);
+        assertEquals(1, xObject.size());
+        PdfStream image = (PdfStream) PdfReader.getPdfObject(
+                xObject.get((PdfName) xObject.getKeys().iterator().next()));
+        assertEquals(PdfName.DCTDECODE, image.get(PdfName.FILTER));
+        assertEquals(90, ((PdfNumber) image.get(PdfName.WIDTH)).intValue());
+        assertEquals(68, ((PdfNumber) image.get(PdfName.HEIGHT)).intValue());
+    }
+}
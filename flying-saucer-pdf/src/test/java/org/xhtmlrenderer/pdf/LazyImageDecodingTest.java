@@ -0,0 +1,82 @@
+package org.xhtmlrenderer.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+
+public class LazyImageDecodingTest {
+
+    private File _image;
+
+    @Before
+    public void setUp() throws Exception {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.GREEN);
+        g.fillRect(0, 0, 150, 200);
+        g.dispose();
+        _image = File.createTempFile("lazy", ".png");
+        ImageIO.write(image, "png", _image);
+    }
+
+    @After
+    public void tearDown() {
+        _image.delete();
+    }
+
+    @Test
+    public void lazyImageIsLaidOutAndDrawnLikeADecodedOne() throws Exception {
+        ITextRenderer eager = layout(false);
+        ITextRenderer lazy = layout(true);
+        assertEquals(eager.getRootBox().getHeight(), lazy.getRootBox().getHeight());
+        assertEquals(eager.getRootBox().getWidth(), lazy.getRootBox().getWidth());
+
+        PdfReader eagerPdf = new PdfReader(createPDF(eager));
+        PdfReader lazyPdf = new PdfReader(createPDF(lazy));
+        assertEquals(new String(eagerPdf.getPageContent(1)), new String(lazyPdf.getPageContent(1)));
+        assertEquals(1, getXObjects(lazyPdf).size());
+    }
+
+    @Test
+    public void imageIsReadOnlyWhenDrawn() throws Exception {
+        ITextRenderer renderer = layout(true);
+        assertTrue(_image.delete());
+        assertNull(getXObjects(new PdfReader(createPDF(renderer))));
+    }
+
+    private ITextRenderer layout(boolean lazy) {
+        ITextRenderer renderer = new ITextRenderer();
+        ((ITextUserAgent) renderer.getSharedContext().getUserAgentCallback()).setLazyImageDecoding(lazy);
+        renderer.setDocumentFromString("<html><body><p>Before</p>"
+                + "<img src='" + _image.toURI() + "' /><img style='width: 100px' src='" + _image.toURI() + "' />"
+                + "<p>After</p></body></html>");
+        renderer.layout();
+        return renderer;
+    }
+
+    private byte[] createPDF(ITextRenderer renderer) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        renderer.createPDF(os);
+        return os.toByteArray();
+    }
+
+    private PdfDictionary getXObjects(PdfReader reader) {
+        return reader.getPageN(1).getAsDict(PdfName.RESOURCES).getAsDict(PdfName.XOBJECT);
+    }
+}
@@ -0,0 +1,53 @@
+package org.xhtmlrenderer.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+import org.xhtmlrenderer.render.MarginAreaCache;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+public class MarginAreaCacheTest {
+
+    private static final int PAGES = 8;
+
+    @Test
+    public void marginAreasAreSharedBetweenPages() throws Exception {
+        StringBuffer html = new StringBuffer("<html><head><style>"
+                + "@page { @top-center { content: element(header) }"
+                + " @bottom-center { content: 'Page ' counter(page) ' of ' counter(pages) } }"
+                + ".header { position: running(header) }"
+                + ".break { page-break-after: always }"
+                + "</style></head><body>");
+        for (int i = 0; i < PAGES; i++) {
+            if (i == 0 || i == PAGES / 2) {
+                html.append("<div class='header'>Part ").append(i == 0 ? "one" : "two").append("</div>");
+            }
+            html.append(i < PAGES - 1 ? "<p class='break'>" : "<p>").append("Text ").append(i).append("</p>");
+        }
+        html.append("</body></html>");
+
+        ITextRenderer renderer = new ITextRenderer();
+        renderer.setDocumentFromString(html.toString());
+        renderer.layout();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        renderer.createPDF(os);
+
+        MarginAreaCache cache = renderer.getRootBox().getLayer().getMarginAreaCache();
+        // first, left and right page with the first header, right and left with the second
+        assertEquals(5, cache.getMisses());
+        assertEquals(PAGES - 5, cache.getHits());
+
+        PdfReader reader = new PdfReader(os.toByteArray());
+        PdfTextExtractor extractor = new PdfTextExtractor(reader);
+        for (int i = 0; i < PAGES; i++) {
+            String text = extractor.getTextFromPage(i + 1);
+            assertTrue(text, text.indexOf("Page " + (i + 1) + " of " + PAGES) != -1);
+            assertTrue(text, text.indexOf(i < PAGES / 2 ? "Part one" : "Part two") != -1);
+        }
+    }
+}
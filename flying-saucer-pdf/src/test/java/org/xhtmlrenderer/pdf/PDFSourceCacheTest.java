@@ -0,0 +1,125 @@
+package org.xhtmlrenderer.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+
+public class PDFSourceCacheTest {
+
+    private static final int DOCUMENTS = 3;
+
+    private File _letterhead;
+
+    @Before
+    public void setUp() throws Exception {
+        PDFSourceCache.getInstance().clear();
+        PDFSourceCache.getInstance().setMaxSize(1024 * 1024);
+        _letterhead = File.createTempFile("letterhead", ".pdf");
+        Document doc = new Document(new Rectangle(200, 50));
+        FileOutputStream out = new FileOutputStream(_letterhead);
+        PdfWriter.getInstance(doc, out);
+        doc.open();
+        doc.add(new Paragraph("Letterhead"));
+        doc.close();
+        out.close();
+    }
+
+    @After
+    public void tearDown() {
+        PDFSourceCache.getInstance().setMaxSize(0);
+        PDFSourceCache.getInstance().clear();
+        _letterhead.delete();
+    }
+
+    @Test
+    public void letterheadIsReadOnceAndImportedOnce() throws Exception {
+        // one layout thread, so that the documents do not load the letterhead concurrently
+        ITextBatchRenderer batch = new ITextBatchRenderer(1, 2);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertEquals(DOCUMENTS, batch.createPDF(os, documents().iterator()));
+
+        PDFSourceCache cache = PDFSourceCache.getInstance();
+        assertEquals(1, cache.getCount());
+        assertEquals(1, cache.getMisses());
+
+        PdfReader reader = new PdfReader(os.toByteArray());
+        assertEquals(DOCUMENTS * 2, reader.getNumberOfPages());
+        Set xObjects = new HashSet();
+        for (int i = 1; i <= reader.getNumberOfPages(); i++) {
+            PdfDictionary resources = reader.getPageN(i).getAsDict(PdfName.RESOURCES);
+            PdfDictionary xObject = resources.getAsDict(PdfName.XOBJECT);
+            assertEquals(1, xObject.size());
+            xObjects.add(xObject.getAsIndirectObject((PdfName) xObject.getKeys().iterator().next()).toString());
+        }
+        assertEquals(xObjects.toString(), 1, xObjects.size());
+        assertTrue(cache.getHits() > 0);
+    }
+
+    @Test
+    public void disabledCacheReadsLetterheadForEachDocument() throws Exception {
+        PDFSourceCache cache = PDFSourceCache.getInstance();
+        cache.setMaxSize(0);
+        ITextBatchRenderer batch = new ITextBatchRenderer(1, 2);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertEquals(DOCUMENTS, batch.createPDF(os, documents().iterator()));
+
+        assertEquals(0, cache.getCount());
+        assertTrue(cache.getMisses() >= DOCUMENTS);
+        assertEquals(DOCUMENTS * 2, new PdfReader(os.toByteArray()).getNumberOfPages());
+    }
+
+    @Test
+    public void smallerMaxSizeDropsCachedPDFs() throws Exception {
+        PDFSourceCache cache = PDFSourceCache.getInstance();
+        ITextRenderer renderer = documents().get(0).call();
+        renderer.layout();
+        assertEquals(1, cache.getCount());
+
+        cache.setMaxSize(cache.getSize() - 1);
+        assertEquals(0, cache.getCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    private List<Callable<ITextRenderer>> documents() {
+        final String src = _letterhead.toURI().toString();
+        List<Callable<ITextRenderer>> result = new ArrayList<Callable<ITextRenderer>>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            final String content = "<html><head><style>"
+                    + "@page { @top-center { content: element(letterhead) } }"
+                    + "#letterhead { position: running(letterhead) }"
+                    + "</style></head><body>"
+                    + "<div id='letterhead'><img src='" + src + "' /></div>"
+                    + "<p style='page-break-after: always'>Document " + i + "</p>"
+                    + "<p>End of " + i + "</p>"
+                    + "</body></html>";
+            result.add(new Callable<ITextRenderer>() {
+                public ITextRenderer call() {
+                    ITextRenderer renderer = new ITextRenderer();
+                    renderer.setDocumentFromString(content);
+                    return renderer;
+                }
+            });
+        }
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+package org.xhtmlrenderer.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.SimpleBookmark;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+public class PageRangeTest {
+
+    @Test
+    public void onlySelectedPagesAreWrittenInTheGivenOrder() throws Exception {
+        ITextRenderer renderer = layout();
+        PdfReader reader = new PdfReader(createPDF(renderer, new int[] { 3, 1 }));
+        assertEquals(2, reader.getNumberOfPages());
+
+        PdfTextExtractor extractor = new PdfTextExtractor(reader);
+        String first = extractor.getTextFromPage(1);
+        assertTrue(first, first.indexOf("Section 4") != -1);
+        assertTrue(first, first.indexOf("Page 4 of 5") != -1);
+        String second = extractor.getTextFromPage(2);
+        assertTrue(second, second.indexOf("Section 2") != -1);
+        assertTrue(second, second.indexOf("Page 2 of 5") != -1);
+    }
+
+    @Test
+    public void linksToPagesNotWrittenAreLeftOut() throws Exception {
+        ITextRenderer renderer = layout();
+        PdfReader reader = new PdfReader(createPDF(renderer, new int[] { 0 }));
+        assertNull(reader.getPageN(1).getAsArray(PdfName.ANNOTS));
+        assertEquals(1, SimpleBookmark.getBookmark(reader).size());
+
+        // the same layout is written again, with all pages
+        reader = new PdfReader(createPDF(renderer, null));
+        assertEquals(5, reader.getNumberOfPages());
+        assertNotNull(reader.getPageN(1).getAsArray(PdfName.ANNOTS));
+        assertEquals(1, SimpleBookmark.getBookmark(reader).size());
+    }
+
+    @Test
+    public void namedDestinationsOnPagesNotWrittenAreLeftOut() throws Exception {
+        ITextRenderer renderer = layout();
+        PdfReader reader = new PdfReader(createPDF(renderer, new int[] { 0 }));
+        PdfArray names = getDestinationNames(reader);
+        assertEquals(2, names.size());
+        assertEquals("s1", names.getAsString(0).toUnicodeString());
+        assertTrue(names.getPdfObject(1).isIndirect());
+
+        reader = new PdfReader(createPDF(renderer, null));
+        assertEquals(4, getDestinationNames(reader).size());
+    }
+
+    private static PdfArray getDestinationNames(PdfReader reader) {
+        PdfDictionary names = reader.getCatalog().getAsDict(PdfName.NAMES);
+        return names.getAsDict(PdfName.DESTS).getAsArray(PdfName.NAMES);
+    }
+
+    private static ITextRenderer layout() {
+        StringBuffer html = new StringBuffer("<html><head>")
+                .append("<bookmarks><bookmark name='Last' href='#s5' /></bookmarks>")
+                .append("<style>@page { @bottom-center { content: 'Page ' counter(page) ' of ' counter(pages) } }")
+                .append("div + div { page-break-before: always } #s1, #s5 { -fs-named-destination: create }</style></head><body>");
+        for (int i = 1; i <= 5; i++) {
+            html.append("<div id='s").append(i).append("'>Section ").append(i)
+                    .append(" <a href='#s5'>to the last section</a></div>");
+        }
+        html.append("</body></html>");
+
+        ITextRenderer renderer = new ITextRenderer();
+        renderer.setDocumentFromString(html.toString());
+        renderer.layout();
+        return renderer;
+    }
+
+    private static byte[] createPDF(ITextRenderer renderer, int[] pageNos) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        if (pageNos == null) {
+            renderer.createPDF(os);
+        } else {
+            renderer.createPDF(os, pageNos);
+        }
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,117 @@
+package org.xhtmlrenderer.pdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+public class SharedLayoutTest {
+
+    @Test
+    public void renderersSharingALayoutWriteConcurrently() throws Exception {
+        checkConcurrentWrites("", true);
+    }
+
+    @Test
+    public void renderersSharingALayoutWithPageCountersWriteUnderTheLock() throws Exception {
+        List pages = checkConcurrentWrites(" p.counted::after { content: ' on page ' counter(page) }", false);
+        assertTrue((String) pages.get(19), ((String) pages.get(19)).indexOf("Section 20 on page 20") != -1);
+    }
+
+    @Test
+    public void renderersSharingALayoutWithAFixedHeaderWriteUnderTheLock() throws Exception {
+        List pages = checkConcurrentWrites(" #header { position: fixed; top: 0 }",
+                "<p id='header'>Fixed header</p>", false);
+        for (int i = 0; i < pages.size(); i++) {
+            assertTrue((String) pages.get(i), ((String) pages.get(i)).indexOf("Fixed header") != -1);
+        }
+    }
+
+    @Test
+    public void renderersSharingALayoutWithAFloatedFormFieldWriteUnderTheLock() throws Exception {
+        checkConcurrentWrites(" input { float: right }", "<form><input type='text' name='f' value='v' /></form>", false);
+    }
+
+    private static List checkConcurrentWrites(String style, boolean concurrentPaint) throws Exception {
+        return checkConcurrentWrites(style, "", concurrentPaint);
+    }
+
+    /**
+     * @return the text of the pages written
+     */
+    private static List checkConcurrentWrites(String style, String header, boolean concurrentPaint) throws Exception {
+        final ITextRenderer laidOut = layout(style, header);
+        List expected = getPageTexts(createPDF(laidOut));
+        assertEquals(concurrentPaint, laidOut.isConcurrentPaint());
+        assertEquals(20, expected.size());
+        StringWriter text = new StringWriter();
+        laidOut.exportText(text);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List futures = new ArrayList();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable() {
+                    public Object call() throws Exception {
+                        return createPDF(new ITextRenderer(laidOut));
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(expected, getPageTexts((byte[]) ((Future) futures.get(i)).get()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        StringWriter sharedText = new StringWriter();
+        new ITextRenderer(laidOut).exportText(sharedText);
+        assertEquals(text.toString(), sharedText.toString());
+        return expected;
+    }
+
+    private static ITextRenderer layout(String style, String header) {
+        StringBuffer html = new StringBuffer("<html><head><style>")
+                .append("div + div { page-break-before: always }").append(style).append("</style></head><body>")
+                .append(header);
+        for (int i = 1; i <= 20; i++) {
+            html.append("<div><p class='counted'>Section ").append(i).append("</p>");
+            html.append("<p style='border: 1px solid red'>Some text which wraps onto several lines, ")
+                    .append("and more text which wraps onto several lines.</p></div>");
+        }
+        html.append("</body></html>");
+
+        ITextRenderer renderer = new ITextRenderer();
+        renderer.setDocumentFromString(html.toString());
+        renderer.layout();
+        return renderer;
+    }
+
+    private static byte[] createPDF(ITextRenderer renderer) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        renderer.createPDF(os);
+        return os.toByteArray();
+    }
+
+    private static List getPageTexts(byte[] pdf) throws Exception {
+        PdfReader reader = new PdfReader(pdf);
+        PdfTextExtractor extractor = new PdfTextExtractor(reader);
+        List result = new ArrayList();
+        for (int i = 1; i <= reader.getNumberOfPages(); i++) {
+            result.add(extractor.getTextFromPage(i));
+        }
+        return result;
+    }
+}